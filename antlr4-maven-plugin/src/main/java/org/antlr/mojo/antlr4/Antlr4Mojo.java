@@ -11,6 +11,7 @@ import org.antlr.v4.codegen.CodeGenerator;
 import org.antlr.v4.runtime.misc.MultiMap;
 import org.antlr.v4.runtime.misc.Utils;
 import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.ast.GrammarRootAST;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -40,10 +41,17 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Parses ANTLR 4 grammar files {@code *.g4} and transforms them into Java
@@ -181,6 +189,14 @@ public class Antlr4Mojo extends AbstractMojo {
     @Parameter(defaultValue = "${project.build.directory}/maven-status/antlr4", readonly=true)
     private File statusDirectory;
 
+	/**
+	 * The number of threads used to run the ANTLR tool. Grammar folders which
+	 * do not depend on each other are processed concurrently if this is greater
+	 * than one.
+	 */
+	@Parameter(property = "antlr4.threads", defaultValue = "1")
+	protected int threads;
+
 	@Component
 	private BuildContext buildContext;
 
@@ -254,18 +270,20 @@ public class Antlr4Mojo extends AbstractMojo {
         }
 
         GrammarDependencies dependencies = new GrammarDependencies(sourceDirectory, libDirectory, arguments, getDependenciesStatusFile(), getLog());
+        GrammarFingerprints fingerprints = new GrammarFingerprints(getFingerprintsStatusFile(), getLog());
 
 		// Now pick up all the files and process them with the Tool
 		//
 
-		List<List<String>> argumentSets;
+		List<String> args;
         Set<File> grammarFiles;
         Set<File> importGrammarFiles;
+        Set<File> grammarFilesToProcess;
         try {
-			List<String> args = getCommandArguments();
+			args = getCommandArguments();
             grammarFiles = getGrammarFiles(sourceDirectory);
             importGrammarFiles = getImportFiles(sourceDirectory);
-            argumentSets = processGrammarFiles(args, grammarFiles, dependencies, sourceDirectory);
+            grammarFilesToProcess = getGrammarFilesToProcess(args, grammarFiles, dependencies, fingerprints);
         } catch (Exception e) {
             log.error(e);
             throw new MojoExecutionException("Fatal error occured while evaluating the names of the grammar files to analyze", e);
@@ -273,32 +291,40 @@ public class Antlr4Mojo extends AbstractMojo {
 
 		log.debug("Output directory base will be " + outputDirectory.getAbsolutePath());
 		log.info("ANTLR 4: Processing source directory " + sourceDirectory.getAbsolutePath());
-		for (List<String> args : argumentSets) {
+		if (grammarFilesToProcess.isEmpty()) {
+			getLog().info("No grammars to process");
+		}
+		else {
+			GrammarASTCache trees = new GrammarASTCache();
+
+			// Dependency analysis only needs the grammar trees, one tool instance
+			// serves all of the grammar folders
 			try {
-				// Create an instance of the ANTLR 4 build tool
-				tool = new CustomTool(args.toArray(new String[args.size()]));
+				dependencies.analyze(grammarFiles, importGrammarFiles, createTool(args, trees), trees);
+			} catch (MojoFailureException e) {
+				throw e;
 			} catch (Exception e) {
-				log.error("The attempt to create the ANTLR 4 build tool failed, see exception report for details", e);
-				throw new MojoFailureException("Error creating an instanceof the ANTLR tool.", e);
+				log.error("Dependency analysis failed, see exception report for details",
+					e);
+				throw new MojoFailureException("Dependency analysis failed.", e);
 			}
 
-            try {
-                dependencies.analyze(grammarFiles, importGrammarFiles, tool);
-            } catch (Exception e) {
-                log.error("Dependency analysis failed, see exception report for details",
-                    e);
-                throw new MojoFailureException("Dependency analysis failed.", e);
-            }
-
-			// Set working directory for ANTLR to be the base source directory
-			tool.inputDirectory = sourceDirectory;
-
-			tool.processGrammarsOnCommandLine();
+			Map<String, List<String>> argumentSets = processGrammarFiles(args, grammarFilesToProcess, sourceDirectory);
+			int errors = runTools(getIndependentArgumentSets(argumentSets, grammarFilesToProcess, dependencies), trees);
 
 			// If any of the grammar files caused errors but did nto throw exceptions
 			// then we should have accumulated errors in the counts
-			if (tool.getNumErrors() > 0) {
-				throw new MojoExecutionException("ANTLR 4 caught " + tool.getNumErrors() + " build errors.");
+			if (errors > 0) {
+				throw new MojoExecutionException("ANTLR 4 caught " + errors + " build errors.");
+			}
+
+			try {
+				for (File grammarFile : grammarFilesToProcess) {
+					fingerprints.update(grammarFile,
+						fingerprints.compute(grammarFile, dependencies.getDependencies(grammarFile), args));
+				}
+			} catch (IOException ex) {
+				log.warn("Could not compute grammar fingerprints", ex);
 			}
 		}
 
@@ -309,11 +335,100 @@ public class Antlr4Mojo extends AbstractMojo {
 
         try {
             dependencies.save();
+            fingerprints.save();
         } catch (IOException ex) {
             log.warn("Could not save grammar dependency status", ex);
         }
     }
 
+	/**
+	 * Creates an instance of the ANTLR 4 build tool.
+	 *
+	 * @exception MojoFailureException if the tool cannot be created
+	 */
+	private Tool createTool(List<String> args, GrammarASTCache trees) throws MojoFailureException {
+		try {
+			return new CustomTool(args.toArray(new String[args.size()]), trees);
+		} catch (Exception e) {
+			getLog().error("The attempt to create the ANTLR 4 build tool failed, see exception report for details", e);
+			throw new MojoFailureException("Error creating an instanceof the ANTLR tool.", e);
+		}
+	}
+
+	/**
+	 * Runs one tool instance per argument set. Each element of
+	 * {@code independentSets} is processed in order on a single thread; the
+	 * elements are processed concurrently if more than one thread is
+	 * configured.
+	 *
+	 * @return the number of errors reported by the tool
+	 */
+	private int runTools(List<List<List<String>>> independentSets, final GrammarASTCache trees)
+		throws MojoExecutionException, MojoFailureException
+	{
+		int nThreads = Math.min(threads, independentSets.size());
+		if (nThreads <= 1) {
+			for (List<List<String>> argumentSets : independentSets) {
+				int errors = runToolsInOrder(argumentSets, trees);
+				if (errors > 0) {
+					return errors;
+				}
+			}
+
+			return 0;
+		}
+
+		getLog().debug("Processing " + independentSets.size() + " independent grammar groups on " + nThreads + " threads");
+		ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+		try {
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+			for (final List<List<String>> argumentSets : independentSets) {
+				results.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws MojoFailureException {
+						return runToolsInOrder(argumentSets, trees);
+					}
+				}));
+			}
+
+			int errors = 0;
+			for (Future<Integer> result : results) {
+				try {
+					errors += result.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new MojoExecutionException("Interrupted while processing grammars", e);
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof MojoFailureException) {
+						throw (MojoFailureException)e.getCause();
+					}
+					throw new MojoExecutionException("Fatal error occured while processing grammars", e.getCause());
+				}
+			}
+
+			return errors;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private int runToolsInOrder(List<List<String>> argumentSets, GrammarASTCache trees) throws MojoFailureException {
+		for (List<String> args : argumentSets) {
+			Tool tool = createTool(args, trees);
+
+			// Set working directory for ANTLR to be the base source directory
+			tool.inputDirectory = sourceDirectory;
+
+			tool.processGrammarsOnCommandLine();
+
+			if (tool.getNumErrors() > 0) {
+				return tool.getNumErrors();
+			}
+		}
+
+		return 0;
+	}
+
 	private List<String> getCommandArguments() {
 		List<String> args = new ArrayList<String>();
 
@@ -376,37 +491,43 @@ public class Antlr4Mojo extends AbstractMojo {
 	}
 
     /**
-     *
-     * @param sourceDirectory
-     * @exception InclusionScanException
+     * Determines the grammars which have to be processed. We don't want the plugin
+     * to run for every grammar, regardless of whether it's changed since the last
+     * compilation. A grammar is skipped if its fingerprint is unchanged and its
+     * tokens file still exists.
      */
-    private List<List<String>> processGrammarFiles(
+    private Set<File> getGrammarFilesToProcess(
         List<String> args,
         Set<File> grammarFiles,
         GrammarDependencies dependencies,
-        File sourceDirectory) throws InclusionScanException, IOException {
+        GrammarFingerprints fingerprints) throws IOException {
 
-        // We don't want the plugin to run for every grammar, regardless of whether
-        // it's changed since the last compilation. Check the mtime of the tokens vs
-        // the grammar file mtime to determine whether we even need to execute.
         Set<File> grammarFilesToProcess = new HashSet<File>();
 
         for (File grammarFile : grammarFiles) {
             String tokensFileName = grammarFile.getName().split("\\.")[0] + ".tokens";
             File outputFile = new File(outputDirectory, tokensFileName);
+            byte[] fingerprint = fingerprints.compute(grammarFile,
+                dependencies.getDependencies(grammarFile), args);
             if ( (! outputFile.exists()) ||
-                 outputFile.lastModified() <= grammarFile.lastModified() ||
+                 !fingerprints.isUpToDate(grammarFile, fingerprint) ||
                  dependencies.isDependencyChanged(grammarFile)) {
                 grammarFilesToProcess.add(grammarFile);
             }
         }
 
-        grammarFiles = grammarFilesToProcess;
+        return grammarFilesToProcess;
+    }
 
-        if (grammarFiles.isEmpty()) {
-            getLog().info("No grammars to process");
-			return Collections.emptyList();
-		}
+    /**
+     * Groups the grammar files by folder and builds the tool arguments of each folder.
+     *
+     * @param sourceDirectory
+     */
+    private Map<String, List<String>> processGrammarFiles(
+        List<String> args,
+        Set<File> grammarFiles,
+        File sourceDirectory) {
 
 		MultiMap<String, File> grammarFileByFolder = new MultiMap<String, File>();
 		// Iterate each grammar file we were given and add it into the tool's list of
@@ -424,7 +545,7 @@ public class Antlr4Mojo extends AbstractMojo {
 			grammarFileByFolder.map(relPathBase, grammarFile);
 		}
 
-		List<List<String>> result = new ArrayList<List<String>>();
+		Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
 		for (Map.Entry<String, List<File>> entry : grammarFileByFolder.entrySet()) {
 			List<String> folderArgs = new ArrayList<String>(args);
 			if (!folderArgs.contains("-package") && !entry.getKey().isEmpty()) {
@@ -436,12 +557,61 @@ public class Antlr4Mojo extends AbstractMojo {
 				folderArgs.add(entry.getKey() + file.getName());
 			}
 
-			result.add(folderArgs);
+			result.put(entry.getKey(), folderArgs);
 		}
 
 		return result;
 	}
 
+	/**
+	 * Splits the argument sets of the grammar folders into groups which can be
+	 * processed independently. Folders end up in the same group if one of
+	 * their grammars depends on a grammar of the other folder, e.g. through
+	 * {@code tokenVocab}.
+	 */
+	private List<List<List<String>>> getIndependentArgumentSets(
+		Map<String, List<String>> argumentSets,
+		Set<File> grammarFiles,
+		GrammarDependencies dependencies)
+	{
+		Map<String, String> groupOf = new HashMap<String, String>();
+		for (String folder : argumentSets.keySet()) {
+			groupOf.put(folder, folder);
+		}
+
+		for (File grammarFile : grammarFiles) {
+			String folder = MojoUtils.findSourceSubdir(sourceDirectory, grammarFile);
+			for (File dependency : dependencies.getDependencies(grammarFile)) {
+				if (!dependency.getPath().startsWith(sourceDirectory.getPath() + File.separator)) {
+					continue;
+				}
+
+				String dependencyFolder = MojoUtils.findSourceSubdir(sourceDirectory, dependency);
+				if (groupOf.containsKey(dependencyFolder)) {
+					String group = findGroup(groupOf, folder);
+					String dependencyGroup = findGroup(groupOf, dependencyFolder);
+					groupOf.put(group, dependencyGroup);
+				}
+			}
+		}
+
+		MultiMap<String, List<String>> groups = new MultiMap<String, List<String>>();
+		for (Map.Entry<String, List<String>> entry : argumentSets.entrySet()) {
+			groups.map(findGroup(groupOf, entry.getKey()), entry.getValue());
+		}
+
+		return new ArrayList<List<List<String>>>(groups.values());
+	}
+
+	private static String findGroup(Map<String, String> groupOf, String folder) {
+		String group = folder;
+		while (!group.equals(groupOf.get(group))) {
+			group = groupOf.get(group);
+		}
+
+		return group;
+	}
+
     private Set<File> getImportFiles(File sourceDirectory) throws InclusionScanException {
         if (!libDirectory.exists()) return Collections.emptySet();
 
@@ -496,7 +666,15 @@ public class Antlr4Mojo extends AbstractMojo {
     }
 
     private File getDependenciesStatusFile() {
-        File statusFile = new File(statusDirectory, "dependencies.ser");
+        return getStatusFile("dependencies.ser");
+    }
+
+    private File getFingerprintsStatusFile() {
+        return getStatusFile("fingerprints.ser");
+    }
+
+    private File getStatusFile(String name) {
+        File statusFile = new File(statusDirectory, name);
 
         if (!statusFile.getParentFile().exists()) {
             statusFile.getParentFile().mkdirs();
@@ -506,12 +684,29 @@ public class Antlr4Mojo extends AbstractMojo {
     }
 
 	private final class CustomTool extends Tool {
+		private final GrammarASTCache trees;
 
-		public CustomTool(String[] args) {
+		public CustomTool(String[] args, GrammarASTCache trees) {
 			super(args);
+			this.trees = trees;
 			addListener(new Antlr4ErrorLog(this, buildContext, getLog()));
 		}
 
+		@Override
+		protected GrammarRootAST parseImportedGrammar(Grammar g, File importedFile) throws IOException {
+			GrammarRootAST root = trees.get(importedFile);
+			if (root == null) {
+				root = super.parseImportedGrammar(g, importedFile);
+				trees.put(importedFile, root);
+			}
+			else {
+				// the cached tree carries the options of the tool that parsed it
+				root.cmdLineOptions = grammarOptions;
+			}
+
+			return root;
+		}
+
 		@Override
 		public void process(Grammar g, boolean gencode) {
 			getLog().info("Processing grammar: " + g.fileName);
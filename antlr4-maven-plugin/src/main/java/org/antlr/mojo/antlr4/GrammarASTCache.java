@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.mojo.antlr4;
+
+import org.antlr.v4.tool.ast.GrammarRootAST;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Keeps the parsed trees of grammars, so that imported grammars are parsed only
+ * once per build, no matter how many tool instances import them.
+ */
+class GrammarASTCache {
+    private final ConcurrentMap<File, GrammarRootAST> trees =
+        new ConcurrentHashMap<File, GrammarRootAST>();
+
+    /**
+     * Returns a private copy of the tree parsed from the given file.
+     *
+     * @param   grammarFile  the grammar file.
+     *
+     * @return  the tree or {@code null} if the file has not been parsed yet.
+     */
+    public GrammarRootAST get(File grammarFile) {
+        GrammarRootAST tree = trees.get(grammarFile.getAbsoluteFile());
+
+        return (tree != null) ? tree.deepCopy() : null;
+    }
+
+    /**
+     * Remembers the tree parsed from the given file. Trees with syntax errors are not
+     * kept, so that every tool instance reports the errors.
+     *
+     * @param   grammarFile  the grammar file.
+     * @param   tree         the freshly parsed tree, before any transformation.
+     */
+    public void put(File grammarFile, GrammarRootAST tree) {
+        if (tree != null && !tree.hasErrors) {
+            trees.putIfAbsent(grammarFile.getAbsoluteFile(), tree.deepCopy());
+        }
+    }
+}
@@ -90,11 +90,13 @@ class GrammarDependencies {
      * @param   grammarFiles        the grammar files.
      * @param   importGrammarFiles  the import grammar files.
      * @param   tool                the tool to use.
+     * @param   trees               receives the parsed grammar trees, may be
+     *                              {@code null}.
      *
      * @return  self-reference.
      */
     public GrammarDependencies analyze(Set<File> grammarFiles,
-        Set<File> importGrammarFiles, Tool tool) throws IOException {
+        Set<File> importGrammarFiles, Tool tool, GrammarASTCache trees) throws IOException {
         log.debug("Analysing grammar dependencies " + sourceDirectory);
 
         // for dependency analysis we require all grammars
@@ -105,7 +107,7 @@ class GrammarDependencies {
         for (File grammarFile : grammarsAndTokens) {
             // .tokens files must not be parsed, they can just be referenced
             if (!grammarFile.getName().endsWith(".tokens"))
-                analyse(grammarFile, grammarsAndTokens, tool);
+                analyse(grammarFile, grammarsAndTokens, tool, trees);
         }
 
         for (File grammarFile : grammarFiles) {
@@ -166,6 +168,27 @@ class GrammarDependencies {
         return false;
     }
 
+    /**
+     * Returns the grammars and tokens files the given grammar directly or indirectly
+     * depends on, as known from the last analysis.
+     *
+     * @param   grammarFile  the grammar.
+     *
+     * @return  the files used by the given grammar.
+     */
+    public Collection<File> getDependencies(File grammarFile) {
+        String grammarPath = getRelativePath(grammarFile);
+        Collection<File> result = new ArrayList<File>();
+
+        for (Map.Entry<File, Map.Entry<byte[], Collection<String>>> e : grammars.entrySet()) {
+            if (e.getValue().getValue().contains(grammarPath)) {
+                result.add(e.getKey());
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Determines the relative target path of the given grammar file.
      *
@@ -209,12 +232,16 @@ class GrammarDependencies {
         }
     }
 
-    private void analyse(File grammarFile, Collection<File> grammarFiles, Tool tool) {
+    private void analyse(File grammarFile, Collection<File> grammarFiles, Tool tool,
+        GrammarASTCache trees) {
         GrammarRootAST grammar = tool.parseGrammar(grammarFile.getAbsolutePath());
 
         if (grammar == null)
             return;
 
+        if (trees != null)
+            trees.put(grammarFile, grammar);
+
         for (GrammarAST importDecl : grammar.getAllChildrenWithType(ANTLRParser.IMPORT)) {
             for (Tree id: importDecl.getAllChildrenWithType(ANTLRParser.ID)) {
                 // missing id is not valid, but we don't want to prevent the root cause from
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.mojo.antlr4;
+
+import org.antlr.v4.Tool;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Tracks a fingerprint per grammar covering everything that influences the generated
+ * output: the grammar content, the content of the grammars it depends on, the tool
+ * arguments and the tool version. A grammar whose fingerprint did not change since the
+ * last build does not have to be processed again.
+ */
+class GrammarFingerprints {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File statusFile;
+
+    /** Map grammars to the fingerprint of their last successful processing. */
+    private final Map<File, byte[]> fingerprints;
+    private final Log log;
+    private boolean modified;
+
+    public GrammarFingerprints(File status, Log log) {
+        this.log = log;
+        this.statusFile = status;
+        this.fingerprints = loadStatus(status);
+    }
+
+    /**
+     * Computes the fingerprint of the given grammar.
+     *
+     * @param   grammarFile   the grammar.
+     * @param   dependencies  the grammars and tokens files used by the grammar.
+     * @param   arguments     the tool arguments.
+     *
+     * @return  the fingerprint.
+     */
+    public byte[] compute(File grammarFile, Collection<File> dependencies,
+        List<String> arguments) throws IOException {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException("Could not create fingerprint " + grammarFile, ex);
+        }
+
+        update(digest, Tool.VERSION);
+
+        for (String argument : arguments) {
+            update(digest, argument);
+        }
+
+        update(digest, grammarFile.getPath());
+        digest.update(MojoUtils.checksum(grammarFile));
+
+        // the order of the dependencies must not influence the fingerprint
+        List<File> sorted = new ArrayList<File>(dependencies);
+        Collections.sort(sorted, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return f1.getPath().compareTo(f2.getPath());
+            }
+        });
+
+        for (File dependency : sorted) {
+            update(digest, dependency.getPath());
+
+            if (dependency.exists()) {
+                digest.update(MojoUtils.checksum(dependency));
+            }
+        }
+
+        return digest.digest();
+    }
+
+    /**
+     * Determines whether the given grammar was last processed with the given
+     * fingerprint.
+     *
+     * @param   grammarFile  the grammar.
+     * @param   fingerprint  the current fingerprint of the grammar.
+     *
+     * @return  {@code true} if the generated output is still up to date.
+     */
+    public boolean isUpToDate(File grammarFile, byte[] fingerprint) {
+        return Arrays.equals(fingerprints.get(grammarFile), fingerprint);
+    }
+
+    /**
+     * Records the fingerprint of a successfully processed grammar.
+     *
+     * @param   grammarFile  the grammar.
+     * @param   fingerprint  the fingerprint the grammar was processed with.
+     */
+    public void update(File grammarFile, byte[] fingerprint) {
+        byte[] previous = fingerprints.put(grammarFile, fingerprint);
+        modified |= !Arrays.equals(previous, fingerprint);
+    }
+
+    public void save() throws IOException {
+        if (modified) {
+            log.debug("Persisting grammar fingerprints: " + statusFile);
+
+            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(
+                        statusFile));
+
+            try {
+                out.writeObject(fingerprints);
+            } finally {
+                out.close();
+            }
+
+            modified = false;
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(UTF8));
+        // separate the values so that "ab","c" and "a","bc" differ
+        digest.update((byte)0);
+    }
+
+    private Map<File, byte[]> loadStatus(File statusFile) {
+        if (statusFile.exists()) {
+            log.debug("Load grammar fingerprints: " + statusFile);
+
+            try {
+                ObjectInputStream in = new ObjectInputStream(new FileInputStream(
+                            statusFile));
+
+                try {
+                    @SuppressWarnings("unchecked")
+                    Map<File, byte[]> data = (Map<File, byte[]>)in.readObject();
+
+                    return data;
+                } finally {
+                    in.close();
+                }
+            } catch (Exception ex) {
+                log.warn("Could not load grammar fingerprints", ex);
+            }
+        }
+
+        return new HashMap<File, byte[]>();
+    }
+}
@@ -21,8 +21,10 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -312,6 +314,54 @@ public class Antlr4MojoTest {
         assertTrue(Arrays.equals(origHelloSum, checksum(genHello)));
     }
 
+    @Test
+    public void skipWhenOnlyTimestampChanged() throws Exception {
+        Path baseDir = resources.getBasedir("importsStandard").toPath();
+        Path antlrDir = baseDir.resolve("src/main/antlr4");
+        Path generatedSources = baseDir.resolve("target/generated-sources/antlr4");
+
+        Path genTestParser = generatedSources.resolve("test/TestParser.java");
+        Path parserGrammar = antlrDir.resolve("test/TestParser.g4");
+
+        MavenProject project = maven.readMavenProject(baseDir.toFile());
+        MavenSession session = maven.newMavenSession(project);
+        MojoExecution exec = maven.newMojoExecution("antlr4");
+
+        maven.executeMojo(session, project, exec);
+
+        assertTrue(Files.exists(genTestParser));
+
+        // the fingerprint of the grammar is unchanged, it must not be processed again
+        FileTime generated = Files.getLastModifiedTime(genTestParser);
+        Files.setLastModifiedTime(parserGrammar,
+            FileTime.fromMillis(generated.toMillis() + 60000));
+
+        maven.executeMojo(session, project, exec);
+
+        assertEquals(generated, Files.getLastModifiedTime(genTestParser));
+    }
+
+    @Test
+    public void processInParallel() throws Exception {
+        Path baseDir = resources.getBasedir("importsStandard").toPath();
+        Path generatedSources = baseDir.resolve("target/generated-sources/antlr4");
+
+        Path genTestLexer = generatedSources.resolve("test/TestLexer.java");
+        Path genTestParser = generatedSources.resolve("test/TestParser.java");
+        Path genHello = generatedSources.resolve("test/HelloParser.java");
+
+        MavenProject project = maven.readMavenProject(baseDir.toFile());
+        MavenSession session = maven.newMavenSession(project);
+        MojoExecution exec = maven.newMojoExecution("antlr4",
+                TestMavenRuntime.newParameter("threads", "4"));
+
+        maven.executeMojo(session, project, exec);
+
+        assertTrue(Files.exists(genHello));
+        assertTrue(Files.exists(genTestParser));
+        assertTrue(Files.exists(genTestLexer));
+    }
+
     @Test
     public void processWhenDependencyRemoved() throws Exception {
         Path baseDir = resources.getBasedir("dependencyRemoved").toPath();
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.CharSequences;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+import org.antlr.v4.runtime.misc.TextInterner;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestCharSequences {
+	@Test
+	public void tokenTextAsCharSequence() {
+		CodePointCharStream input = CharStreams.fromString("abc 42");
+		CommonToken t = new CommonToken(new Pair<TokenSource, CharStream>(null, input), 1, Token.DEFAULT_CHANNEL, 4, 5);
+		CharSequence text = t.getTextAsCharSequence();
+		assertTrue(CharSequences.contentEquals("42", text));
+		assertEquals("42".hashCode(), CharSequences.hash(text));
+		assertEquals(42, CharSequences.parseInt(text));
+		assertEquals("42", CharSequences.textOf(t).toString());
+
+		t.setText("x");
+		assertSame("x", t.getTextAsCharSequence());
+	}
+
+	@Test
+	public void contentEquals() {
+		CodePointCharStream input = CharStreams.fromString("abcabd");
+		CharSequence abc = input.getTextAsCharSequence(Interval.of(0, 2));
+		assertTrue(CharSequences.contentEquals(abc, input.getTextAsCharSequence(Interval.of(0, 2))));
+		assertFalse(CharSequences.contentEquals(abc, input.getTextAsCharSequence(Interval.of(3, 5))));
+		assertFalse(CharSequences.contentEquals(abc, "ab"));
+		assertFalse(CharSequences.contentEquals(abc, null));
+		assertTrue(CharSequences.contentEquals(null, null));
+	}
+
+	@Test
+	public void parseInt() {
+		assertEquals(-17, CharSequences.parseInt(new StringBuilder("-17")));
+		assertEquals(Integer.MAX_VALUE, CharSequences.parseInt(new StringBuilder("2147483647")));
+		assertEquals(Integer.MIN_VALUE, CharSequences.parseInt(new StringBuilder("-2147483648")));
+		assertEquals(255, CharSequences.parseInt(new StringBuilder("ff"), 16));
+		for (String bad : new String[] {"", "-", "2147483648", "1x", "+-1"}) {
+			try {
+				CharSequences.parseInt(new StringBuilder(bad));
+				fail("expected NumberFormatException for \"" + bad + "\"");
+			}
+			catch (NumberFormatException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void internerReturnsOneStringPerValue() {
+		TextInterner interner = new TextInterner(4);
+		CodePointCharStream input = CharStreams.fromString("foo bar foo");
+		String foo = interner.intern(input.getTextAsCharSequence(Interval.of(0, 2)));
+		assertEquals("foo", foo);
+		assertSame(foo, interner.intern(input.getTextAsCharSequence(Interval.of(8, 10))));
+		for (int i = 0; i < 100; i++) {
+			interner.intern("id" + i);
+		}
+		assertSame(foo, interner.intern(new StringBuilder("foo")));
+		assertEquals(101, interner.size());
+	}
+
+	@Test
+	public void factoryInternsTokenText() {
+		CodePointCharStream input = CharStreams.fromString("foo bar foo");
+		Pair<TokenSource, CharStream> source = new Pair<TokenSource, CharStream>(null, input);
+		CommonTokenFactory factory = new CommonTokenFactory(new TextInterner());
+		CommonToken first = factory.create(source, 1, null, Token.DEFAULT_CHANNEL, 0, 2, 1, 0);
+		CommonToken second = factory.create(source, 1, null, Token.DEFAULT_CHANNEL, 8, 10, 1, 8);
+		assertEquals("foo", first.getText());
+		assertSame(first.getText(), second.getText());
+	}
+}
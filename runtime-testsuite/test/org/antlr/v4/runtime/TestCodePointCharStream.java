@@ -12,6 +12,8 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class TestCodePointCharStream {
@@ -307,4 +309,91 @@ public class TestCodePointCharStream {
 		assertTrue(s.getInternalStorage() instanceof int[]);
 		assertEquals(7, s.size());
 	}
+
+	@Test
+	public void getTextAsCharSequenceWithLatin() {
+		CodePointCharStream s = CharStreams.fromString("0123456789");
+		CharSequence text = s.getTextAsCharSequence(Interval.of(3, 7));
+		assertEquals("34567", text.toString());
+		assertEquals('5', text.charAt(2));
+		assertEquals("45", text.subSequence(1, 3).toString());
+		assertFalse(text instanceof String);
+	}
+
+	@Test
+	public void getTextAsCharSequenceWithCJK() {
+		CodePointCharStream s = CharStreams.fromString("01234\u40946789");
+		CharSequence text = s.getTextAsCharSequence(Interval.of(3, 7));
+		assertEquals("34\u409467", text.toString());
+		assertEquals(5, text.length());
+		assertFalse(text instanceof String);
+	}
+
+	@Test
+	public void getTextAsCharSequenceWithEmoji() {
+		CodePointCharStream s = CharStreams.fromString(
+				new StringBuilder("01234")
+					.appendCodePoint(0x1F522)
+					.append("6789")
+					.toString());
+		assertEquals("34\uD83D\uDD2267", s.getTextAsCharSequence(Interval.of(3, 7)).toString());
+	}
+
+	@Test
+	public void getTextAsCharSequencePastEnd() {
+		CodePointCharStream s = CharStreams.fromString("01234");
+		assertEquals("34", s.getTextAsCharSequence(Interval.of(3, 9)).toString());
+	}
+
+	@Test
+	public void runLengthStopsAtFirstCharacterNotInSet() {
+		boolean[] letters = new boolean[128];
+		for (int c = 'a'; c <= 'z'; c++) {
+			letters[c] = true;
+		}
+		for (String text : new String[] {"abc de", "abc\u4094de", "abc\uD83D\uDD22de"}) {
+			CodePointCharStream s = CharStreams.fromString(text);
+			assertEquals(3, s.runLength(letters, Integer.MAX_VALUE));
+			assertEquals(2, s.runLength(letters, 2));
+			s.skip(3);
+			assertEquals(0, s.runLength(letters, Integer.MAX_VALUE));
+			s.consume();
+			assertEquals(2, s.runLength(letters, Integer.MAX_VALUE));
+			assertEquals('d', s.LA(1));
+		}
+	}
+
+	@Test
+	public void countAndLastIndexOf() {
+		CodePointCharStream s = CharStreams.fromString("a\nb\n\u4094\nc");
+		assertEquals(3, s.count('\n', 7));
+		assertEquals(2, s.count('\n', 4));
+		assertEquals(5, s.lastIndexOf('\n', 7));
+		assertEquals(-1, s.lastIndexOf('\n', 1));
+		s.skip(2);
+		assertEquals(2, s.count('\n', 100));
+		assertEquals(3, s.lastIndexOf('\n', 100));
+	}
+
+	@Test
+	public void duplicateSharesStorageButNotPosition() {
+		for (String text : new String[] { "abc", "\u4094bc", "\ud83d\udca9bc" }) {
+			CodePointCharStream s = CharStreams.fromString(text);
+			s.consume();
+			CodePointCharStream copy = s.duplicate();
+			assertSame(s.getInternalStorage(), copy.getInternalStorage());
+			assertEquals(0, copy.index());
+			assertEquals(3, copy.size());
+			copy.skip(2);
+			assertEquals('c', copy.LA(1));
+			assertEquals('b', s.LA(1));
+		}
+	}
+
+	@Test
+	public void skippingPastEndShouldThrow() {
+		CodePointCharStream s = CharStreams.fromString("ab");
+		thrown.expect(IllegalArgumentException.class);
+		s.skip(3);
+	}
 }
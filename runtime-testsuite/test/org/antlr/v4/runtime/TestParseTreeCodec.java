@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Pair;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ErrorNodeImpl;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.runtime.tree.TerminalNodeImpl;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestParseTreeCodec {
+	// shaped like generated contexts for "s : e ; e : e '+' e # Add | INT # Int ;"
+	public static class SContext extends ParserRuleContext {
+		public SContext(ParserRuleContext parent, int invokingState) { super(parent, invokingState); }
+		@Override public int getRuleIndex() { return 0; }
+		public EContext e() { return getRuleContext(EContext.class, 0); }
+	}
+
+	public static class EContext extends ParserRuleContext {
+		public EContext(ParserRuleContext parent, int invokingState) { super(parent, invokingState); }
+		public EContext() { }
+		@Override public int getRuleIndex() { return 1; }
+		public void copyFrom(EContext ctx) { super.copyFrom(ctx); }
+	}
+
+	public static class AddContext extends EContext {
+		public AddContext(EContext ctx) { copyFrom(ctx); }
+		public List<EContext> e() { return getRuleContexts(EContext.class); }
+	}
+
+	public static class IntContext extends EContext {
+		public IntContext(EContext ctx) { copyFrom(ctx); }
+		public TerminalNode INT() { return getToken(1, 0); }
+	}
+
+	private static final int INT = 1;
+	private static final int PLUS = 2;
+
+	@Test
+	public void roundTripReproducesTree() throws IOException {
+		CodePointCharStream input = CharStreams.fromString("1+22");
+		List<Token> tokens = tokens(input);
+		SContext s = buildTree(tokens);
+
+		ParseTreeCodec.Reader reader = read(s, tokens, false, input);
+		SContext copy = (SContext)reader.readTree();
+		assertEquals(toString(s), toString(copy));
+		assertEquals(3, copy.e().getChildCount());
+		AddContext add = (AddContext)copy.e();
+		assertEquals("22", ((IntContext)add.e().get(1)).INT().getText());
+		assertSame(copy, add.getParent());
+		assertEquals(5, add.invokingState);
+		assertEquals("1", add.start.getText());
+		assertEquals("22", add.stop.getText());
+
+		assertEquals(4, reader.getTokens().size());
+		assertEquals(Token.EOF, reader.getTokens().get(3).getType());
+		assertSame(add.stop, reader.getTokens().get(2));
+	}
+
+	@Test
+	public void textWithoutInput() throws IOException {
+		CodePointCharStream input = CharStreams.fromString("1+22");
+		List<Token> tokens = tokens(input);
+		((CommonToken)tokens.get(1)).setText("plus");
+		SContext s = buildTree(tokens);
+
+		ParseTreeCodec.Reader withoutText = read(s, tokens, false, null);
+		assertNull(withoutText.getToken(0).getText());
+		assertEquals("plus", withoutText.getToken(1).getText());
+
+		ParseTreeCodec.Reader withText = read(s, tokens, true, null);
+		assertEquals(toString(s), toString(withText.readTree()));
+		assertEquals(2, withText.getToken(2).getStartIndex());
+		assertEquals(3, withText.getToken(2).getStopIndex());
+		assertEquals(2, withText.getToken(2).getCharPositionInLine());
+	}
+
+	@Test
+	public void skipsSubtreesByRecord() throws IOException {
+		CodePointCharStream input = CharStreams.fromString("1+22");
+		List<Token> tokens = tokens(input);
+		ParseTreeCodec.Reader reader = read(buildTree(tokens), tokens, false, input);
+
+		assertEquals(7, reader.getNodeCount());
+		int add = 1;
+		assertEquals(ParseTreeCodec.RULE, reader.getKind(add));
+		assertEquals(1, reader.getRuleIndex(add));
+		int left = add + 1;
+		int plus = reader.getNextSibling(left);
+		assertEquals(ParseTreeCodec.TERMINAL, reader.getKind(plus));
+		int right = reader.getNextSibling(plus);
+		ParseTree rightTree = reader.readTree(right, null);
+		assertTrue(rightTree instanceof IntContext);
+		assertEquals("22", rightTree.getText());
+		assertEquals(reader.getNodeCount(), reader.getNextSibling(add));
+	}
+
+	@Test
+	public void conjuredErrorTokens() throws IOException {
+		CodePointCharStream input = CharStreams.fromString("1+22");
+		List<Token> tokens = tokens(input);
+		SContext s = buildTree(tokens);
+		CommonToken missing = new CommonToken(INT, "<missing INT>");
+		s.addErrorNode(new ErrorNodeImpl(missing));
+
+		ParseTreeCodec.Reader reader = read(s, tokens, false, input);
+		SContext copy = (SContext)reader.readTree();
+		assertEquals(toString(s), toString(copy));
+		assertTrue(copy.getChild(1) instanceof ErrorNode);
+		assertEquals(4, reader.getTokens().size());
+		assertEquals(5, reader.getTokenCount());
+	}
+
+	@Test
+	public void contextsWithoutRuleIndex() throws IOException {
+		CodePointCharStream input = CharStreams.fromString("1+22");
+		List<Token> tokens = tokens(input);
+		ParserRuleContext root = new ParserRuleContext(null, -1);
+		ParserRuleContext child = new ParserRuleContext(root, 3);
+		child.addChild(new TerminalNodeImpl(tokens.get(0)));
+		root.addChild(child);
+		root.addChild(new TerminalNodeImpl(tokens.get(1)));
+
+		ParseTreeCodec.Reader reader = read(root, tokens, false, input);
+		assertEquals(ParseTreeCodec.RULE, reader.getKind(1));
+		assertEquals(-1, reader.getRuleIndex(1));
+		ParserRuleContext copy = reader.readTree();
+		assertEquals(toString(root), toString(copy));
+		assertEquals(3, ((ParserRuleContext)copy.getChild(0)).invokingState);
+	}
+
+	@Test
+	public void rejectsClassesThatAreNotContexts() throws IOException {
+		CodePointCharStream input = CharStreams.fromString("1+22");
+		List<Token> tokens = tokens(input);
+		ParseTreeCodec.Reader reader = read(buildTree(tokens), tokens, false, input);
+		try {
+			reader.createContext(Object.class.getName(), null, -1, 0);
+			fail("expected a rejected context class");
+		}
+		catch (IllegalStateException e) {
+			assertEquals("java.lang.Object is not a parser rule context", e.getMessage());
+		}
+	}
+
+	private static ParseTreeCodec.Reader read(ParserRuleContext tree, List<Token> tokens, boolean includeText, CharStream input)
+		throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ParseTreeCodec.write(tree, tokens, includeText, out);
+		return new ParseTreeCodec.Reader(ByteBuffer.wrap(out.toByteArray()), null, input, TestParseTreeCodec.class.getClassLoader());
+	}
+
+	private static List<Token> tokens(CharStream input) {
+		TokenMaker source = new TokenMaker(input);
+		List<Token> tokens = new ArrayList<Token>();
+		tokens.add(source.token(INT, 0, 0));
+		tokens.add(source.token(PLUS, 1, 1));
+		tokens.add(source.token(INT, 2, 3));
+		tokens.add(source.token(Token.EOF, 4, 3));
+		return tokens;
+	}
+
+	private static SContext buildTree(List<Token> tokens) {
+		SContext s = new SContext(null, -1);
+		s.start = tokens.get(0);
+		s.stop = tokens.get(2);
+		EContext e = new EContext(s, 5);
+		AddContext add = new AddContext(e);
+		add.start = tokens.get(0);
+		add.stop = tokens.get(2);
+		s.addChild(add);
+		for (int i = 0; i < 3; i += 2) {
+			IntContext operand = new IntContext(new EContext(add, 7));
+			operand.start = operand.stop = tokens.get(i);
+			operand.addChild(new TerminalNodeImpl(tokens.get(i)));
+			add.addChild(operand);
+			if ( i==0 ) add.addChild(new TerminalNodeImpl(tokens.get(1)));
+		}
+		return s;
+	}
+
+	/** Class names, invoking states and text of every node. */
+	private static String toString(ParseTree t) {
+		StringBuilder buf = new StringBuilder();
+		if ( t instanceof ParserRuleContext ) {
+			ParserRuleContext ctx = (ParserRuleContext)t;
+			buf.append('(').append(ctx.getClass().getSimpleName()).append(' ').append(ctx.invokingState);
+			for (int i = 0; i < ctx.getChildCount(); i++) {
+				buf.append(' ').append(toString(ctx.getChild(i)));
+			}
+			buf.append(')');
+		}
+		else {
+			buf.append(t instanceof ErrorNode ? "!" : "").append(t.getText());
+		}
+		return buf.toString();
+	}
+
+	private static class TokenMaker {
+		final Pair<TokenSource, CharStream> source;
+		int index;
+
+		TokenMaker(CharStream input) {
+			source = new Pair<TokenSource, CharStream>(null, input);
+		}
+
+		CommonToken token(int type, int start, int stop) {
+			CommonToken t = new CommonToken(source, type, Token.DEFAULT_CHANNEL, start, stop);
+			t.setLine(1);
+			t.setCharPositionInLine(start);
+			t.setTokenIndex(index++);
+			return t;
+		}
+	}
+}
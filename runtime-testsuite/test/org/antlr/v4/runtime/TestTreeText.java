@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.tree.ErrorNodeImpl;
+import org.antlr.v4.runtime.tree.TerminalNodeImpl;
+import org.antlr.v4.runtime.tree.Trees;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestTreeText {
+	private static final List<String> RULE_NAMES = Arrays.asList("s", "e");
+
+	private static class RuleContextWithIndex extends ParserRuleContext {
+		private final int ruleIndex;
+
+		public RuleContextWithIndex(ParserRuleContext parent, int ruleIndex) {
+			super(parent, -1);
+			this.ruleIndex = ruleIndex;
+		}
+
+		@Override
+		public int getRuleIndex() {
+			return ruleIndex;
+		}
+	}
+
+	@Test
+	public void textAndTreeOfSmallTree() throws IOException {
+		// (s (e 1 + (e 2)) <missing ;> x y) with the whitespace token left out
+		RuleContextWithIndex s = new RuleContextWithIndex(null, 0);
+		RuleContextWithIndex e = new RuleContextWithIndex(s, 1);
+		s.addChild(e);
+		e.addChild(new TerminalNodeImpl(new CommonToken(1, "1")));
+		e.addChild(new TerminalNodeImpl(new CommonToken(2, "+")));
+		RuleContextWithIndex e2 = new RuleContextWithIndex(e, 1);
+		e.addChild(e2);
+		e2.addChild(new TerminalNodeImpl(new CommonToken(1, "2")));
+		s.addErrorNode(new ErrorNodeImpl(new CommonToken(3, "<missing ;>")));
+		s.addChild(new TerminalNodeImpl(new CommonToken(4, "x y")));
+		s.addChild(new RuleContextWithIndex(s, 1)); // empty
+
+		assertEquals("1+2<missing ;>x y", s.getText());
+		assertEquals("1+2", e.getText());
+		assertEquals("(s (e 1 + (e 2)) <missing ;> x y e)", s.toStringTree(RULE_NAMES));
+
+		StringBuilder buf = new StringBuilder("text: ");
+		s.getText(buf);
+		assertEquals("text: 1+2<missing ;>x y", buf.toString());
+
+		buf.setLength(0);
+		Trees.toStringTree(e, RULE_NAMES, buf);
+		assertEquals("(e 1 + (e 2))", buf.toString());
+		assertEquals("", new RuleContextWithIndex(null, 0).getText());
+		assertEquals("s", new RuleContextWithIndex(null, 0).toStringTree(RULE_NAMES));
+	}
+
+	@Test
+	public void deepTreeDoesNotOverflowStack() {
+		int depth = 200000;
+		RuleContextWithIndex root = new RuleContextWithIndex(null, 0);
+		ParserRuleContext node = root;
+		for (int i = 0; i < depth; i++) {
+			node.addChild(new TerminalNodeImpl(new CommonToken(1, "a")));
+			RuleContextWithIndex child = new RuleContextWithIndex(node, 1);
+			node.addChild(child);
+			node = child;
+		}
+		node.addChild(new TerminalNodeImpl(new CommonToken(2, "b")));
+
+		String text = root.getText();
+		assertEquals(depth + 1, text.length());
+		assertEquals('b', text.charAt(depth));
+
+		String tree = root.toStringTree(RULE_NAMES);
+		assertEquals("(s a (e a (e ", tree.substring(0, 13));
+		StringBuilder end = new StringBuilder("(e b)");
+		for (int i = 0; i < depth; i++) {
+			end.append(')');
+		}
+		assertTrue(tree.endsWith(end.toString()));
+	}
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.atn.DecisionState;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.misc.IntegerList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds exact ambiguities without parsing everything in
+ * {@link PredictionMode#LL_EXACT_AMBIG_DETECTION}. Parsing is done as usual,
+ * and the sampler records the few predictions worth a closer look. Only
+ * those are predicted again in exact mode, later and possibly in parallel.
+ *
+ * <p>Add the sampler to each parser as an error listener and parse in
+ * {@link PredictionMode#LL}. Each time SLL prediction hits a conflict and
+ * falls back to full context, the sampler records a {@link Trigger}. Every
+ * ambiguity that full-context prediction can find starts this way. A
+ * trigger holds the decision, the precedence for left-recursive rules, and
+ * the invoking states of the outer context. It also holds the on-channel
+ * tokens from where the prediction started to where SLL stopped, plus up to
+ * {@link #getExtraLookahead} more for full-context prediction to look at.
+ * Equal triggers are kept once and counted. The sampler is thread-safe, so
+ * one sampler can serve all the parsers of a large run. Nothing is recorded
+ * in {@link PredictionMode#SLL}, which never falls back to full context.</p>
+ *
+ * <p>{@link #analyze} predicts each trigger's decision again, in exact mode
+ * with profiling on. Each run uses a new parser from a
+ * {@link ParserFactory}, a token stream holding just the recorded tokens,
+ * and an outer context rebuilt from the recorded invoking states. The
+ * profiles are added up per decision. In the result,
+ * {@link DecisionInfo#ambiguities} holds the exact ambiguities and
+ * {@link DecisionInfo#contextSensitivities} the conflicts that full context
+ * resolved. {@link DecisionInfo#errors} holds the triggers that found no
+ * viable alternative in the recorded tokens.</p>
+ *
+ * <p>Only the recorded tokens are predicted again, followed by EOF. An
+ * ambiguity that needs more lookahead than {@link #getExtraLookahead}
+ * beyond the SLL conflict can be missed. A semantic predicate that depends
+ * on parser members, or on the fields of generated contexts, may not
+ * evaluate as it did during the parse, since neither is recorded. A trigger
+ * whose prediction throws anything but a {@link RecognitionException} is
+ * counted in {@link Result#failures}.</p>
+ *
+ * @since 4.7.1
+ */
+public class AmbiguitySampler extends BaseErrorListener {
+	/** Creates the parsers {@link #analyze} predicts with. It is called from
+	 *  several threads when an executor is used.
+	 */
+	public interface ParserFactory {
+		Parser createParser(TokenStream input);
+	}
+
+	/** A prediction that fell back to full context. */
+	public static class Trigger {
+		public final int decision;
+
+		/** The parser's precedence if the decision is a left-recursive rule's
+		 *  precedence decision, otherwise 0.
+		 */
+		public final int precedence;
+
+		protected final int[] tokenTypes;
+
+		protected final String[] tokenTexts;
+
+		/** The outer context's invoking states, innermost first. */
+		protected final int[] invokingStates;
+
+		protected final AtomicInteger count = new AtomicInteger();
+
+		private final int hashCode;
+
+		public Trigger(int decision, int precedence, int[] tokenTypes, String[] tokenTexts, int[] invokingStates) {
+			this.decision = decision;
+			this.precedence = precedence;
+			this.tokenTypes = tokenTypes;
+			this.tokenTexts = tokenTexts;
+			this.invokingStates = invokingStates;
+			int hash = 31 * decision + precedence;
+			hash = 31 * hash + Arrays.hashCode(tokenTypes);
+			this.hashCode = 31 * hash + Arrays.hashCode(invokingStates);
+		}
+
+		/** Return how many times this trigger was recorded. */
+		public int getCount() {
+			return count.get();
+		}
+
+		/** Return the recorded tokens followed by EOF. */
+		public List<Token> getTokens() {
+			List<Token> tokens = new ArrayList<Token>(tokenTypes.length + 1);
+			for (int i = 0; i < tokenTypes.length; i++) {
+				tokens.add(new CommonToken(tokenTypes[i], tokenTexts[i]));
+			}
+			tokens.add(new CommonToken(Token.EOF, "<EOF>"));
+			return tokens;
+		}
+
+		/** Return an outer context with the recorded invoking states. */
+		public ParserRuleContext createOuterContext() {
+			ParserRuleContext ctx = new ParserRuleContext();
+			for (int i = invokingStates.length - 1; i >= 0; i--) {
+				ctx = new ParserRuleContext(ctx, invokingStates[i]);
+			}
+			return ctx;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o == this) {
+				return true;
+			}
+			else if (!(o instanceof Trigger)) {
+				return false;
+			}
+
+			Trigger other = (Trigger)o;
+			return hashCode == other.hashCode
+				&& decision == other.decision
+				&& precedence == other.precedence
+				&& Arrays.equals(tokenTypes, other.tokenTypes)
+				&& Arrays.equals(invokingStates, other.invokingStates);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public String toString() {
+			return "decision " + decision + " at " + Arrays.toString(tokenTexts) + " x" + getCount();
+		}
+	}
+
+	/** The outcome of {@link #analyze}. */
+	public static class Result {
+		/** One entry per decision, with the profiles of all triggers of the
+		 *  decision added up.
+		 */
+		public final DecisionInfo[] decisions;
+
+		/** The number of triggers predicted again. */
+		public final int triggers;
+
+		/** The number of triggers whose prediction threw an exception other
+		 *  than a {@link RecognitionException}.
+		 */
+		public final int failures;
+
+		public Result(DecisionInfo[] decisions, int triggers, int failures) {
+			this.decisions = decisions;
+			this.triggers = triggers;
+			this.failures = failures;
+		}
+
+		/** Return the number of exact ambiguities found at all decisions. */
+		public int getNumberOfAmbiguities() {
+			int n = 0;
+			for (DecisionInfo decision : decisions) {
+				n += decision.ambiguities.size();
+			}
+			return n;
+		}
+
+		@Override
+		public String toString() {
+			return triggers + " triggers, " + failures + " failed, " + getNumberOfAmbiguities() + " ambiguities";
+		}
+	}
+
+	public static final int DEFAULT_EXTRA_LOOKAHEAD = 8;
+
+	protected final int extraLookahead;
+
+	protected final ConcurrentMap<Trigger, Trigger> triggers = new ConcurrentHashMap<Trigger, Trigger>();
+
+	public AmbiguitySampler() {
+		this(DEFAULT_EXTRA_LOOKAHEAD);
+	}
+
+	/**
+	 * @param extraLookahead the number of tokens after the SLL conflict to
+	 * record for full-context prediction
+	 */
+	public AmbiguitySampler(int extraLookahead) {
+		this.extraLookahead = extraLookahead;
+	}
+
+	public int getExtraLookahead() {
+		return extraLookahead;
+	}
+
+	/** Return the triggers recorded so far, each once. */
+	public Collection<Trigger> getTriggers() {
+		return Collections.unmodifiableCollection(triggers.keySet());
+	}
+
+	/** Forget all triggers. */
+	public void clear() {
+		triggers.clear();
+	}
+
+	@Override
+	public void reportAttemptingFullContext(Parser recognizer,
+											DFA dfa,
+											int startIndex,
+											int stopIndex,
+											BitSet conflictingAlts,
+											ATNConfigSet configs)
+	{
+		record(recognizer, dfa, startIndex, stopIndex);
+	}
+
+	protected void record(Parser parser, DFA dfa, int startIndex, int stopIndex) {
+		TokenStream input = parser.getTokenStream();
+		int channel = input.get(startIndex).getChannel();
+		IntegerList types = new IntegerList();
+		List<String> texts = new ArrayList<String>();
+		for (int i = startIndex; i <= stopIndex; i++) {
+			Token t = input.get(i);
+			if ( t.getType()==Token.EOF ) break;
+			if ( t.getChannel()!=channel ) continue;
+			types.add(t.getType());
+			texts.add(t.getText());
+		}
+
+		// the stream is at stopIndex; LT fetches what follows without moving
+		if ( input.index()==stopIndex && input.LA(1)!=Token.EOF ) {
+			for (int k = 2; k <= extraLookahead + 1; k++) {
+				Token t = input.LT(k);
+				if ( t==null || t.getType()==Token.EOF ) break;
+				types.add(t.getType());
+				texts.add(t.getText());
+			}
+		}
+
+		IntegerList invokingStates = new IntegerList();
+		for (RuleContext ctx = parser.getContext(); ctx != null && ctx.parent != null; ctx = ctx.parent) {
+			invokingStates.add(ctx.invokingState);
+		}
+
+		int precedence = dfa.isPrecedenceDfa() ? parser.getPrecedence() : 0;
+		Trigger trigger = new Trigger(dfa.decision, precedence, types.toArray(),
+									  texts.toArray(new String[texts.size()]), invokingStates.toArray());
+		Trigger existing = triggers.putIfAbsent(trigger, trigger);
+		(existing != null ? existing : trigger).count.incrementAndGet();
+	}
+
+	/** Predict all triggers again on the calling thread. */
+	public Result analyze(ParserFactory factory) {
+		List<Trigger> todo = new ArrayList<Trigger>(triggers.keySet());
+		List<DecisionInfo[]> profiles = new ArrayList<DecisionInfo[]>(todo.size());
+		for (Trigger trigger : todo) {
+			profiles.add(analyze(factory, trigger));
+		}
+		return createResult(factory, profiles);
+	}
+
+	/** Predict all triggers again on {@code executor}, one task per trigger. */
+	public Result analyze(final ParserFactory factory, ExecutorService executor) throws InterruptedException {
+		List<Callable<DecisionInfo[]>> tasks = new ArrayList<Callable<DecisionInfo[]>>();
+		for (final Trigger trigger : triggers.keySet()) {
+			tasks.add(new Callable<DecisionInfo[]>() {
+				@Override
+				public DecisionInfo[] call() {
+					return analyze(factory, trigger);
+				}
+			});
+		}
+
+		List<DecisionInfo[]> profiles = new ArrayList<DecisionInfo[]>(tasks.size());
+		for (Future<DecisionInfo[]> future : executor.invokeAll(tasks)) {
+			try {
+				profiles.add(future.get());
+			}
+			catch (ExecutionException e) {
+				profiles.add(null);
+			}
+		}
+		return createResult(factory, profiles);
+	}
+
+	/** Predict {@code trigger}'s decision in exact ambiguity detection mode
+	 *  and return the parser's profile, or {@code null} if the prediction
+	 *  failed.
+	 */
+	protected DecisionInfo[] analyze(ParserFactory factory, Trigger trigger) {
+		try {
+			CommonTokenStream tokens = new CommonTokenStream(new ListTokenSource(trigger.getTokens()));
+			tokens.fill(); // adaptivePredict expects a stream that has started
+			Parser parser = factory.createParser(tokens);
+			parser.removeErrorListeners();
+			parser.setBuildParseTree(false);
+			parser.setProfile(true);
+			parser.getInterpreter().setPredictionMode(PredictionMode.LL_EXACT_AMBIG_DETECTION);
+
+			ParserRuleContext outerContext = trigger.createOuterContext();
+			DecisionState decisionState = parser.getATN().getDecisionState(trigger.decision);
+			if ( parser.getInterpreter().decisionToDFA[trigger.decision].isPrecedenceDfa() ) {
+				parser.enterRecursionRule(outerContext, decisionState.stateNumber, decisionState.ruleIndex, trigger.precedence);
+			}
+			else {
+				parser.setState(decisionState.stateNumber);
+			}
+
+			try {
+				parser.getInterpreter().adaptivePredict(tokens, trigger.decision, outerContext);
+			}
+			catch (RecognitionException e) {
+				// no viable alternative; the profile has it in DecisionInfo.errors
+			}
+
+			return parser.getParseInfo().getDecisionInfo();
+		}
+		catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	protected Result createResult(ParserFactory factory, List<DecisionInfo[]> profiles) {
+		TokenStream empty = new CommonTokenStream(new ListTokenSource(Collections.<Token>emptyList()));
+		int n = factory.createParser(empty).getATN().getNumberOfDecisions();
+		DecisionInfo[] decisions = new DecisionInfo[n];
+		for (int i = 0; i < n; i++) {
+			decisions[i] = new DecisionInfo(i);
+		}
+
+		int failures = 0;
+		for (DecisionInfo[] profile : profiles) {
+			if ( profile==null ) {
+				failures++;
+				continue;
+			}
+
+			for (int i = 0; i < n; i++) {
+				add(decisions[i], profile[i]);
+			}
+		}
+		return new Result(decisions, profiles.size(), failures);
+	}
+
+	/** Add the profile {@code b} of a decision to {@code a}. */
+	protected static void add(DecisionInfo a, DecisionInfo b) {
+		a.invocations += b.invocations;
+		a.timeInPrediction += b.timeInPrediction;
+		a.SLL_TotalLook += b.SLL_TotalLook;
+		a.SLL_MinLook = minLook(a.SLL_MinLook, b.SLL_MinLook);
+		if ( b.SLL_MaxLook > a.SLL_MaxLook ) {
+			a.SLL_MaxLook = b.SLL_MaxLook;
+			a.SLL_MaxLookEvent = b.SLL_MaxLookEvent;
+		}
+
+		a.LL_TotalLook += b.LL_TotalLook;
+		a.LL_MinLook = minLook(a.LL_MinLook, b.LL_MinLook);
+		if ( b.LL_MaxLook > a.LL_MaxLook ) {
+			a.LL_MaxLook = b.LL_MaxLook;
+			a.LL_MaxLookEvent = b.LL_MaxLookEvent;
+		}
+
+		a.contextSensitivities.addAll(b.contextSensitivities);
+		a.errors.addAll(b.errors);
+		a.ambiguities.addAll(b.ambiguities);
+		a.predicateEvals.addAll(b.predicateEvals);
+		a.SLL_ATNTransitions += b.SLL_ATNTransitions;
+		a.SLL_DFATransitions += b.SLL_DFATransitions;
+		a.LL_Fallback += b.LL_Fallback;
+		a.LL_ATNTransitions += b.LL_ATNTransitions;
+		a.LL_DFATransitions += b.LL_DFATransitions;
+	}
+
+	/** The profiler uses 0 for a minimum it has not seen yet. */
+	private static long minLook(long a, long b) {
+		if ( a==0 ) return b;
+		if ( b==0 ) return a;
+		return Math.min(a, b);
+	}
+}
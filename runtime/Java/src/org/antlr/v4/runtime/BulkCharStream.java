@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+/**
+ * A {@link CharStream} that can examine and consume runs of characters in
+ * one call rather than one {@link #LA}/{@link #consume} pair per character.
+ * The lexer uses it to get through identifiers, whitespace, comments and
+ * strings quickly.
+ *
+ * <p>Character classes are given as a {@code boolean[]} indexed by code
+ * point: {@code c} is in {@code set} if {@code c < set.length && set[c]}.
+ * A table of 128 or 256 entries covers ASCII or Latin-1 text, and the
+ * implementations reduce to a table lookup per character.</p>
+ *
+ * @since 4.7.1
+ */
+public interface BulkCharStream extends CharStream {
+	/**
+	 * Return the number of consecutive symbols in {@code set}, starting with
+	 * {@code LA(1)}, without consuming them. The result is at most
+	 * {@code max}. A stream may stop short of the end of the run, for
+	 * example at a buffer boundary, so a caller that wants the whole run
+	 * must call again after {@link #skip}ping what it was given.
+	 */
+	int runLength(boolean[] set, int max);
+
+	/** Return how many of the next {@code n} symbols are {@code c}.
+	 *  The {@code n} symbols must be available, for example because
+	 *  {@link #runLength} just reported them.
+	 */
+	int count(int c, int n);
+
+	/** Return the offset from {@code LA(1)} of the last {@code c} among the
+	 *  next {@code n} symbols, or -1 if there is none.
+	 */
+	int lastIndexOf(int c, int n);
+
+	/** Consume {@code n} symbols, as if by {@code n} calls to {@link #consume}. */
+	void skip(int n);
+}
@@ -177,6 +177,21 @@ public final class CharStreams {
 			IntStream.UNKNOWN_SOURCE_NAME);
 	}
 
+	/**
+	 * Creates a {@link CharStream} that decodes an opened
+	 * {@link ReadableByteChannel} block by block as the lexer asks for
+	 * characters, rather than reading it all up front. Only the characters
+	 * since the oldest mark are kept in memory.
+	 *
+	 * Does not close the {@code channel}. See
+	 * {@link UnbufferedChannelCharStream} for the caveats of unbuffered input.
+	 *
+	 * @since 4.7.1
+	 */
+	public static CharStream unbufferedFromChannel(ReadableByteChannel channel, Charset charset) {
+		return new UnbufferedChannelCharStream(channel, charset);
+	}
+
 	/**
 	 * Creates a {@link CharStream} given a {@link Reader}. Closes
 	 * the reader before returning.
@@ -8,6 +8,7 @@ package org.antlr.v4.runtime;
 
 import org.antlr.v4.runtime.misc.Interval;
 
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -18,7 +19,7 @@ import java.nio.charset.StandardCharsets;
  * Use this if you need to parse input which potentially contains
  * Unicode values > U+FFFF.
  */
-public abstract class CodePointCharStream implements CharStream {
+public abstract class CodePointCharStream implements BulkCharStream {
 	protected final int size;
 	protected final String name;
 
@@ -40,6 +41,15 @@ public abstract class CodePointCharStream implements CharStream {
 	// Visible for testing.
 	abstract Object getInternalStorage();
 
+	/**
+	 * Return a stream over the same code points, positioned at index 0.
+	 * The storage is shared rather than copied, so this is cheap, and each
+	 * stream can be read by a different thread.
+	 *
+	 * @since 4.7.1
+	 */
+	public abstract CodePointCharStream duplicate();
+
 	/**
 	 * Constructs a {@link CodePointCharStream} which provides access
 	 * to the Unicode code points stored in {@code codePointBuffer}.
@@ -108,6 +118,19 @@ public abstract class CodePointCharStream implements CharStream {
 		return size;
 	}
 
+	@Override
+	public final void skip(int n) {
+		if (n < 0 || n > size - position) {
+			throw new IllegalArgumentException("cannot skip " + n + " symbols at " + position);
+		}
+		position += n;
+	}
+
+	/** The end of a scan of at most {@code n} symbols from {@link #position}. */
+	final int scanLimit(int n) {
+		return position + Math.max(0, Math.min(n, size - position));
+	}
+
 	/** mark/release do nothing; we have entire buffer */
 	@Override
 	public final int mark() {
@@ -137,6 +160,55 @@ public abstract class CodePointCharStream implements CharStream {
 		return getText(Interval.of(0, size - 1));
 	}
 
+	/**
+	 * Return the text for the given interval like {@link #getText}, but as a
+	 * view over the stream's storage where possible rather than a new
+	 * {@link String}. Streams holding code points above U+FFFF can't be
+	 * viewed as UTF-16 in place and return a {@link String}.
+	 *
+	 * @since 4.7.1
+	 */
+	public abstract CharSequence getTextAsCharSequence(Interval interval);
+
+	/** A {@link CharSequence} over Latin-1 bytes, one {@code char} each. */
+	private static final class Latin1CharSequence implements CharSequence {
+		private final byte[] bytes;
+		private final int offset;
+		private final int length;
+
+		Latin1CharSequence(byte[] bytes, int offset, int length) {
+			this.bytes = bytes;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= length) {
+				throw new IndexOutOfBoundsException(String.valueOf(index));
+			}
+			return (char)(bytes[offset + index] & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			if (start < 0 || end > length || start > end) {
+				throw new IndexOutOfBoundsException("[" + start + ", " + end + ")");
+			}
+			return new Latin1CharSequence(bytes, offset + start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+		}
+	}
+
 	// 8-bit storage for code points <= U+00FF.
 	private static final class CodePoint8BitCharStream extends CodePointCharStream {
 		private final byte[] byteArray;
@@ -160,6 +232,13 @@ public abstract class CodePointCharStream implements CharStream {
 			return new String(byteArray, startIdx, len, StandardCharsets.ISO_8859_1);
 		}
 
+		@Override
+		public CharSequence getTextAsCharSequence(Interval interval) {
+			int startIdx = Math.min(interval.a, size);
+			int len = Math.min(interval.b - interval.a + 1, size - startIdx);
+			return new Latin1CharSequence(byteArray, startIdx, Math.max(len, 0));
+		}
+
 		@Override
 		public int LA(int i) {
 			int offset;
@@ -183,10 +262,51 @@ public abstract class CodePointCharStream implements CharStream {
 			throw new UnsupportedOperationException("Not reached");
 		}
 
+		@Override
+		public int runLength(boolean[] set, int max) {
+			int limit = scanLimit(max);
+			int i = position;
+			while (i < limit) {
+				int c = byteArray[i] & 0xFF;
+				if (c >= set.length || !set[c]) {
+					break;
+				}
+				i++;
+			}
+			return i - position;
+		}
+
+		@Override
+		public int count(int c, int n) {
+			int limit = scanLimit(n);
+			int count = 0;
+			for (int i = position; i < limit; i++) {
+				if ((byteArray[i] & 0xFF) == c) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		@Override
+		public int lastIndexOf(int c, int n) {
+			for (int i = scanLimit(n) - 1; i >= position; i--) {
+				if ((byteArray[i] & 0xFF) == c) {
+					return i - position;
+				}
+			}
+			return -1;
+		}
+
 		@Override
 		Object getInternalStorage() {
 			return byteArray;
 		}
+
+		@Override
+		public CodePointCharStream duplicate() {
+			return new CodePoint8BitCharStream(0, size, name, byteArray, 0);
+		}
 	}
 
 	// 16-bit internal storage for code points between U+0100 and U+FFFF.
@@ -215,6 +335,14 @@ public abstract class CodePointCharStream implements CharStream {
 			return new String(charArray, startIdx, len);
 		}
 
+		@Override
+		public CharSequence getTextAsCharSequence(Interval interval) {
+			int startIdx = Math.min(interval.a, size);
+			int len = Math.min(interval.b - interval.a + 1, size - startIdx);
+			// no surrogates here either, so the chars are the UTF-16 text
+			return CharBuffer.wrap(charArray, startIdx, Math.max(len, 0));
+		}
+
 		@Override
 		public int LA(int i) {
 			int offset;
@@ -238,10 +366,51 @@ public abstract class CodePointCharStream implements CharStream {
 			throw new UnsupportedOperationException("Not reached");
 		}
 
+		@Override
+		public int runLength(boolean[] set, int max) {
+			int limit = scanLimit(max);
+			int i = position;
+			while (i < limit) {
+				int c = charArray[i];
+				if (c >= set.length || !set[c]) {
+					break;
+				}
+				i++;
+			}
+			return i - position;
+		}
+
+		@Override
+		public int count(int c, int n) {
+			int limit = scanLimit(n);
+			int count = 0;
+			for (int i = position; i < limit; i++) {
+				if ((charArray[i]) == c) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		@Override
+		public int lastIndexOf(int c, int n) {
+			for (int i = scanLimit(n) - 1; i >= position; i--) {
+				if ((charArray[i]) == c) {
+					return i - position;
+				}
+			}
+			return -1;
+		}
+
 		@Override
 		Object getInternalStorage() {
 			return charArray;
 		}
+
+		@Override
+		public CodePointCharStream duplicate() {
+			return new CodePoint16BitCharStream(0, size, name, charArray, 0);
+		}
 	}
 
 	// 32-bit internal storage for code points between U+10000 and U+10FFFF.
@@ -266,6 +435,11 @@ public abstract class CodePointCharStream implements CharStream {
 			return new String(intArray, startIdx, len);
 		}
 
+		@Override
+		public CharSequence getTextAsCharSequence(Interval interval) {
+			return getText(interval);
+		}
+
 		@Override
 		public int LA(int i) {
 			int offset;
@@ -289,9 +463,50 @@ public abstract class CodePointCharStream implements CharStream {
 			throw new UnsupportedOperationException("Not reached");
 		}
 
+		@Override
+		public int runLength(boolean[] set, int max) {
+			int limit = scanLimit(max);
+			int i = position;
+			while (i < limit) {
+				int c = intArray[i];
+				if (c >= set.length || !set[c]) {
+					break;
+				}
+				i++;
+			}
+			return i - position;
+		}
+
+		@Override
+		public int count(int c, int n) {
+			int limit = scanLimit(n);
+			int count = 0;
+			for (int i = position; i < limit; i++) {
+				if ((intArray[i]) == c) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		@Override
+		public int lastIndexOf(int c, int n) {
+			for (int i = scanLimit(n) - 1; i >= position; i--) {
+				if ((intArray[i]) == c) {
+					return i - position;
+				}
+			}
+			return -1;
+		}
+
 		@Override
 		Object getInternalStorage() {
 			return intArray;
 		}
+
+		@Override
+		public CodePointCharStream duplicate() {
+			return new CodePoint32BitCharStream(0, size, name, intArray, 0);
+		}
 	}
 }
@@ -174,6 +174,31 @@ public class CommonToken implements WritableToken, Serializable {
 		}
 	}
 
+	/**
+	 * Return the same text as {@link #getText}, without copying it out of the
+	 * input when the input is a {@link CodePointCharStream}. The result is a
+	 * view over the stream's storage and stays valid as long as the stream
+	 * does; call {@link Object#toString} on it to keep a {@link String}.
+	 *
+	 * @see org.antlr.v4.runtime.misc.CharSequences
+	 * @since 4.7.1
+	 */
+	public CharSequence getTextAsCharSequence() {
+		if ( text!=null ) {
+			return text;
+		}
+
+		CharStream input = getInputStream();
+		if ( !(input instanceof CodePointCharStream) ) return getText();
+		int n = input.size();
+		if ( start<n && stop<n) {
+			return ((CodePointCharStream)input).getTextAsCharSequence(Interval.of(start,stop));
+		}
+		else {
+			return "<EOF>";
+		}
+	}
+
 	/**
 	 * Explicitly set the text for this token. If {code text} is not
 	 * {@code null}, then {@link #getText} will return this value rather than
@@ -8,6 +8,7 @@ package org.antlr.v4.runtime;
 
 import org.antlr.v4.runtime.misc.Interval;
 import org.antlr.v4.runtime.misc.Pair;
+import org.antlr.v4.runtime.misc.TextInterner;
 
 /**
  * This default implementation of {@link TokenFactory} creates
@@ -40,6 +41,15 @@ public class CommonTokenFactory implements TokenFactory<CommonToken> {
 	 */
 	protected final boolean copyText;
 
+	/**
+	 * When not {@code null}, every token's text is set to the string this
+	 * interner returns for it, so repeated text such as identifiers shares
+	 * one {@link String}.
+	 *
+	 * @since 4.7.1
+	 */
+	protected final TextInterner interner;
+
 	/**
 	 * Constructs a {@link CommonTokenFactory} with the specified value for
 	 * {@link #copyText}.
@@ -50,7 +60,24 @@ public class CommonTokenFactory implements TokenFactory<CommonToken> {
 	 *
 	 * @param copyText The value for {@link #copyText}.
 	 */
-	public CommonTokenFactory(boolean copyText) { this.copyText = copyText; }
+	public CommonTokenFactory(boolean copyText) {
+		this.copyText = copyText;
+		this.interner = null;
+	}
+
+	/**
+	 * Constructs a {@link CommonTokenFactory} that copies token text through
+	 * {@code interner}, as {@link #copyText} does, but without creating a new
+	 * string for text it has already seen. Like the interner, the factory
+	 * should be used by one lexer at a time.
+	 *
+	 * @param interner The value for {@link #interner}.
+	 * @since 4.7.1
+	 */
+	public CommonTokenFactory(TextInterner interner) {
+		this.copyText = true;
+		this.interner = interner;
+	}
 
 	/**
 	 * Constructs a {@link CommonTokenFactory} with {@link #copyText} set to
@@ -73,6 +100,9 @@ public class CommonTokenFactory implements TokenFactory<CommonToken> {
 		if ( text!=null ) {
 			t.setText(text);
 		}
+		else if ( interner!=null && source.b != null ) {
+			t.setText(interner.intern(t.getTextAsCharSequence()));
+		}
 		else if ( copyText && source.b != null ) {
 			t.setText(source.b.getText(Interval.of(start,stop)));
 		}
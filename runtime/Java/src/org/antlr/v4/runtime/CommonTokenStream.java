@@ -6,6 +6,8 @@
 
 package org.antlr.v4.runtime;
 
+import org.antlr.v4.runtime.misc.IntegerList;
+
 /**
  * This class extends {@link BufferedTokenStream} with functionality to filter
  * token streams to tokens on a particular channel (tokens where
@@ -65,6 +67,33 @@ public class CommonTokenStream extends BufferedTokenStream {
         this.channel = channel;
     }
 
+	/**
+	 * The token indexes of the tokens on {@link #channel}, in order, followed
+	 * by the index of the EOF token once it has been fetched. Entry {@code k}
+	 * is the physical index of the {@code k}th token the lookahead methods
+	 * see.
+	 *
+	 * @since 4.7.1
+	 */
+	protected final IntegerList onChannel = new IntegerList();
+
+	/**
+	 * For each buffered token, the number of entries of {@link #onChannel}
+	 * that come before it. Together with {@link #onChannel} this makes
+	 * {@link #LT}, {@link #LB} and the on-channel searches constant time
+	 * instead of a scan over the off-channel tokens in between.
+	 *
+	 * <p>Both lists are extended lazily from {@link #tokens}, and rebuilt if
+	 * {@link #channel} changes. Changing the channel of a token after it was
+	 * buffered is not detected.</p>
+	 *
+	 * @since 4.7.1
+	 */
+	protected final IntegerList onChannelBefore = new IntegerList();
+
+	/** The channel {@link #onChannel} was built for. */
+	private int indexedChannel = Token.DEFAULT_CHANNEL;
+
 	@Override
 	protected int adjustSeekIndex(int i) {
 		return nextTokenOnChannel(i, channel);
@@ -74,16 +103,10 @@ public class CommonTokenStream extends BufferedTokenStream {
     protected Token LB(int k) {
         if ( k==0 || (p-k)<0 ) return null;
 
-        int i = p;
-        int n = 1;
-        // find k good tokens looking backwards
-        while ( n<=k && i>0 ) {
-            // skip off-channel tokens
-            i = previousTokenOnChannel(i - 1, channel);
-            n++;
-        }
-        if ( i<0 ) return null;
-        return tokens.get(i);
+		indexChannel();
+		int n = onChannelBefore.get(p) - k;
+		if ( n<0 ) return null;
+		return tokens.get(onChannel.get(n));
     }
 
     @Override
@@ -92,29 +115,98 @@ public class CommonTokenStream extends BufferedTokenStream {
         lazyInit();
         if ( k == 0 ) return null;
         if ( k < 0 ) return LB(-k);
-        int i = p;
-        int n = 1; // we know tokens[p] is a good one
-        // find k good tokens
-        while ( n<k ) {
-            // skip off-channel tokens, but make sure to not look past EOF
-			if (sync(i + 1)) {
-				i = nextTokenOnChannel(i + 1, channel);
-			}
-            n++;
-        }
-//		if ( i>range ) range = i;
-        return tokens.get(i);
+		indexChannel();
+		// tokens[p] is on channel, so it is the first one at or after p
+		return tokens.get(onChannelIndex(onChannelBefore.get(p) + k - 1));
     }
 
+	@Override
+	protected int nextTokenOnChannel(int i, int channel) {
+		if ( channel!=this.channel ) {
+			return super.nextTokenOnChannel(i, channel);
+		}
+
+		sync(i);
+		if (i >= size()) {
+			return size() - 1;
+		}
+
+		indexChannel();
+		return onChannelIndex(onChannelBefore.get(i));
+	}
+
+	@Override
+	protected int previousTokenOnChannel(int i, int channel) {
+		if ( channel!=this.channel ) {
+			return super.previousTokenOnChannel(i, channel);
+		}
+
+		sync(i);
+		if (i >= size()) {
+			// the EOF token is on every channel
+			return size() - 1;
+		}
+
+		indexChannel();
+		int n = onChannelBefore.get(i);
+		if ( n<onChannel.size() && onChannel.get(n)==i ) {
+			return i;
+		}
+
+		return n > 0 ? onChannel.get(n - 1) : -1;
+	}
+
+	@Override
+	public void setTokenSource(TokenSource tokenSource) {
+		super.setTokenSource(tokenSource);
+		onChannel.clear();
+		onChannelBefore.clear();
+	}
+
+	/**
+	 * Return the token index of the {@code n}th on-channel token, fetching
+	 * tokens as needed. Return the index of the EOF token if there are
+	 * fewer than {@code n + 1} on-channel tokens.
+	 */
+	protected int onChannelIndex(int n) {
+		while ( n>=onChannel.size() && !fetchedEOF ) {
+			fetch(n - onChannel.size() + 1);
+			indexChannel();
+		}
+
+		if ( n>=onChannel.size() ) {
+			return onChannel.get(onChannel.size() - 1);
+		}
+
+		return onChannel.get(n);
+	}
+
+	/** Bring {@link #onChannel} and {@link #onChannelBefore} up to date
+	 *  with {@link #tokens}.
+	 */
+	protected void indexChannel() {
+		if ( indexedChannel!=channel || onChannelBefore.size()>tokens.size() ) {
+			onChannel.clear();
+			onChannelBefore.clear();
+			indexedChannel = channel;
+		}
+
+		for (int i = onChannelBefore.size(); i < tokens.size(); i++) {
+			onChannelBefore.add(onChannel.size());
+			Token t = tokens.get(i);
+			if ( t.getChannel()==channel || t.getType()==Token.EOF ) {
+				onChannel.add(i);
+			}
+		}
+	}
+
 	/** Count EOF just once. */
 	public int getNumberOfOnChannelTokens() {
-		int n = 0;
 		fill();
-		for (int i = 0; i < tokens.size(); i++) {
-			Token t = tokens.get(i);
-			if ( t.getChannel()==channel ) n++;
-			if ( t.getType()==Token.EOF ) break;
-		}
+		indexChannel();
+		int n = onChannel.size();
+		Token eof = tokens.get(onChannel.get(n - 1));
+		if ( eof.getType()==Token.EOF && eof.getChannel()!=channel ) n--;
 		return n;
 	}
 }
@@ -8,7 +8,6 @@ package org.antlr.v4.runtime;
 
 import org.antlr.v4.runtime.atn.ATN;
 import org.antlr.v4.runtime.atn.ATNState;
-import org.antlr.v4.runtime.atn.RuleTransition;
 import org.antlr.v4.runtime.misc.IntervalSet;
 import org.antlr.v4.runtime.misc.Pair;
 
@@ -740,19 +739,7 @@ public class DefaultErrorStrategy implements ANTLRErrorStrategy {
 	 */
 	protected IntervalSet getErrorRecoverySet(Parser recognizer) {
 		ATN atn = recognizer.getInterpreter().atn;
-		RuleContext ctx = recognizer._ctx;
-		IntervalSet recoverSet = new IntervalSet();
-		while ( ctx!=null && ctx.invokingState>=0 ) {
-			// compute what follows who invoked us
-			ATNState invokingState = atn.states.get(ctx.invokingState);
-			RuleTransition rt = (RuleTransition)invokingState.transition(0);
-			IntervalSet follow = atn.nextTokens(rt.followState);
-			recoverSet.addAll(follow);
-			ctx = ctx.parent;
-		}
-        recoverSet.remove(Token.EPSILON);
-//		System.out.println("recover set "+recoverSet.toString(recognizer.getTokenNames()));
-		return recoverSet;
+		return atn.getErrorRecoverySet(recognizer._ctx);
 	}
 
 	/** Consume tokens until one matches the given token set. */
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.atn.ParseInfo;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.atn.ProfilingATNSimulator;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills the DFA caches of a grammar ahead of time by lexing and parsing a
+ * sample corpus, so the first real inputs don't pay for building them.
+ *
+ * <p>Generated lexers and parsers keep their DFA in static fields shared by
+ * every instance, so whatever the warmer's instances learn is available to
+ * all later ones. ({@link LexerInterpreter} and {@link ParserInterpreter}
+ * instances each have their own, so warming them up only helps the
+ * instances the driver returned.)</p>
+ *
+ * <p>Each sample is parsed the way a two-stage parse would be: first in
+ * {@link PredictionMode#SLL} with a {@link BailErrorStrategy}, and then in
+ * {@link PredictionMode#LL} if SLL fails. Parse trees are not built, and
+ * errors are not reported. An exception thrown from a sample, for example
+ * by an action, is counted in {@link Result#failures} and the warmer moves
+ * on to the next sample.</p>
+ *
+ * <p>{@link #warmUpInBackground} runs the warm-up on an executor. A service
+ * can hold traffic until {@link #awaitReady} returns, or poll
+ * {@link #isReady}.</p>
+ *
+ * @since 4.7.1
+ */
+public class GrammarWarmer {
+	/** Creates the recognizers for a grammar and starts a parse. It is called
+	 *  from the thread running the warm-up.
+	 */
+	public interface Driver {
+		Lexer createLexer(CharStream input);
+
+		Parser createParser(TokenStream input);
+
+		/** Parse from the start rule, for example by calling
+		 *  {@code ((MyParser)parser).compilationUnit()}.
+		 */
+		void parse(Parser parser);
+	}
+
+	/** What a warm-up did and how large the DFA caches are afterwards. */
+	public static class Result {
+		/** The number of samples lexed and parsed. */
+		public final int samples;
+
+		/** The number of samples whose parse threw an exception. */
+		public final int failures;
+
+		/** The number of DFA states over all lexer modes. */
+		public final int lexerDFASize;
+
+		/** The parser's decisions; only {@link ParseInfo#getDFASize} and
+		 *  {@link ParseInfo#getDFASize(int)} are meaningful, since the
+		 *  warm-up itself is not profiled.
+		 */
+		public final ParseInfo parseInfo;
+
+		public Result(int samples, int failures, int lexerDFASize, ParseInfo parseInfo) {
+			this.samples = samples;
+			this.failures = failures;
+			this.lexerDFASize = lexerDFASize;
+			this.parseInfo = parseInfo;
+		}
+
+		@Override
+		public String toString() {
+			int parserDFASize = parseInfo != null ? parseInfo.getDFASize() : 0;
+			return samples + " samples, " + failures + " failed, " +
+				lexerDFASize + " lexer DFA states, " + parserDFASize + " parser DFA states";
+		}
+	}
+
+	protected final Driver driver;
+
+	private final CountDownLatch ready = new CountDownLatch(1);
+
+	public GrammarWarmer(Driver driver) {
+		this.driver = driver;
+	}
+
+	/** Warm up on the calling thread. */
+	public Result warmUp(Iterable<? extends CharStream> corpus) {
+		try {
+			int samples = 0;
+			int failures = 0;
+			Lexer lexer = null;
+			Parser parser = null;
+			for (CharStream sample : corpus) {
+				lexer = driver.createLexer(sample);
+				lexer.removeErrorListeners();
+				CommonTokenStream tokens = new CommonTokenStream(lexer);
+				parser = driver.createParser(tokens);
+				parser.removeErrorListeners();
+				parser.setBuildParseTree(false);
+				samples++;
+				try {
+					tokens.fill();
+					parse(parser, tokens);
+				}
+				catch (RuntimeException e) {
+					failures++;
+				}
+			}
+
+			ParseInfo parseInfo = parser != null ? new ParseInfo(new ProfilingATNSimulator(parser)) : null;
+			return new Result(samples, failures, lexer != null ? getDFASize(lexer) : 0, parseInfo);
+		}
+		finally {
+			ready.countDown();
+		}
+	}
+
+	/** Warm up on {@code executor}. The future's result is the same as
+	 *  {@link #warmUp}'s.
+	 */
+	public Future<Result> warmUpInBackground(final Iterable<? extends CharStream> corpus, ExecutorService executor) {
+		return executor.submit(new Callable<Result>() {
+			@Override
+			public Result call() {
+				return warmUp(corpus);
+			}
+		});
+	}
+
+	/** Return {@code true} once a warm-up has finished, successfully or not. */
+	public boolean isReady() {
+		return ready.getCount() == 0;
+	}
+
+	/** Wait until a warm-up has finished. */
+	public void awaitReady() throws InterruptedException {
+		ready.await();
+	}
+
+	/** Wait until a warm-up has finished or {@code timeout} passes.
+	 *
+	 * @return {@code true} if the warm-up finished
+	 */
+	public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+		return ready.await(timeout, unit);
+	}
+
+	/** Parse in SLL mode, and again in LL mode if that fails. */
+	protected void parse(Parser parser, TokenStream tokens) {
+		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+		parser.setErrorHandler(new BailErrorStrategy());
+		try {
+			driver.parse(parser);
+		}
+		catch (ParseCancellationException ex) {
+			tokens.seek(0);
+			parser.reset();
+			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+			parser.setErrorHandler(new DefaultErrorStrategy());
+			driver.parse(parser);
+		}
+	}
+
+	protected static int getDFASize(Lexer lexer) {
+		int n = 0;
+		for (DFA dfa : lexer.getInterpreter().decisionToDFA) {
+			n += dfa.states.size();
+		}
+		return n;
+	}
+}
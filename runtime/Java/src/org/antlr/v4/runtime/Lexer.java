@@ -78,6 +78,11 @@ public abstract class Lexer extends Recognizer<Integer, LexerATNSimulator>
 	 */
 	public String _text;
 
+	/** {@link #nextToken} returns {@code null} rather than match a token
+	 *  starting at or after this index; -1 for no limit.
+	 */
+	protected int _stopIndex = -1;
+
 	public Lexer() { }
 
 	public Lexer(CharStream input) {
@@ -97,6 +102,7 @@ public abstract class Lexer extends Recognizer<Integer, LexerATNSimulator>
 		_tokenStartCharPositionInLine = -1;
 		_tokenStartLine = -1;
 		_text = null;
+		_stopIndex = -1;
 
 		_hitEOF = false;
 		_mode = Lexer.DEFAULT_MODE;
@@ -105,6 +111,60 @@ public abstract class Lexer extends Recognizer<Integer, LexerATNSimulator>
 		getInterpreter().reset();
 	}
 
+	/**
+	 * Capture where the lexer is in the input and which mode it is in, so
+	 * {@link #restore} can return to this point later. Call it between
+	 * tokens, not from an action.
+	 *
+	 * @since 4.7.1
+	 */
+	public LexerState snapshot() {
+		return new LexerState(_input.index(), getLine(), getCharPositionInLine(),
+							  _mode, _modeStack.toArray(), _hitEOF);
+	}
+
+	/**
+	 * Put the lexer back into {@code state}, which may come from another
+	 * lexer for the same grammar and input. The next call to
+	 * {@link #nextToken} matches the token starting at {@link LexerState#index}.
+	 *
+	 * @since 4.7.1
+	 */
+	public void restore(LexerState state) {
+		_input.seek(state.index);
+		_token = null;
+		_type = Token.INVALID_TYPE;
+		_channel = Token.DEFAULT_CHANNEL;
+		_tokenStartCharIndex = -1;
+		_tokenStartCharPositionInLine = -1;
+		_tokenStartLine = -1;
+		_text = null;
+
+		_hitEOF = state.hitEOF;
+		_mode = state.mode;
+		_modeStack.clear();
+		_modeStack.addAll(state.getModeStack());
+
+		setLine(state.line);
+		setCharPositionInLine(state.charPositionInLine);
+	}
+
+	/**
+	 * Make {@link #nextToken} stop at the first token, skipped tokens
+	 * included, that starts at or after {@code index}: it returns
+	 * {@code null} there, with the lexer between tokens as for
+	 * {@link #snapshot}. Pass -1 to lex to EOF again.
+	 *
+	 * @since 4.7.1
+	 */
+	public void setStopIndex(int index) {
+		_stopIndex = index;
+	}
+
+	public int getStopIndex() {
+		return _stopIndex;
+	}
+
 	/** Return a token from this source; i.e., match a token on the char
 	 *  stream.
 	 */
@@ -120,6 +180,10 @@ public abstract class Lexer extends Recognizer<Integer, LexerATNSimulator>
 		try{
 			outer:
 			while (true) {
+				if ( _stopIndex>=0 && _input.index()>=_stopIndex ) {
+					return null;
+				}
+
 				if (_hitEOF) {
 					emitEOF();
 					return _token;
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.MurmurHash;
+
+import java.util.Arrays;
+
+/**
+ * The state of a {@link Lexer} between two tokens: where it is in the input
+ * and which mode it is in. {@link Lexer#snapshot} takes one and
+ * {@link Lexer#restore} puts the lexer back into it, so lexing can stop and
+ * pick up again later, or start in the middle of the input.
+ *
+ * <p>Instances are immutable. A lexer that keeps more state in fields of
+ * its own, such as a nesting depth, can extend this class to carry those
+ * fields and override {@link Lexer#snapshot}, {@link Lexer#restore},
+ * {@link #equals} and {@link #hashCode}.</p>
+ *
+ * @since 4.7.1
+ */
+public class LexerState {
+	private static final int[] EMPTY_STACK = new int[0];
+
+	/** The index in the input of the next character to match. */
+	public final int index;
+
+	/** The line of the next character, starting at 1. */
+	public final int line;
+
+	/** The position of the next character within its line, starting at 0. */
+	public final int charPositionInLine;
+
+	/** The current mode, {@link Lexer#_mode}. */
+	public final int mode;
+
+	/** Whether the lexer has reached the end of the input and will only
+	 *  return EOF from now on, {@link Lexer#_hitEOF}.
+	 */
+	public final boolean hitEOF;
+
+	private final int[] modeStack;
+
+	public LexerState(int index, int line, int charPositionInLine, int mode, int[] modeStack, boolean hitEOF) {
+		this.index = index;
+		this.line = line;
+		this.charPositionInLine = charPositionInLine;
+		this.mode = mode;
+		this.modeStack = modeStack.length == 0 ? EMPTY_STACK : modeStack.clone();
+		this.hitEOF = hitEOF;
+	}
+
+	/** The state at {@code index}, {@code line} and {@code charPositionInLine}
+	 *  in the default mode with nothing pushed, which is how a lexer starts.
+	 */
+	public static LexerState at(int index, int line, int charPositionInLine) {
+		return new LexerState(index, line, charPositionInLine, Lexer.DEFAULT_MODE, EMPTY_STACK, false);
+	}
+
+	/** The modes pushed by {@link Lexer#pushMode}, bottom first. */
+	public int[] getModeStack() {
+		return modeStack.clone();
+	}
+
+	public int getModeStackSize() {
+		return modeStack.length;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if ( obj==this ) return true;
+		if ( obj==null || obj.getClass()!=getClass() ) return false;
+
+		LexerState other = (LexerState)obj;
+		return index == other.index
+			&& line == other.line
+			&& charPositionInLine == other.charPositionInLine
+			&& mode == other.mode
+			&& hitEOF == other.hitEOF
+			&& Arrays.equals(modeStack, other.modeStack);
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = MurmurHash.initialize();
+		hash = MurmurHash.update(hash, index);
+		hash = MurmurHash.update(hash, line);
+		hash = MurmurHash.update(hash, charPositionInLine);
+		hash = MurmurHash.update(hash, mode);
+		hash = MurmurHash.update(hash, hitEOF ? 1 : 0);
+		hash = MurmurHash.update(hash, Arrays.hashCode(modeStack));
+		return MurmurHash.finish(hash, 6);
+	}
+
+	@Override
+	public String toString() {
+		return "@" + index + " " + line + ":" + charPositionInLine +
+			" mode=" + mode + (modeStack.length > 0 ? " stack=" + Arrays.toString(modeStack) : "") +
+			(hitEOF ? " EOF" : "");
+	}
+}
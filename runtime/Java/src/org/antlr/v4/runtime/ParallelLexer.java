@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Lexes a {@link CodePointCharStream} in chunks on a {@link ForkJoinPool}
+ * and returns the same tokens a single lexer would.
+ *
+ * <p>The input is cut into chunks of about {@link #getChunkSize} code points.
+ * If a boundary character is given, each cut is moved to just after the
+ * next occurrence of it, such as the next newline. Each chunk is lexed by
+ * its own lexer from {@link #getFactory}. The lexer starts at the cut in
+ * the default mode with nothing pushed, at the line and column found by
+ * counting newlines. It stops at the start of the first token at or past
+ * the next cut, counting skipped tokens, using
+ * {@link Lexer#setStopIndex}.</p>
+ *
+ * <p>Every chunk's start state is guessed, so it is checked afterwards
+ * against where the previous chunk really stopped. When a token such as
+ * whitespace spans the cut, the previous chunk stops a little past it. The
+ * chunk then drops its tokens up to that point, provided it reached the
+ * same state there within its first {@link #SYNC_BOUNDARIES} token
+ * boundaries. Otherwise, such as when the cut falls inside a string or
+ * comment mode, the chunk is lexed again from where the previous one
+ * stopped. Pick a boundary character that only appears between tokens in
+ * the default mode and this rarely happens. The result is correct either
+ * way.</p>
+ *
+ * <p>Errors the chunk lexers report are held back until their chunk is
+ * known to be right. They are then passed to the error listeners the
+ * factory's lexer had, in input order. Tokens come from several lexers, so
+ * {@link Token#getTokenSource} differs between chunks.</p>
+ *
+ * @since 4.7.1
+ */
+public class ParallelLexer {
+	/** Creates the lexer for one chunk. It is called from several threads. */
+	public interface LexerFactory {
+		Lexer createLexer(CharStream input);
+	}
+
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+	/** The number of token boundaries at the start of a chunk at which the
+	 *  previous chunk's end state is looked for.
+	 */
+	public static final int SYNC_BOUNDARIES = 32;
+
+	private static final ForkJoinPool DEFAULT_POOL = new ForkJoinPool();
+
+	protected final LexerFactory factory;
+
+	protected final ForkJoinPool pool;
+
+	protected final int chunkSize;
+
+	protected final int boundaryChar;
+
+	/** Lex in chunks of {@link #DEFAULT_CHUNK_SIZE} cut after newlines. */
+	public ParallelLexer(LexerFactory factory) {
+		this(factory, DEFAULT_POOL, DEFAULT_CHUNK_SIZE, '\n');
+	}
+
+	/**
+	 * @param factory creates the lexer for each chunk
+	 * @param pool the pool that lexes the chunks
+	 * @param chunkSize the number of code points per chunk
+	 * @param boundaryChar the code point to cut after, or -1 to cut
+	 * anywhere
+	 */
+	public ParallelLexer(LexerFactory factory, ForkJoinPool pool, int chunkSize, int boundaryChar) {
+		this.factory = factory;
+		this.pool = pool;
+		this.chunkSize = Math.max(chunkSize, 1);
+		this.boundaryChar = boundaryChar;
+	}
+
+	public LexerFactory getFactory() {
+		return factory;
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public int getBoundaryChar() {
+		return boundaryChar;
+	}
+
+	/**
+	 * Return all tokens of {@code input} up to and including EOF, with token
+	 * indexes numbered from 0. {@code input} itself is not read or moved.
+	 */
+	public List<Token> tokenize(CodePointCharStream input) {
+		List<Chunk> chunks = split(input);
+		if ( chunks.size()==1 || ForkJoinTask.inForkJoinPool() ) {
+			for (Chunk chunk : chunks) {
+				chunk.lex();
+			}
+		}
+		else {
+			final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(chunks.size());
+			for (final Chunk chunk : chunks) {
+				tasks.add(new RecursiveAction() {
+					@Override
+					protected void compute() {
+						chunk.lex();
+					}
+				});
+			}
+			pool.invoke(new RecursiveAction() {
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		}
+
+		List<Token> tokens = new ArrayList<Token>();
+		LexerState previousEnd = null;
+		for (Chunk chunk : chunks) {
+			Boundary from = previousEnd!=null ? chunk.findBoundary(previousEnd) : chunk.boundaries.get(0);
+			if ( from==null ) {
+				relex(chunk, previousEnd);
+				from = chunk.boundaries.get(0);
+			}
+			previousEnd = chunk.end;
+
+			chunk.reportErrors(from.errorCount);
+			for (Token t : chunk.tokens.subList(from.tokenCount, chunk.tokens.size())) {
+				if ( t instanceof WritableToken ) {
+					((WritableToken)t).setTokenIndex(tokens.size());
+				}
+				tokens.add(t);
+			}
+		}
+		return tokens;
+	}
+
+	/** Lex {@code chunk} again from {@code start}, where the previous chunk
+	 *  really stopped.
+	 */
+	protected void relex(Chunk chunk, LexerState start) {
+		chunk.start = start;
+		chunk.lex();
+	}
+
+	/** Cut {@code input} into chunks and guess the state at each cut. */
+	protected List<Chunk> split(CodePointCharStream input) {
+		CodePointCharStream scan = input.duplicate();
+		int size = scan.size();
+
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		Chunk first = new Chunk(input, null);
+		chunks.add(first);
+
+		int line = first.start.line;
+		int charPositionInLine = first.start.charPositionInLine;
+		int cut = 0;
+		while ( true ) {
+			int next = nextCut(scan, cut + chunkSize);
+			if ( next>=size ) break;
+
+			// line and column at the cut
+			scan.seek(cut);
+			int n = next - cut;
+			int newlines = scan.count('\n', n);
+			if ( newlines>0 ) {
+				line += newlines;
+				charPositionInLine = n - scan.lastIndexOf('\n', n) - 1;
+			}
+			else {
+				charPositionInLine += n;
+			}
+
+			chunks.get(chunks.size() - 1).stop = next;
+			chunks.add(new Chunk(input, LexerState.at(next, line, charPositionInLine)));
+			cut = next;
+		}
+		return chunks;
+	}
+
+	/** The first cut at or after {@code index}, or the input size if none. */
+	protected int nextCut(CodePointCharStream scan, int index) {
+		int size = scan.size();
+		if ( index>=size || boundaryChar<0 ) return Math.min(index, size);
+
+		scan.seek(index - 1);
+		while ( scan.index() < size && scan.LA(1)!=boundaryChar ) {
+			scan.consume();
+		}
+		return Math.min(scan.index() + 1, size);
+	}
+
+	/** A run of tokens lexed by one lexer. */
+	protected class Chunk {
+		protected final CodePointCharStream input;
+
+		/** Where lexing starts; {@code null} for the lexer's initial state. */
+		protected LexerState start;
+
+		/** Lexing stops at the first token that starts at or after this
+		 *  index.
+		 */
+		protected int stop;
+
+		protected LexerState end;
+
+		protected List<Token> tokens;
+
+		/** The state at the first {@link #SYNC_BOUNDARIES} token starts. */
+		protected List<Boundary> boundaries;
+
+		protected List<ANTLRErrorListener> listeners;
+
+		protected ErrorRecorder errors;
+
+		public Chunk(CodePointCharStream input, LexerState start) {
+			this.input = input;
+			this.stop = input.size();
+			if ( start==null ) {
+				start = factory.createLexer(input.duplicate()).snapshot();
+			}
+			this.start = start;
+		}
+
+		protected void lex() {
+			Lexer lexer = factory.createLexer(input.duplicate());
+			listeners = new ArrayList<ANTLRErrorListener>(lexer.getErrorListeners());
+			errors = new ErrorRecorder();
+			lexer.removeErrorListeners();
+			lexer.addErrorListener(errors);
+			lexer.restore(start);
+
+			int limit = stop>=input.size() ? -1 : stop;
+			tokens = new ArrayList<Token>();
+			boundaries = new ArrayList<Boundary>();
+			while ( true ) {
+				// step one token at a time while recording boundaries, so
+				// skipped tokens get theirs too
+				if ( boundaries.size() < SYNC_BOUNDARIES ) {
+					boundaries.add(new Boundary(lexer.snapshot(), tokens.size(), errors.errors.size()));
+					int next = lexer._input.index() + 1;
+					lexer.setStopIndex(limit<0 ? next : Math.min(limit, next));
+				}
+				else {
+					lexer.setStopIndex(limit);
+				}
+
+				Token t = lexer.nextToken();
+				if ( t==null ) {
+					if ( limit>=0 && lexer._input.index()>=limit ) break;
+					continue;
+				}
+				tokens.add(t);
+				if ( t.getType()==Token.EOF ) break;
+			}
+			end = lexer.snapshot();
+		}
+
+		/** The boundary at which this chunk was in {@code state}, if it is
+		 *  among the recorded ones.
+		 */
+		protected Boundary findBoundary(LexerState state) {
+			for (Boundary b : boundaries) {
+				if ( b.state.equals(state) ) return b;
+				if ( b.state.index>state.index ) break;
+			}
+			return null;
+		}
+
+		protected void reportErrors(int from) {
+			for (SyntaxError e : errors.errors.subList(from, errors.errors.size())) {
+				for (ANTLRErrorListener listener : listeners) {
+					listener.syntaxError(e.recognizer, e.offendingSymbol, e.line, e.charPositionInLine, e.msg, e.e);
+				}
+			}
+		}
+	}
+
+	/** A token start in a chunk and how much the chunk had produced by then. */
+	protected static class Boundary {
+		protected final LexerState state;
+		protected final int tokenCount;
+		protected final int errorCount;
+
+		public Boundary(LexerState state, int tokenCount, int errorCount) {
+			this.state = state;
+			this.tokenCount = tokenCount;
+			this.errorCount = errorCount;
+		}
+	}
+
+	protected static class SyntaxError {
+		protected final Recognizer<?, ?> recognizer;
+		protected final Object offendingSymbol;
+		protected final int line;
+		protected final int charPositionInLine;
+		protected final String msg;
+		protected final RecognitionException e;
+
+		public SyntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+			this.recognizer = recognizer;
+			this.offendingSymbol = offendingSymbol;
+			this.line = line;
+			this.charPositionInLine = charPositionInLine;
+			this.msg = msg;
+			this.e = e;
+		}
+	}
+
+	/** Holds a chunk's errors until we know the chunk is kept. */
+	protected static class ErrorRecorder extends BaseErrorListener {
+		protected final List<SyntaxError> errors = new ArrayList<SyntaxError>();
+
+		@Override
+		public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+			errors.add(new SyntaxError(recognizer, offendingSymbol, line, charPositionInLine, msg, e));
+		}
+	}
+}
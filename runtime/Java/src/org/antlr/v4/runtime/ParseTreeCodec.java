@@ -0,0 +1,477 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Pair;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ErrorNodeImpl;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.runtime.tree.TerminalNodeImpl;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of a {@link ParserRuleContext} tree together
+ * with its tokens, so parse results can be cached between pipeline stages
+ * or processes without reparsing.
+ *
+ * <p>The encoding is a header followed by fixed-size records, so a reader
+ * can find any token or node without decoding what comes before it:</p>
+ *
+ * <pre>
+ * header:  MAGIC VERSION tokenCount bufferedTokenCount nodeCount stringCount
+ * tokens:  type channel start stop line charPositionInLine tokenIndex text
+ * nodes:   kind ruleIndex class altNumber invokingState start stop childCount size
+ * strings: stringCount offsets, then (byte length, UTF-8 bytes) each
+ * </pre>
+ *
+ * <p>All values are big-endian 32-bit ints. Nodes are stored in pre-order.
+ * {@code kind} is {@link #RULE}, {@link #TERMINAL} or {@link #ERROR}; a
+ * leaf's {@code class} field holds its token instead. {@code ruleIndex} is
+ * kept apart from {@code kind} because contexts that aren't generated, such
+ * as a plain {@link ParserRuleContext}, report -1. {@code size} is the number of records in the node's subtree, so
+ * the next sibling of node {@code i} is node {@code i + size}. Token and
+ * class references index the token and string tables; -1 means none.</p>
+ *
+ * <p>Token text is stored only where it can't be recovered from the
+ * {@link CharStream}: tokens whose text was set explicitly or that have no
+ * input, unless {@code includeText} asks for all of it. A {@link Reader}
+ * given the original char stream reproduces every token's text.</p>
+ *
+ * <p>{@link Reader} works directly on a {@link ByteBuffer}, which may be a
+ * mapped file. It builds tokens when they are asked for. It only rebuilds
+ * the subtrees passed to {@link Reader#readTree(int, ParserRuleContext)},
+ * so a client can skip whole subtrees by record index. Rule nodes are
+ * rebuilt as instances of the context class that was written, which for
+ * generated parsers means the rule's or alternative label's context class.
+ * Label fields, arguments, return values, and locals of those contexts are
+ * not stored; everything reachable from the children list, such as the
+ * generated accessor methods, works as before.</p>
+ *
+ * @since 4.7.1
+ */
+public class ParseTreeCodec {
+	/** "ANTB" */
+	public static final int MAGIC = 0x414E5442;
+
+	public static final int VERSION = 2;
+
+	public static final int RULE = 0;
+	public static final int TERMINAL = -1;
+	public static final int ERROR = -2;
+
+	protected static final int HEADER_INTS = 6;
+	protected static final int TOKEN_INTS = 8;
+	protected static final int NODE_INTS = 9;
+
+	/**
+	 * Write {@code tree} and {@code tokens} to {@code out}.
+	 *
+	 * @param tree the root of the tree to write
+	 * @param tokens the token buffer the tree was parsed from, typically
+	 * {@link BufferedTokenStream#getTokens()}; tokens the tree refers to that
+	 * aren't in it, such as ones conjured up by error recovery, are appended.
+	 * If {@code null}, only the tokens in the tree are written.
+	 * @param includeText whether to store the text of every token rather than
+	 * just the text the char stream can't reproduce
+	 */
+	public static void write(ParserRuleContext tree, List<? extends Token> tokens, boolean includeText, OutputStream out)
+		throws IOException
+	{
+		new Writer(tokens, includeText).write(tree, out);
+	}
+
+	protected static class Writer {
+		protected final List<Token> tokens = new ArrayList<Token>();
+		protected final Map<Token, Integer> extraTokens = new IdentityHashMap<Token, Integer>();
+		protected final int bufferedTokenCount;
+		protected final boolean includeText;
+
+		protected final List<String> strings = new ArrayList<String>();
+		protected final Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+
+		protected int[] nodes = new int[NODE_INTS * 64];
+		protected int nodeCount;
+
+		public Writer(List<? extends Token> tokens, boolean includeText) {
+			if ( tokens!=null ) this.tokens.addAll(tokens);
+			this.bufferedTokenCount = this.tokens.size();
+			this.includeText = includeText;
+		}
+
+		public void write(ParserRuleContext tree, OutputStream out) throws IOException {
+			addNode(tree);
+
+			int[] tokenRecords = new int[TOKEN_INTS * tokens.size()];
+			for (int i = 0; i < tokens.size(); i++) {
+				Token t = tokens.get(i);
+				int r = i * TOKEN_INTS;
+				tokenRecords[r] = t.getType();
+				tokenRecords[r + 1] = t.getChannel();
+				tokenRecords[r + 2] = t.getStartIndex();
+				tokenRecords[r + 3] = t.getStopIndex();
+				tokenRecords[r + 4] = t.getLine();
+				tokenRecords[r + 5] = t.getCharPositionInLine();
+				tokenRecords[r + 6] = t.getTokenIndex();
+				tokenRecords[r + 7] = storesText(t) ? string(t.getText()) : -1;
+			}
+
+			List<byte[]> encoded = new ArrayList<byte[]>(strings.size());
+			for (String s : strings) {
+				encoded.add(s.getBytes(StandardCharsets.UTF_8));
+			}
+
+			DataOutputStream data = new DataOutputStream(out);
+			data.writeInt(MAGIC);
+			data.writeInt(VERSION);
+			data.writeInt(tokens.size());
+			data.writeInt(bufferedTokenCount);
+			data.writeInt(nodeCount);
+			data.writeInt(strings.size());
+			for (int v : tokenRecords) data.writeInt(v);
+			for (int i = 0; i < nodeCount * NODE_INTS; i++) data.writeInt(nodes[i]);
+			int offset = 0;
+			for (byte[] bytes : encoded) {
+				data.writeInt(offset);
+				offset += 4 + bytes.length;
+			}
+			for (byte[] bytes : encoded) {
+				data.writeInt(bytes.length);
+				data.write(bytes);
+			}
+			data.flush();
+		}
+
+		protected boolean storesText(Token t) {
+			if ( includeText || t.getInputStream()==null ) return t.getText()!=null;
+			if ( t instanceof CommonToken ) return ((CommonToken)t).text!=null;
+			return true;
+		}
+
+		/** Append the records of {@code t}'s subtree in pre-order. */
+		protected void addNode(ParseTree t) {
+			int node = nodeCount++;
+			if ( nodes.length < nodeCount * NODE_INTS ) {
+				nodes = Arrays.copyOf(nodes, nodes.length * 2);
+			}
+
+			int r = node * NODE_INTS;
+			if ( t instanceof TerminalNode ) {
+				nodes[r] = t instanceof ErrorNode ? ERROR : TERMINAL;
+				nodes[r + 1] = -1;
+				nodes[r + 2] = token(((TerminalNode)t).getSymbol());
+				nodes[r + 8] = 1;
+				return;
+			}
+
+			ParserRuleContext ctx = (ParserRuleContext)t;
+			nodes[r] = RULE;
+			nodes[r + 1] = ctx.getRuleIndex();
+			nodes[r + 2] = string(ctx.getClass().getName());
+			nodes[r + 3] = ctx.getAltNumber();
+			nodes[r + 4] = ctx.invokingState;
+			nodes[r + 5] = token(ctx.start);
+			nodes[r + 6] = token(ctx.stop);
+			int n = ctx.getChildCount();
+			nodes[r + 7] = n;
+			for (int i = 0; i < n; i++) {
+				addNode(ctx.getChild(i));
+			}
+			nodes[node * NODE_INTS + 8] = nodeCount - node;
+		}
+
+		protected int token(Token t) {
+			if ( t==null ) return -1;
+			int index = t.getTokenIndex();
+			if ( index>=0 && index<bufferedTokenCount && tokens.get(index)==t ) {
+				return index;
+			}
+
+			Integer extra = extraTokens.get(t);
+			if ( extra==null ) {
+				extra = tokens.size();
+				tokens.add(t);
+				extraTokens.put(t, extra);
+			}
+			return extra;
+		}
+
+		protected int string(String s) {
+			Integer index = stringIndex.get(s);
+			if ( index==null ) {
+				index = strings.size();
+				strings.add(s);
+				stringIndex.put(s, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Reads the encoding produced by {@link ParseTreeCodec#write} from a
+	 * {@link ByteBuffer}, building tokens and nodes only when asked for.
+	 */
+	public static class Reader {
+		protected final ByteBuffer buffer;
+		protected final Pair<TokenSource, CharStream> source;
+		protected final ClassLoader classLoader;
+
+		protected final int tokenCount;
+		protected final int bufferedTokenCount;
+		protected final int nodeCount;
+		protected final int stringCount;
+		protected final int tokensOffset;
+		protected final int nodesOffset;
+		protected final int stringOffsetsOffset;
+		protected final int stringsOffset;
+
+		protected final CommonToken[] tokens;
+		protected final String[] strings;
+		protected final Map<String, Constructor<?>> constructors = new HashMap<String, Constructor<?>>();
+
+		public Reader(ByteBuffer buffer) {
+			this(buffer, null, null, Reader.class.getClassLoader());
+		}
+
+		/**
+		 * @param buffer the encoded tree; read from its position on, without
+		 * changing it
+		 * @param tokenSource reported by the rebuilt tokens; may be {@code null}
+		 * @param input the char stream the tokens were lexed from, for the
+		 * text that wasn't stored; may be {@code null}
+		 * @param classLoader loads the context classes of rule nodes
+		 */
+		public Reader(ByteBuffer buffer, TokenSource tokenSource, CharStream input, ClassLoader classLoader) {
+			this.buffer = buffer.slice();
+			this.source = new Pair<TokenSource, CharStream>(tokenSource, input);
+			this.classLoader = classLoader;
+
+			if ( this.buffer.remaining() < HEADER_INTS * 4 || this.buffer.getInt(0)!=MAGIC ) {
+				throw new IllegalArgumentException("not an encoded parse tree");
+			}
+			int version = this.buffer.getInt(4);
+			if ( version!=VERSION ) {
+				throw new IllegalArgumentException("unsupported parse tree encoding version " + version);
+			}
+
+			tokenCount = this.buffer.getInt(8);
+			bufferedTokenCount = this.buffer.getInt(12);
+			nodeCount = this.buffer.getInt(16);
+			stringCount = this.buffer.getInt(20);
+			tokensOffset = HEADER_INTS * 4;
+			nodesOffset = tokensOffset + tokenCount * TOKEN_INTS * 4;
+			stringOffsetsOffset = nodesOffset + nodeCount * NODE_INTS * 4;
+			stringsOffset = stringOffsetsOffset + stringCount * 4;
+			tokens = new CommonToken[tokenCount];
+			strings = new String[stringCount];
+		}
+
+		public int getTokenCount() {
+			return tokenCount;
+		}
+
+		public CommonToken getToken(int i) {
+			CommonToken t = tokens[i];
+			if ( t==null ) {
+				int r = tokensOffset + i * TOKEN_INTS * 4;
+				t = new CommonToken(source, buffer.getInt(r), buffer.getInt(r + 4), buffer.getInt(r + 8), buffer.getInt(r + 12));
+				t.setLine(buffer.getInt(r + 16));
+				t.setCharPositionInLine(buffer.getInt(r + 20));
+				t.setTokenIndex(buffer.getInt(r + 24));
+				int text = buffer.getInt(r + 28);
+				if ( text>=0 ) t.setText(getString(text));
+				tokens[i] = t;
+			}
+			return t;
+		}
+
+		/** The token buffer that was written, excluding tokens that were
+		 *  only referenced from the tree.
+		 */
+		public List<Token> getTokens() {
+			final int size = bufferedTokenCount;
+			return new AbstractList<Token>() {
+				@Override
+				public Token get(int index) {
+					if ( index<0 || index>=size ) throw new IndexOutOfBoundsException(String.valueOf(index));
+					return getToken(index);
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+			};
+		}
+
+		public int getNodeCount() {
+			return nodeCount;
+		}
+
+		/** {@link #RULE}, {@link #TERMINAL} or {@link #ERROR}. */
+		public int getKind(int node) {
+			return nodeInt(node, 0);
+		}
+
+		/** The rule index of a rule node, or -1. */
+		public int getRuleIndex(int node) {
+			return nodeInt(node, 1);
+		}
+
+		public int getChildCount(int node) {
+			return nodeInt(node, 7);
+		}
+
+		/** The number of nodes in the subtree rooted at {@code node}. */
+		public int getSubtreeSize(int node) {
+			return nodeInt(node, 8);
+		}
+
+		/** The index of {@code node}'s next sibling, if it has one. */
+		public int getNextSibling(int node) {
+			return node + getSubtreeSize(node);
+		}
+
+		public ParserRuleContext readTree() {
+			return (ParserRuleContext)readTree(0, null);
+		}
+
+		/** Rebuild the subtree rooted at {@code node} and add it to
+		 *  {@code parent} if that isn't {@code null}.
+		 */
+		public ParseTree readTree(int node, ParserRuleContext parent) {
+			int kind = getKind(node);
+			if ( kind==TERMINAL || kind==ERROR ) {
+				CommonToken symbol = getToken(nodeInt(node, 2));
+				if ( kind==ERROR ) {
+					ErrorNode leaf = new ErrorNodeImpl(symbol);
+					if ( parent!=null ) parent.addErrorNode(leaf);
+					return leaf;
+				}
+				TerminalNode leaf = new TerminalNodeImpl(symbol);
+				if ( parent!=null ) parent.addChild(leaf);
+				return leaf;
+			}
+
+			ParserRuleContext ctx = createContext(getString(nodeInt(node, 2)), parent, nodeInt(node, 4), getRuleIndex(node));
+			ctx.setAltNumber(nodeInt(node, 3));
+			int start = nodeInt(node, 5);
+			int stop = nodeInt(node, 6);
+			ctx.start = start>=0 ? getToken(start) : null;
+			ctx.stop = stop>=0 ? getToken(stop) : null;
+			if ( parent!=null ) parent.addChild(ctx);
+
+			int n = getChildCount(node);
+			int child = node + 1;
+			for (int i = 0; i < n; i++) {
+				readTree(child, ctx);
+				child = getNextSibling(child);
+			}
+			return ctx;
+		}
+
+		/**
+		 * Create an empty context of class {@code className}. Generated
+		 * rule contexts have a {@code (ParserRuleContext, int)} constructor,
+		 * and alternative label contexts a constructor taking their rule's
+		 * context, which they copy. Classes that aren't a
+		 * {@link ParserRuleContext} are rejected without being initialized.
+		 */
+		protected ParserRuleContext createContext(String className, ParserRuleContext parent, int invokingState, int ruleIndex) {
+			try {
+				Constructor<?> constructor = constructors.get(className);
+				if ( constructor==null ) {
+					Class<?> c = Class.forName(className, false, classLoader);
+					if ( !ParserRuleContext.class.isAssignableFrom(c) ) {
+						throw new IllegalStateException(className + " is not a parser rule context");
+					}
+					constructor = findConstructor(c);
+					constructors.put(className, constructor);
+				}
+
+				Class<?>[] parameters = constructor.getParameterTypes();
+				if ( parameters.length==3 ) {
+					return (ParserRuleContext)constructor.newInstance(parent, invokingState, ruleIndex);
+				}
+				if ( parameters.length==2 ) {
+					return (ParserRuleContext)constructor.newInstance(parent, invokingState);
+				}
+				ParserRuleContext ruleContext = createContext(parameters[0].getName(), parent, invokingState, ruleIndex);
+				return (ParserRuleContext)constructor.newInstance(ruleContext);
+			}
+			catch (ClassNotFoundException e) {
+				throw new IllegalStateException("cannot load context class " + className, e);
+			}
+			catch (InstantiationException e) {
+				throw new IllegalStateException("cannot create " + className, e);
+			}
+			catch (IllegalAccessException e) {
+				throw new IllegalStateException("cannot create " + className, e);
+			}
+			catch (InvocationTargetException e) {
+				throw new IllegalStateException("cannot create " + className, e.getCause());
+			}
+		}
+
+		protected Constructor<?> findConstructor(Class<?> c) {
+			if ( InterpreterRuleContext.class.isAssignableFrom(c) ) {
+				try {
+					return c.getConstructor(ParserRuleContext.class, int.class, int.class);
+				}
+				catch (NoSuchMethodException e) {
+					// fall through to the generated forms
+				}
+			}
+
+			try {
+				return c.getConstructor(ParserRuleContext.class, int.class);
+			}
+			catch (NoSuchMethodException e) {
+				Class<?> ruleContext = c.getSuperclass();
+				try {
+					return c.getConstructor(ruleContext);
+				}
+				catch (NoSuchMethodException e2) {
+					throw new IllegalStateException(c.getName() + " has no known constructor", e2);
+				}
+			}
+		}
+
+		protected String getString(int i) {
+			String s = strings[i];
+			if ( s==null ) {
+				int offset = stringsOffset + buffer.getInt(stringOffsetsOffset + i * 4);
+				int length = buffer.getInt(offset);
+				byte[] bytes = new byte[length];
+				ByteBuffer view = buffer.duplicate();
+				view.position(offset + 4);
+				view.get(bytes);
+				s = new String(bytes, StandardCharsets.UTF_8);
+				strings[i] = s;
+			}
+			return s;
+		}
+
+		protected int nodeInt(int node, int field) {
+			return buffer.getInt(nodesOffset + (node * NODE_INTS + field) * 4);
+		}
+	}
+}
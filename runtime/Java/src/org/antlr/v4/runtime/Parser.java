@@ -12,6 +12,7 @@ import org.antlr.v4.runtime.atn.ATNSimulator;
 import org.antlr.v4.runtime.atn.ATNState;
 import org.antlr.v4.runtime.atn.ParseInfo;
 import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredicateCache;
 import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.atn.ProfilingATNSimulator;
 import org.antlr.v4.runtime.atn.RuleTransition;
@@ -20,6 +21,7 @@ import org.antlr.v4.runtime.misc.IntegerStack;
 import org.antlr.v4.runtime.misc.IntervalSet;
 import org.antlr.v4.runtime.tree.ErrorNode;
 import org.antlr.v4.runtime.tree.ErrorNodeImpl;
+import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeListener;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.antlr.v4.runtime.tree.TerminalNode;
@@ -30,8 +32,6 @@ import org.antlr.v4.runtime.tree.pattern.ParseTreePatternMatcher;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.WeakHashMap;
 
 /** This is all the parsing support code essentially; most of it is error recovery stuff. */
 public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
@@ -79,15 +79,6 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		}
 	}
 
-	/**
-	 * This field maps from the serialized ATN string to the deserialized {@link ATN} with
-	 * bypass alternatives.
-	 *
-	 * @see ATNDeserializationOptions#isGenerateRuleBypassTransitions()
-	 */
-	private static final Map<String, ATN> bypassAltsAtnCache =
-		new WeakHashMap<String, ATN>();
-
 	/**
 	 * The error handling strategy for the parser. The default value is a new
 	 * instance of {@link DefaultErrorStrategy}.
@@ -154,6 +145,31 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 	/** Indicates parser has match()ed EOF token. See {@link #exitRule()}. */
 	protected boolean matchedEOF;
 
+	/**
+	 * Specifies whether the parser numbers the parse tree nodes it creates.
+	 *
+	 * @see #setAssignNodeIds
+	 * @since 4.7.1
+	 */
+	protected boolean _assignNodeIds;
+
+	/**
+	 * The number of node ids handed out since the last {@link #reset}; also
+	 * the next id to assign.
+	 *
+	 * @since 4.7.1
+	 */
+	protected int _nodeCount;
+
+	/**
+	 * The results of stable semantic predicates, or {@code null} if prediction
+	 * evaluates every predicate each time.
+	 *
+	 * @see #setPredicateCache
+	 * @since 4.7.1
+	 */
+	protected PredicateCache _predicateCache;
+
 	public Parser(TokenStream input) {
 		setInputStream(input);
 	}
@@ -165,6 +181,8 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		_ctx = null;
 		_syntaxErrors = 0;
 		matchedEOF = false;
+		_nodeCount = 0;
+		if ( _predicateCache!=null ) _predicateCache.invalidate();
 		setTrace(false);
 		_precedenceStack.clear();
 		_precedenceStack.push(0);
@@ -207,7 +225,8 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 			if ( _buildParseTrees && t.getTokenIndex()==-1 ) {
 				// we must have conjured up a new token during single token insertion
 				// if it's not the current symbol
-				_ctx.addErrorNode(createErrorNode(_ctx,t));
+				ErrorNode node = _ctx.addErrorNode(createErrorNode(_ctx,t));
+				assignNodeId(node);
 			}
 		}
 		return t;
@@ -242,7 +261,8 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 			if (_buildParseTrees && t.getTokenIndex() == -1) {
 				// we must have conjured up a new token during single token insertion
 				// if it's not the current symbol
-				_ctx.addErrorNode(createErrorNode(_ctx,t));
+				ErrorNode node = _ctx.addErrorNode(createErrorNode(_ctx,t));
+				assignNodeId(node);
 			}
 		}
 
@@ -279,6 +299,60 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		return _buildParseTrees;
 	}
 
+	/**
+	 * Tell the parser to give each {@link ParserRuleContext} and
+	 * {@link TerminalNodeImpl} it creates a dense sequential id, starting from
+	 * 0 at each {@link #reset}. The ids let
+	 * {@link org.antlr.v4.runtime.tree.IndexedParseTreeProperty} and friends
+	 * annotate nodes by array index instead of hashing. This property is
+	 * {@code false} for a newly constructed parser.
+	 *
+	 * @see org.antlr.v4.runtime.tree.Trees#getNodeId
+	 * @see #getNodeCount
+	 * @since 4.7.1
+	 */
+	public void setAssignNodeIds(boolean assignNodeIds) {
+		this._assignNodeIds = assignNodeIds;
+	}
+
+	/**
+	 * @return {@code true} if the parser numbers the nodes it creates
+	 * @since 4.7.1
+	 */
+	public boolean getAssignNodeIds() {
+		return _assignNodeIds;
+	}
+
+	/**
+	 * Gets the number of node ids assigned since the last {@link #reset}.
+	 * The ids of the nodes created so far are {@code 0..getNodeCount()-1}.
+	 *
+	 * @since 4.7.1
+	 */
+	public int getNodeCount() {
+		return _nodeCount;
+	}
+
+	/**
+	 * Let prediction reuse the results of the predicates marked stable in
+	 * {@code predicateCache} instead of calling {@link #sempred} each time
+	 * it meets them. Pass {@code null}, the initial value, to evaluate every
+	 * predicate each time.
+	 *
+	 * @see PredicateCache#markStable
+	 * @since 4.7.1
+	 */
+	public void setPredicateCache(PredicateCache predicateCache) {
+		this._predicateCache = predicateCache;
+	}
+
+	/**
+	 * @since 4.7.1
+	 */
+	public PredicateCache getPredicateCache() {
+		return _predicateCache;
+	}
+
 	/**
 	 * Trim the internal lists of the parse tree during parsing to conserve memory.
 	 * This property is set to {@code false} by default for a newly constructed parser.
@@ -445,17 +519,17 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 			throw new UnsupportedOperationException("The current parser does not support an ATN with bypass alternatives.");
 		}
 
-		synchronized (bypassAltsAtnCache) {
-			ATN result = bypassAltsAtnCache.get(serializedAtn);
-			if (result == null) {
-				ATNDeserializationOptions deserializationOptions = new ATNDeserializationOptions();
-				deserializationOptions.setGenerateRuleBypassTransitions(true);
-				result = new ATNDeserializer(deserializationOptions).deserialize(serializedAtn.toCharArray());
-				bypassAltsAtnCache.put(serializedAtn, result);
-			}
-
-			return result;
+		CachedTables tables = getCachedTables(getClass());
+		Cached<String, ATN> cached = tables.bypassAltsATN;
+		if (cached != null && cached.key == serializedAtn) {
+			return cached.value;
 		}
+
+		ATNDeserializationOptions deserializationOptions = new ATNDeserializationOptions();
+		deserializationOptions.setGenerateRuleBypassTransitions(true);
+		ATN result = new ATNDeserializer(deserializationOptions).deserialize(serializedAtn.toCharArray());
+		tables.bypassAltsATN = new Cached<String, ATN>(serializedAtn, result);
+		return result;
 	}
 
 	/**
@@ -574,6 +648,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		if (_buildParseTrees || hasListener) {
 			if ( _errHandler.inErrorRecoveryMode(this) ) {
 				ErrorNode node = _ctx.addErrorNode(createErrorNode(_ctx,o));
+				assignNodeId(node);
 				if (_parseListeners != null) {
 					for (ParseTreeListener listener : _parseListeners) {
 						listener.visitErrorNode(node);
@@ -582,6 +657,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 			}
 			else {
 				TerminalNode node = _ctx.addChild(createTerminalNode(_ctx,o));
+				assignNodeId(node);
 				if (_parseListeners != null) {
 					for (ParseTreeListener listener : _parseListeners) {
 						listener.visitTerminal(node);
@@ -610,6 +686,23 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		return new ErrorNodeImpl(t);
 	}
 
+	/** Give {@code node} the next id if {@link #getAssignNodeIds} is on and
+	 *  the node can hold one and doesn't have one yet.
+	 *
+	 * @since 4.7.1
+	 */
+	protected void assignNodeId(ParseTree node) {
+		if ( !_assignNodeIds ) return;
+		if ( node instanceof RuleContext ) {
+			RuleContext ctx = (RuleContext)node;
+			if ( ctx.nodeId<0 ) ctx.nodeId = _nodeCount++;
+		}
+		else if ( node instanceof TerminalNodeImpl ) {
+			TerminalNodeImpl leaf = (TerminalNodeImpl)node;
+			if ( leaf.nodeId<0 ) leaf.nodeId = _nodeCount++;
+		}
+	}
+
 	protected void addContextToParseTree() {
 		ParserRuleContext parent = (ParserRuleContext)_ctx.parent;
 		// add current context to parent if we have a parent
@@ -626,6 +719,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		setState(state);
 		_ctx = localctx;
 		_ctx.start = _input.LT(1);
+		assignNodeId(_ctx);
 		if (_buildParseTrees) addContextToParseTree();
         if ( _parseListeners != null) triggerEnterRuleEvent();
 	}
@@ -686,6 +780,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		_precedenceStack.push(precedence);
 		_ctx = localctx;
 		_ctx.start = _input.LT(1);
+		assignNodeId(_ctx);
 		if (_parseListeners != null) {
 			triggerEnterRuleEvent(); // simulates rule entry for left-recursive rules
 		}
@@ -702,6 +797,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 
 		_ctx = localctx;
 		_ctx.start = previous.start;
+		assignNodeId(_ctx);
 		if (_buildParseTrees) {
 			_ctx.addChild(previous);
 		}
@@ -11,19 +11,24 @@ import org.antlr.v4.runtime.atn.ATNState;
 import org.antlr.v4.runtime.atn.ActionTransition;
 import org.antlr.v4.runtime.atn.AtomTransition;
 import org.antlr.v4.runtime.atn.DecisionState;
+import org.antlr.v4.runtime.atn.LL1Analyzer;
 import org.antlr.v4.runtime.atn.LoopEndState;
 import org.antlr.v4.runtime.atn.ParserATNSimulator;
 import org.antlr.v4.runtime.atn.PrecedencePredicateTransition;
 import org.antlr.v4.runtime.atn.PredicateTransition;
 import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.atn.ProfilingATNSimulator;
 import org.antlr.v4.runtime.atn.RuleStartState;
 import org.antlr.v4.runtime.atn.RuleTransition;
 import org.antlr.v4.runtime.atn.StarLoopEntryState;
 import org.antlr.v4.runtime.atn.Transition;
 import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.IntervalSet;
 import org.antlr.v4.runtime.misc.Pair;
 
 import java.util.ArrayDeque;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Deque;
 
@@ -86,6 +91,22 @@ public class ParserInterpreter extends Parser {
 
 	protected InterpreterRuleContext rootContext;
 
+	/** For each decision, the alternative predicted by each token type if
+	 *  the decision is LL(1), indexed by token type + 1 so that EOF fits.
+	 *  Built the first time the decision is visited; see
+	 *  {@link #getLL1Alternative}.
+	 */
+	protected final int[][] decisionToLL1Alts;
+
+	/** For each state whose transition is a set, range, or not-set
+	 *  transition, the token types that transition matches. Built the first
+	 *  time the state is visited.
+	 */
+	protected final BitSet[] stateToMatchingTokens;
+
+	/** Marks decisions that are not LL(1). */
+	private static final int[] NOT_LL1 = new int[0];
+
 	/**
 	 * @deprecated Use {@link #ParserInterpreter(String, Vocabulary, Collection, ATN, TokenStream)} instead.
 	 */
@@ -117,6 +138,9 @@ public class ParserInterpreter extends Parser {
 			decisionToDFA[i] = new DFA(decisionState, i);
 		}
 
+		this.decisionToLL1Alts = new int[numberOfDecisions][];
+		this.stateToMatchingTokens = new BitSet[atn.states.size()];
+
 		// get atn simulator that knows how to do predictions
 		setInterpreter(new ParserATNSimulator(this, atn,
 											  decisionToDFA,
@@ -249,7 +273,7 @@ public class ParserInterpreter extends Parser {
 			case Transition.RANGE:
 			case Transition.SET:
 			case Transition.NOT_SET:
-				if (!transition.matches(_input.LA(1), Token.MIN_USER_TOKEN_TYPE, 65535)) {
+				if (!matches(p, transition, _input.LA(1))) {
 					recoverInline();
 				}
 				matchWildcard();
@@ -313,12 +337,86 @@ public class ParserInterpreter extends Parser {
 				overrideDecisionReached = true;
 			}
 			else {
-				predictedAlt = getInterpreter().adaptivePredict(_input, decision, _ctx);
+				predictedAlt = getLL1Alternative(p, _input.LA(1));
+				if ( predictedAlt==ATN.INVALID_ALT_NUMBER ) {
+					predictedAlt = getInterpreter().adaptivePredict(_input, decision, _ctx);
+				}
 			}
 		}
 		return predictedAlt;
 	}
 
+	/** Return the alternative {@code p} predicts for a next token of type
+	 *  {@code ttype} if the decision is LL(1), the way generated parsers
+	 *  switch on {@code _input.LA(1)} instead of calling adaptivePredict.
+	 *  Return {@link ATN#INVALID_ALT_NUMBER} if the decision is not LL(1)
+	 *  or no alternative starts with {@code ttype}, so that adaptivePredict
+	 *  decides or reports the error as usual. A decision is LL(1) under the
+	 *  same rule the tool uses: the {@link LL1Analyzer} lookahead sets of
+	 *  its alternatives are all known, with no predicates, and disjoint. The
+	 *  prediction is then the one adaptivePredict would make.
+	 *
+	 *  <p>While profiling, every decision goes through adaptivePredict so
+	 *  that it is counted.</p>
+	 *
+	 *  @since 4.7.1
+	 */
+	protected int getLL1Alternative(DecisionState p, int ttype) {
+		if ( getInterpreter() instanceof ProfilingATNSimulator ) {
+			return ATN.INVALID_ALT_NUMBER;
+		}
+
+		int[] alts = decisionToLL1Alts[p.decision];
+		if ( alts==null ) {
+			alts = computeLL1Alternatives(p);
+			decisionToLL1Alts[p.decision] = alts;
+		}
+
+		int i = ttype + 1;
+		return i>=0 && i<alts.length ? alts[i] : ATN.INVALID_ALT_NUMBER;
+	}
+
+	protected int[] computeLL1Alternatives(DecisionState p) {
+		IntervalSet[] look = new LL1Analyzer(atn).getDecisionLookahead(p);
+		int[] alts = new int[atn.maxTokenType + 2];
+		for (int alt = 1; alt <= look.length; alt++) {
+			IntervalSet set = look[alt - 1];
+			if ( set==null ) return NOT_LL1;
+			for (Interval interval : set.getIntervals()) {
+				if ( interval.a<Token.EOF || interval.b>atn.maxTokenType ) return NOT_LL1;
+				for (int t = interval.a; t <= interval.b; t++) {
+					if ( alts[t + 1]!=ATN.INVALID_ALT_NUMBER ) return NOT_LL1; // not disjoint
+					alts[t + 1] = alt;
+				}
+			}
+		}
+		return alts;
+	}
+
+	/** Return whether the set, range, or not-set {@code transition} out of
+	 *  {@code p} matches {@code ttype}, from a table built the first time
+	 *  {@code p} is visited.
+	 *
+	 *  @since 4.7.1
+	 */
+	protected boolean matches(ATNState p, Transition transition, int ttype) {
+		if ( ttype<0 || ttype>atn.maxTokenType ) {
+			return transition.matches(ttype, Token.MIN_USER_TOKEN_TYPE, 65535);
+		}
+
+		BitSet tokens = stateToMatchingTokens[p.stateNumber];
+		if ( tokens==null ) {
+			tokens = new BitSet(atn.maxTokenType + 1);
+			for (int t = 0; t <= atn.maxTokenType; t++) {
+				if ( transition.matches(t, Token.MIN_USER_TOKEN_TYPE, 65535) ) {
+					tokens.set(t);
+				}
+			}
+			stateToMatchingTokens[p.stateNumber] = tokens;
+		}
+		return tokens.get(ttype);
+	}
+
 	/** Provide simple "factory" for InterpreterRuleContext's.
 	 *  @since 4.5.1
 	 */
@@ -93,6 +93,7 @@ public class ParserRuleContext extends RuleContext {
 	public void copyFrom(ParserRuleContext ctx) {
 		this.parent = ctx.parent;
 		this.invokingState = ctx.invokingState;
+		this.nodeId = ctx.nodeId;
 
 		this.start = ctx.start;
 		this.stop = ctx.stop;
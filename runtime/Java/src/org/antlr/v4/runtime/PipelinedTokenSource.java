@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/** A {@link TokenSource} that runs another token source, usually a
+ *  {@link Lexer}, on its own thread so lexing overlaps with parsing.
+ *
+ *  <p>The lexer thread fills batches of up to {@code batchSize} tokens and
+ *  hands them to the parser thread through a bounded single-producer,
+ *  single-consumer ring of {@code queueCapacity} batches. When the ring is
+ *  full the lexer waits, so it never runs more than
+ *  {@code batchSize * queueCapacity} tokens ahead. A partial batch is handed
+ *  over early if the parser is already waiting for tokens.</p>
+ *
+ *  <p>Wrap it in a {@link TokenStream} as usual; for streaming input that
+ *  means {@link UnbufferedTokenStream}, whose {@code mark}/{@code release}/
+ *  {@code seek} semantics are unchanged:</p>
+ *
+ *  <pre>
+ *  PipelinedTokenSource tokens = new PipelinedTokenSource(lexer);
+ *  MyParser parser = new MyParser(new UnbufferedTokenStream&lt;Token&gt;(tokens));
+ *  </pre>
+ *
+ *  <p>Because the lexer runs concurrently, its error listeners are called on
+ *  the lexer thread, and the parser must not touch the lexer or its input
+ *  stream until parsing is done. Tokens read their text from the
+ *  {@link CharStream} on the parser thread, which is only safe for streams
+ *  that are fully buffered like those from {@link CharStreams}; with an
+ *  unbuffered char stream, give the lexer a {@link CommonTokenFactory} that
+ *  copies the text. If the lexer throws, the parser gets the same exception
+ *  from {@link #nextToken} once it has consumed the tokens before it.</p>
+ *
+ *  <p>The lexer thread ends by itself once it has handed over EOF or the
+ *  lexer has thrown. A parser that may stop reading before EOF, for
+ *  example one using {@link BailErrorStrategy}, must call {@link #close};
+ *  otherwise the thread stays parked waiting for room in the ring, holding
+ *  on to the lexer and its input. The thread is a daemon, so it never keeps
+ *  the JVM alive.</p>
+ *
+ *  @since 4.7.1
+ */
+public class PipelinedTokenSource implements TokenSource, Closeable {
+	public static final int DEFAULT_BATCH_SIZE = 512;
+	public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+	/** Spin this many times before parking when the ring is empty or full. */
+	protected static final int SPIN_LIMIT = 100;
+
+	protected final TokenSource source;
+
+	protected final int batchSize;
+
+	/** The ring of batches; its length is a power of two. */
+	protected final Token[][] queue;
+
+	protected final int mask;
+
+	/** Number of batches taken; only the parser thread writes it. */
+	protected final AtomicLong head = new AtomicLong();
+
+	/** Number of batches published; only the lexer thread writes it. */
+	protected final AtomicLong tail = new AtomicLong();
+
+	protected volatile Thread waitingConsumer;
+
+	protected volatile Thread waitingProducer;
+
+	/** Set by the lexer thread when it stops, after {@link #failure}. */
+	protected volatile boolean done;
+
+	protected volatile boolean closed;
+
+	protected Throwable failure;
+
+	protected Thread producer;
+
+	/** The batch the parser is reading and the index of its next token. */
+	protected Token[] batch;
+	protected int batchIndex;
+
+	/** The last token returned by {@link #nextToken}. */
+	protected Token lastToken;
+
+	public PipelinedTokenSource(TokenSource source) {
+		this(source, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	public PipelinedTokenSource(TokenSource source, int batchSize, int queueCapacity) {
+		if (batchSize <= 0 || queueCapacity <= 0) {
+			throw new IllegalArgumentException("batchSize and queueCapacity must be positive");
+		}
+
+		this.source = source;
+		this.batchSize = batchSize;
+		int capacity = Integer.highestOneBit(queueCapacity);
+		if (capacity < queueCapacity) {
+			capacity <<= 1;
+		}
+		this.queue = new Token[capacity][];
+		this.mask = capacity - 1;
+	}
+
+	/** Start lexing ahead. {@link #nextToken} calls this on first use. */
+	public synchronized void start() {
+		if (producer != null) {
+			return;
+		}
+
+		producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				produce();
+			}
+		}, "antlr-lexer-" + source.getSourceName());
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	/** Stop the lexer thread. Tokens it has not handed over are dropped.
+	 *  Required unless tokens are read up to EOF.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		Thread t = waitingProducer;
+		if (t != null) {
+			LockSupport.unpark(t);
+		}
+	}
+
+	@Override
+	public Token nextToken() {
+		if (batch == null || batchIndex == batch.length) {
+			if (lastToken != null && lastToken.getType() == Token.EOF) {
+				return lastToken; // keep returning EOF like a lexer does
+			}
+
+			if (producer == null) {
+				start();
+			}
+
+			batch = take();
+			batchIndex = 0;
+		}
+
+		lastToken = batch[batchIndex++];
+		return lastToken;
+	}
+
+	/** The line of the last token returned by {@link #nextToken}; the
+	 *  lexer itself is usually further ahead.
+	 */
+	@Override
+	public int getLine() {
+		return lastToken != null ? lastToken.getLine() : 1;
+	}
+
+	@Override
+	public int getCharPositionInLine() {
+		return lastToken != null ? lastToken.getCharPositionInLine() : 0;
+	}
+
+	@Override
+	public CharStream getInputStream() {
+		return source.getInputStream();
+	}
+
+	@Override
+	public String getSourceName() {
+		return source.getSourceName();
+	}
+
+	/** Must be called before the first token is requested. */
+	@Override
+	public void setTokenFactory(TokenFactory<?> factory) {
+		if (producer != null) {
+			throw new IllegalStateException("cannot change the token factory after lexing has started");
+		}
+
+		source.setTokenFactory(factory);
+	}
+
+	@Override
+	public TokenFactory<?> getTokenFactory() {
+		return source.getTokenFactory();
+	}
+
+	/** The lexer thread: fill batches until EOF, failure, or {@link #close}. */
+	protected void produce() {
+		Token[] buffer = new Token[batchSize];
+		int size = 0;
+		try {
+			while (!closed) {
+				Token t = source.nextToken();
+				buffer[size++] = t;
+				boolean eof = t.getType() == Token.EOF;
+				if (size == batchSize || eof || waitingConsumer != null) {
+					if (!put(size == batchSize ? buffer : Arrays.copyOf(buffer, size)) || eof) {
+						return;
+					}
+
+					if (size == batchSize) {
+						buffer = new Token[batchSize];
+					}
+					size = 0;
+				}
+			}
+		}
+		catch (Throwable e) {
+			if (size > 0) {
+				put(Arrays.copyOf(buffer, size)); // the parser gets these before the failure
+			}
+			failure = e;
+		}
+		finally {
+			done = true;
+			Thread t = waitingConsumer;
+			if (t != null) {
+				LockSupport.unpark(t);
+			}
+		}
+	}
+
+	/** Publish a batch, waiting for room. Returns false if closed. */
+	protected boolean put(Token[] tokens) {
+		long t = tail.get();
+		int spins = 0;
+		while (t - head.get() == queue.length) {
+			if (closed) {
+				return false;
+			}
+
+			if (spins++ < SPIN_LIMIT) {
+				Thread.yield();
+				continue;
+			}
+
+			waitingProducer = Thread.currentThread();
+			if (t - head.get() == queue.length && !closed) {
+				LockSupport.park(this);
+			}
+			waitingProducer = null;
+		}
+
+		queue[(int)t & mask] = tokens;
+		tail.set(t + 1);
+		Thread consumer = waitingConsumer;
+		if (consumer != null) {
+			LockSupport.unpark(consumer);
+		}
+		return true;
+	}
+
+	/** Take the next batch, waiting for the lexer if necessary. */
+	protected Token[] take() {
+		long h = head.get();
+		int spins = 0;
+		while (tail.get() == h) {
+			if (done && tail.get() == h) {
+				if (failure instanceof RuntimeException) {
+					throw (RuntimeException)failure;
+				}
+				if (failure instanceof Error) {
+					throw (Error)failure;
+				}
+				if (failure != null) {
+					throw new RuntimeException(failure);
+				}
+				throw new IllegalStateException("token source is closed");
+			}
+
+			if (spins++ < SPIN_LIMIT) {
+				Thread.yield();
+				continue;
+			}
+
+			waitingConsumer = Thread.currentThread();
+			if (tail.get() == h && !done) {
+				LockSupport.park(this);
+			}
+			waitingConsumer = null;
+		}
+
+		int slot = (int)h & mask;
+		Token[] tokens = queue[slot];
+		queue[slot] = null;
+		head.set(h + 1);
+		Thread t = waitingProducer;
+		if (t != null) {
+			LockSupport.unpark(t);
+		}
+		return tokens;
+	}
+}
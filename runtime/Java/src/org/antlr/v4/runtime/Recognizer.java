@@ -15,17 +15,21 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 public abstract class Recognizer<Symbol, ATNInterpreter extends ATNSimulator> {
 	public static final int EOF=-1;
 
-	private static final Map<Vocabulary, Map<String, Integer>> tokenTypeMapCache =
-		new WeakHashMap<Vocabulary, Map<String, Integer>>();
-	private static final Map<String[], Map<String, Integer>> ruleIndexMapCache =
-		new WeakHashMap<String[], Map<String, Integer>>();
-
+	/** Tables built from the vocabulary, rule names, and serialized ATN,
+	 *  kept per recognizer class. Lookups don't lock; see {@link CachedTables}.
+	 */
+	private static final ClassValue<CachedTables> cachedTables =
+		new ClassValue<CachedTables>() {
+			@Override
+			protected CachedTables computeValue(Class<?> type) {
+				return new CachedTables();
+			}
+		};
 
 	private List<ANTLRErrorListener> _listeners =
 		new CopyOnWriteArrayList<ANTLRErrorListener>() {{
@@ -65,29 +69,29 @@ public abstract class Recognizer<Symbol, ATNInterpreter extends ATNSimulator> {
 	 */
 	public Map<String, Integer> getTokenTypeMap() {
 		Vocabulary vocabulary = getVocabulary();
-		synchronized (tokenTypeMapCache) {
-			Map<String, Integer> result = tokenTypeMapCache.get(vocabulary);
-			if (result == null) {
-				result = new HashMap<String, Integer>();
-				for (int i = 0; i <= getATN().maxTokenType; i++) {
-					String literalName = vocabulary.getLiteralName(i);
-					if (literalName != null) {
-						result.put(literalName, i);
-					}
-
-					String symbolicName = vocabulary.getSymbolicName(i);
-					if (symbolicName != null) {
-						result.put(symbolicName, i);
-					}
-				}
-
-				result.put("EOF", Token.EOF);
-				result = Collections.unmodifiableMap(result);
-				tokenTypeMapCache.put(vocabulary, result);
+		CachedTables tables = getCachedTables(getClass());
+		Cached<Vocabulary, Map<String, Integer>> cached = tables.tokenTypeMap;
+		if (cached != null && cached.key == vocabulary) {
+			return cached.value;
+		}
+
+		Map<String, Integer> result = new HashMap<String, Integer>();
+		for (int i = 0; i <= getATN().maxTokenType; i++) {
+			String literalName = vocabulary.getLiteralName(i);
+			if (literalName != null) {
+				result.put(literalName, i);
 			}
 
-			return result;
+			String symbolicName = vocabulary.getSymbolicName(i);
+			if (symbolicName != null) {
+				result.put(symbolicName, i);
+			}
 		}
+
+		result.put("EOF", Token.EOF);
+		result = Collections.unmodifiableMap(result);
+		tables.tokenTypeMap = new Cached<Vocabulary, Map<String, Integer>>(vocabulary, result);
+		return result;
 	}
 
 	/**
@@ -101,15 +105,19 @@ public abstract class Recognizer<Symbol, ATNInterpreter extends ATNSimulator> {
 			throw new UnsupportedOperationException("The current recognizer does not provide a list of rule names.");
 		}
 
-		synchronized (ruleIndexMapCache) {
-			Map<String, Integer> result = ruleIndexMapCache.get(ruleNames);
-			if (result == null) {
-				result = Collections.unmodifiableMap(Utils.toMap(ruleNames));
-				ruleIndexMapCache.put(ruleNames, result);
-			}
-
-			return result;
+		CachedTables tables = getCachedTables(getClass());
+		Cached<String[], Map<String, Integer>> cached = tables.ruleIndexMap;
+		if (cached != null && cached.key == ruleNames) {
+			return cached.value;
 		}
+
+		Map<String, Integer> result = Collections.unmodifiableMap(Utils.toMap(ruleNames));
+		tables.ruleIndexMap = new Cached<String[], Map<String, Integer>>(ruleNames, result);
+		return result;
+	}
+
+	static CachedTables getCachedTables(Class<?> recognizerClass) {
+		return cachedTables.get(recognizerClass);
 	}
 
 	public int getTokenType(String tokenName) {
@@ -273,4 +281,35 @@ public abstract class Recognizer<Symbol, ATNInterpreter extends ATNSimulator> {
 	public abstract TokenFactory<?> getTokenFactory();
 
 	public abstract void setTokenFactory(TokenFactory<?> input);
+
+	/**
+	 * The tables built for one recognizer class. Each table is kept together
+	 * with the object it was built from, and is only used again for the
+	 * same object, compared with {@code ==}. Generated recognizers return
+	 * the same vocabulary, rule names, and serialized ATN every time, so for
+	 * them a lookup is a field read and a reference comparison, not a
+	 * synchronized hash of a large string. Interpreters of different
+	 * grammars share a class; for them a table is rebuilt whenever a
+	 * different grammar's recognizer asks.
+	 *
+	 * <p>Two threads may build the same table at the same time. The tables
+	 * are immutable, so whichever is stored last is as good as the other,
+	 * and {@link Cached}'s final fields make it safe to publish through a
+	 * volatile field.</p>
+	 */
+	static final class CachedTables {
+		volatile Cached<Vocabulary, Map<String, Integer>> tokenTypeMap;
+		volatile Cached<String[], Map<String, Integer>> ruleIndexMap;
+		volatile Cached<String, ATN> bypassAltsATN;
+	}
+
+	static final class Cached<K, V> {
+		final K key;
+		final V value;
+
+		Cached(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
 }
@@ -12,6 +12,7 @@ import org.antlr.v4.runtime.tree.ParseTreeVisitor;
 import org.antlr.v4.runtime.tree.RuleNode;
 import org.antlr.v4.runtime.tree.Trees;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 
@@ -78,6 +79,13 @@ public class RuleContext implements RuleNode {
 	 */
 	public int invokingState = -1;
 
+	/** Dense id assigned by the parser when
+	 *  {@link Parser#setAssignNodeIds} is on; -1 otherwise.
+	 *
+	 * @since 4.7.1
+	 */
+	public int nodeId = -1;
+
 	public RuleContext() {}
 
 	public RuleContext(RuleContext parent, int invokingState) {
@@ -133,13 +141,26 @@ public class RuleContext implements RuleNode {
 		}
 
 		StringBuilder builder = new StringBuilder();
-		for (int i = 0; i < getChildCount(); i++) {
-			builder.append(getChild(i).getText());
+		try {
+			Trees.getText(this, builder);
+		}
+		catch (IOException ioe) {
+			// StringBuilder doesn't throw
+			throw new RuntimeException(ioe);
 		}
 
 		return builder.toString();
 	}
 
+	/** Append the text {@link #getText()} returns to {@code out}, without
+	 *  building the text of each subtree first.
+	 *
+	 *  @since 4.7.1
+	 */
+	public void getText(Appendable out) throws IOException {
+		Trees.getText(this, out);
+	}
+
 	public int getRuleIndex() { return -1; }
 
 	/** For rule associated with this parse tree internal node, return
@@ -191,6 +212,14 @@ public class RuleContext implements RuleNode {
 		return Trees.toStringTree(this, recog);
 	}
 
+	/** Print out a whole tree in LISP format to {@code out}.
+	 *
+	 *  @since 4.7.1
+	 */
+	public void toStringTree(Parser recog, Appendable out) throws IOException {
+		Trees.toStringTree(this, recog, out);
+	}
+
 	/** Print out a whole tree, not just a node, in LISP format
 	 *  (root child1 .. childN). Print just a node if this is a leaf.
 	 */
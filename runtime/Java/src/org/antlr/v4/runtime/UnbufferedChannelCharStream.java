@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** A streaming {@link CharStream} that reads a {@link ReadableByteChannel}
+ *  in blocks and decodes each block straight to code points. Like
+ *  {@link UnbufferedCharStream}, it only keeps the characters it must: the
+ *  window starts at the oldest mark, or at the current character if there
+ *  is no mark.
+ *
+ *  <p>{@link UnbufferedCharStream} pulls one {@code char} at a time from a
+ *  {@link java.io.Reader} and shifts its buffer every time the last mark is
+ *  released, which is once per token when a lexer reads from it. This class
+ *  instead decodes a whole block per {@link #fill fill()} with a single
+ *  {@link CharsetDecoder} and only slides the window down, to the oldest
+ *  mark, when it needs room for the next block, so {@link #release release()}
+ *  is free. A lexer holds a mark for the token it is matching, so the window
+ *  stays about one token plus one block long.</p>
+ *
+ *  <p>ISO-8859-1 bytes are copied as code points without any decoding. For
+ *  UTF-8 and US-ASCII, the run of ASCII bytes at the start of each block is
+ *  copied the same way and only the rest goes through the decoder, so mostly
+ *  ASCII input like log files skips decoding almost entirely.</p>
+ *
+ *  <p>The stream does not close the channel.</p>
+ *
+ *  @since 4.7.1
+ */
+public class UnbufferedChannelCharStream implements CharStream {
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/** Blocks must be able to hold the longest byte sequence of a code point. */
+	protected static final int MIN_BLOCK_SIZE = 16;
+
+	protected final ReadableByteChannel channel;
+
+	/** Null when bytes are code points (ISO-8859-1). */
+	protected final CharsetDecoder decoder;
+
+	/** Can bytes below 0x80 be copied without decoding? */
+	protected final boolean asciiCompatible;
+
+	protected final ByteBuffer bytes;
+
+	/** Decoded UTF-16 not yet turned into code points; only ever holds a
+	 *  high surrogate waiting for its low half between fills.
+	 */
+	protected final CharBuffer chars;
+
+	/** The window of code points; {@code data[0]} is the character at
+	 *  {@link #getBufferStartIndex()}.
+	 */
+	protected int[] data;
+
+	/** The number of code points in {@link #data data}. */
+	protected int n;
+
+	/** 0..n index into {@link #data data} of {@code LA(1)}; {@code p==n}
+	 *  means we need to read more (or are at EOF).
+	 */
+	protected int p;
+
+	protected int numMarkers;
+
+	/** Absolute index of {@code LA(1)} when the oldest outstanding mark was
+	 *  made; the window must keep everything from there on.
+	 */
+	protected int markIndex;
+
+	/** The {@code LA(-1)} character for {@code data[0]}. */
+	protected int lastCharBufferStart = IntStream.EOF;
+
+	/** Absolute index of {@code LA(1)}. */
+	protected int currentCharIndex;
+
+	/** Have we decoded the last byte of the channel? */
+	protected boolean endOfInput;
+
+	/** The name or source of this char stream. */
+	public String name;
+
+	public UnbufferedChannelCharStream(ReadableByteChannel channel) {
+		this(channel, StandardCharsets.UTF_8);
+	}
+
+	public UnbufferedChannelCharStream(ReadableByteChannel channel, Charset charset) {
+		this(channel, charset, DEFAULT_BUFFER_SIZE, CodingErrorAction.REPLACE, IntStream.UNKNOWN_SOURCE_NAME);
+	}
+
+	public UnbufferedChannelCharStream(ReadableByteChannel channel,
+									   Charset charset,
+									   int bufferSize,
+									   CodingErrorAction decodingErrorAction,
+									   String sourceName)
+	{
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("bufferSize must be positive");
+		}
+
+		this.channel = channel;
+		this.name = sourceName;
+		int blockSize = Math.max(bufferSize, MIN_BLOCK_SIZE);
+		this.bytes = ByteBuffer.allocate(blockSize);
+		this.chars = CharBuffer.allocate(blockSize);
+		this.data = new int[bufferSize];
+		if (charset.equals(StandardCharsets.ISO_8859_1)) {
+			this.decoder = null;
+			this.asciiCompatible = true;
+		}
+		else {
+			this.decoder = charset.newDecoder()
+				.onMalformedInput(decodingErrorAction)
+				.onUnmappableCharacter(decodingErrorAction);
+			this.asciiCompatible = charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII);
+		}
+	}
+
+	@Override
+	public void consume() {
+		if (p == n && fill(1) == 0) {
+			throw new IllegalStateException("cannot consume EOF");
+		}
+
+		p++;
+		currentCharIndex++;
+	}
+
+	@Override
+	public int LA(int i) {
+		if (i > 0) {
+			int index = p + i - 1;
+			if (index >= n) {
+				fill(index - n + 1);
+				index = p + i - 1; // fill() may have moved the window
+				if (index >= n) {
+					return IntStream.EOF;
+				}
+			}
+			return data[index];
+		}
+
+		if (i == 0) {
+			return 0; // undefined
+		}
+
+		int index = p + i;
+		if (index == -1) {
+			return lastCharBufferStart;
+		}
+		if (index < 0) {
+			throw new IndexOutOfBoundsException();
+		}
+		return data[index];
+	}
+
+	/**
+	 * Return a marker that we can release later. The marker values are the
+	 * same as {@link UnbufferedCharStream#mark}'s.
+	 */
+	@Override
+	public int mark() {
+		if (numMarkers == 0) {
+			markIndex = currentCharIndex;
+		}
+
+		int mark = -numMarkers - 1;
+		numMarkers++;
+		return mark;
+	}
+
+	/** Decrement the number of markers. Unlike {@link UnbufferedCharStream},
+	 *  this does not touch the buffer; the next {@link #fill fill()} drops
+	 *  characters nobody can seek back to anymore.
+	 */
+	@Override
+	public void release(int marker) {
+		int expectedMark = -numMarkers;
+		if ( marker!=expectedMark ) {
+			throw new IllegalStateException("release() called with an invalid marker.");
+		}
+
+		numMarkers--;
+	}
+
+	@Override
+	public int index() {
+		return currentCharIndex;
+	}
+
+	/** Seek to absolute character index, which must be in the current
+	 *  window or ahead of it.
+	 */
+	@Override
+	public void seek(int index) {
+		if (index == currentCharIndex) {
+			return;
+		}
+
+		if (index > currentCharIndex) {
+			LA(index - currentCharIndex);
+			index = Math.min(index, getBufferStartIndex() + n);
+		}
+
+		int i = index - getBufferStartIndex();
+		if (i < 0) {
+			throw new IllegalArgumentException("cannot seek to index " + index + " before buffer start " + getBufferStartIndex());
+		}
+
+		p = i;
+		currentCharIndex = index;
+	}
+
+	@Override
+	public int size() {
+		throw new UnsupportedOperationException("Unbuffered stream cannot know its size");
+	}
+
+	@Override
+	public String getSourceName() {
+		if (name == null || name.isEmpty()) {
+			return UNKNOWN_SOURCE_NAME;
+		}
+
+		return name;
+	}
+
+	@Override
+	public String getText(Interval interval) {
+		if (interval.a < 0 || interval.b < interval.a - 1) {
+			throw new IllegalArgumentException("invalid interval");
+		}
+
+		int bufferStartIndex = getBufferStartIndex();
+		if (interval.a < bufferStartIndex || interval.b >= bufferStartIndex + n) {
+			throw new UnsupportedOperationException("interval "+interval+" outside buffer: "+
+			                    bufferStartIndex+".."+(bufferStartIndex+n-1));
+		}
+
+		return new String(data, interval.a - bufferStartIndex, interval.length());
+	}
+
+	protected final int getBufferStartIndex() {
+		return currentCharIndex - p;
+	}
+
+	/**
+	 * Read blocks until there are at least {@code want} more code points in
+	 * the window or the channel is exhausted. Returns the number of code
+	 * points added.
+	 */
+	protected int fill(int want) {
+		// nobody can seek back before the oldest mark, or before LA(1) if
+		// there is none; slide that down to data[0]
+		int keep = numMarkers > 0 ? markIndex : currentCharIndex;
+		int drop = keep - getBufferStartIndex();
+		if (drop > 0) {
+			lastCharBufferStart = data[drop - 1];
+			System.arraycopy(data, drop, data, 0, n - drop);
+			n -= drop;
+			p -= drop;
+		}
+
+		int start = n;
+		try {
+			while (n - start < want && !endOfInput) {
+				readBlock();
+			}
+		}
+		catch (IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
+
+		return n - start;
+	}
+
+	protected void readBlock() throws IOException {
+		int bytesRead = channel.read(bytes);
+		boolean lastBlock = bytesRead == -1;
+		bytes.flip();
+		ensureCapacity(bytes.remaining() + chars.position());
+		if (decoder == null) {
+			copyBytes(bytes.limit());
+		}
+		else {
+			if (asciiCompatible && chars.position() == 0) {
+				copyBytes(asciiPrefixEnd());
+			}
+			if (bytes.hasRemaining() || lastBlock) {
+				decode(lastBlock);
+			}
+		}
+		bytes.compact();
+		endOfInput = lastBlock;
+	}
+
+	/** The fast path: every byte up to {@code end} is its own code point. */
+	protected void copyBytes(int end) {
+		byte[] in = bytes.array();
+		int[] out = data;
+		int j = n;
+		for (int i = bytes.position(); i < end; i++) {
+			out[j++] = in[i] & 0xFF;
+		}
+		n = j;
+		bytes.position(end);
+	}
+
+	protected int asciiPrefixEnd() {
+		byte[] in = bytes.array();
+		int i = bytes.position();
+		int limit = bytes.limit();
+		while (i < limit && in[i] >= 0) {
+			i++;
+		}
+		return i;
+	}
+
+	protected void decode(boolean lastBlock) throws IOException {
+		while (true) {
+			CoderResult result = decoder.decode(bytes, chars, lastBlock);
+			if (result.isError()) {
+				result.throwException();
+			}
+			appendChars(false);
+			if (!result.isOverflow()) {
+				break;
+			}
+		}
+
+		if (lastBlock) {
+			CoderResult result = decoder.flush(chars);
+			if (result.isError()) {
+				result.throwException();
+			}
+			appendChars(true);
+		}
+	}
+
+	/** Move decoded UTF-16 into {@link #data data} as code points, keeping a
+	 *  trailing high surrogate in {@link #chars chars} unless {@code last}.
+	 */
+	protected void appendChars(boolean last) {
+		chars.flip();
+		ensureCapacity(chars.remaining());
+		char[] in = chars.array();
+		int[] out = data;
+		int j = n;
+		int i = chars.position();
+		int limit = chars.limit();
+		while (i < limit) {
+			char c = in[i];
+			if (Character.isHighSurrogate(c)) {
+				if (i + 1 == limit) {
+					if (!last) break; // wait for the low surrogate
+				}
+				else if (Character.isLowSurrogate(in[i + 1])) {
+					out[j++] = Character.toCodePoint(c, in[i + 1]);
+					i += 2;
+					continue;
+				}
+			}
+			out[j++] = c;
+			i++;
+		}
+		n = j;
+		chars.position(i);
+		chars.compact();
+	}
+
+	protected void ensureCapacity(int extra) {
+		if (n + extra > data.length) {
+			data = Arrays.copyOf(data, Math.max(data.length * 2, n + extra));
+		}
+	}
+}
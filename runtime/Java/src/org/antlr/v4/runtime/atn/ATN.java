@@ -70,6 +70,11 @@ public class ATN {
 
 	public final List<TokensStartState> modeToStartState = new ArrayList<TokensStartState>();
 
+	/** Memoized expected-token and error recovery sets, shared by every
+	 *  recognizer using this ATN.
+	 */
+	public final FollowSetCache followSetCache = new FollowSetCache(this);
+
 	/** Used for runtime deserialization of ATNs from strings */
 	public ATN(ATNType grammarType, int maxTokenType) {
 		this.grammarType = grammarType;
@@ -168,29 +173,22 @@ public class ATN {
 			throw new IllegalArgumentException("Invalid state number.");
 		}
 
-		RuleContext ctx = context;
-		ATNState s = states.get(stateNumber);
-		IntervalSet following = nextTokens(s);
-		if (!following.contains(Token.EPSILON)) {
-			return following;
-		}
-
-		IntervalSet expected = new IntervalSet();
-		expected.addAll(following);
-		expected.remove(Token.EPSILON);
-		while (ctx != null && ctx.invokingState >= 0 && following.contains(Token.EPSILON)) {
-			ATNState invokingState = states.get(ctx.invokingState);
-			RuleTransition rt = (RuleTransition)invokingState.transition(0);
-			following = nextTokens(rt.followState);
-			expected.addAll(following);
-			expected.remove(Token.EPSILON);
-			ctx = ctx.parent;
-		}
-
-		if (following.contains(Token.EPSILON)) {
-			expected.add(Token.EOF);
-		}
+		return followSetCache.getExpectedTokens(states.get(stateNumber), context);
+	}
 
-		return expected;
+	/**
+	 * Computes the set of input symbols that could follow any of the rule
+	 * invocations in {@code context}, without {@link Token#EPSILON}. This is
+	 * where {@link org.antlr.v4.runtime.DefaultErrorStrategy} resynchronizes
+	 * after an error.
+	 *
+	 * <p>Like {@link #getExpectedTokens}, the result is a copy of a set
+	 * {@link #followSetCache} shares between parsers, so callers may modify it.</p>
+	 *
+	 * @since 4.7.1
+	 */
+	public IntervalSet getErrorRecoverySet(RuleContext context) {
+		return followSetCache.getErrorRecoverySet(context);
 	}
+
 }
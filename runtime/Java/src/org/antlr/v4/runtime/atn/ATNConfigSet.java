@@ -134,7 +134,7 @@ public class ATNConfigSet implements Set<ATNConfig> {
 	 */
 	public boolean add(
 		ATNConfig config,
-		DoubleKeyMap<PredictionContext,PredictionContext,PredictionContext> mergeCache)
+		PredictionContextMergeCache mergeCache)
 	{
 		if ( readonly ) throw new IllegalStateException("This set is readonly");
 		if ( config.semanticContext!=SemanticContext.NONE ) {
@@ -168,6 +168,15 @@ public class ATNConfigSet implements Set<ATNConfig> {
 		return true;
 	}
 
+	/** @deprecated Use {@link #add(ATNConfig, PredictionContextMergeCache)}. */
+	@Deprecated
+	public boolean add(
+		ATNConfig config,
+		DoubleKeyMap<PredictionContext,PredictionContext,PredictionContext> mergeCache)
+	{
+		return add(config, PredictionContextMergeCache.wrap(mergeCache));
+	}
+
 	/** Return a List holding list of configs */
     public List<ATNConfig> elements() { return configs; }
 
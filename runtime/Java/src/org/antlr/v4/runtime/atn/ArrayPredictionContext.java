@@ -74,6 +74,9 @@ public class ArrayPredictionContext extends PredictionContext {
 		}
 
 		ArrayPredictionContext a = (ArrayPredictionContext)o;
+		if ( internedBy!=null && internedBy==a.internedBy ) {
+			return false; // hash-consed, so equal nodes are the same object
+		}
 		return Arrays.equals(returnStates, a.returnStates) &&
 		       Arrays.equals(parents, a.parents);
 	}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.IntegerList;
+import org.antlr.v4.runtime.misc.IntervalSet;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/** Memoizes the context-dependent follow sets error handling asks for:
+ *  {@link ATN#getExpectedTokens} and {@link ATN#getErrorRecoverySet}. Both
+ *  union {@link ATN#nextTokens(ATNState)} over the invoking states on the
+ *  rule invocation stack, so we key them by the state and that chain of
+ *  state numbers. Building the key only walks the stack; a hit computes no
+ *  follow sets at all.
+ *
+ *  <p>Each {@link ATN} has one cache, so all parsers for a grammar share it.
+ *  The cached sets are read-only, which makes them safe to share between
+ *  threads, and callers get a mutable copy. When a map reaches
+ *  {@link #maxSize} entries it is cleared rather than growing further.</p>
+ *
+ * @since 4.7.1
+ */
+public class FollowSetCache {
+	public static final int DEFAULT_MAX_SIZE = 1024;
+
+	protected final ATN atn;
+
+	protected final int maxSize;
+
+	/** (state, invoking states) &rarr; expected tokens */
+	protected final ConcurrentMap<IntegerList, IntervalSet> expectedTokens =
+		new ConcurrentHashMap<IntegerList, IntervalSet>();
+
+	/** invoking states &rarr; recovery set */
+	protected final ConcurrentMap<IntegerList, IntervalSet> recoverySets =
+		new ConcurrentHashMap<IntegerList, IntervalSet>();
+
+	public FollowSetCache(ATN atn) {
+		this(atn, DEFAULT_MAX_SIZE);
+	}
+
+	public FollowSetCache(ATN atn, int maxSize) {
+		this.atn = atn;
+		this.maxSize = maxSize;
+	}
+
+	/** Returns a new set the caller may modify. */
+	public IntervalSet getExpectedTokens(ATNState s, RuleContext context) {
+		IntegerList key = invokingStates(context);
+		key.add(s.stateNumber);
+
+		IntervalSet expected = expectedTokens.get(key);
+		if (expected == null) {
+			expected = computeExpectedTokens(s, context);
+			expected.setReadonly(true);
+			put(expectedTokens, key, expected);
+		}
+		return new IntervalSet(expected);
+	}
+
+	/** Returns a new set the caller may modify. */
+	public IntervalSet getErrorRecoverySet(RuleContext context) {
+		IntegerList key = invokingStates(context);
+
+		IntervalSet recoverSet = recoverySets.get(key);
+		if (recoverSet == null) {
+			recoverSet = computeErrorRecoverySet(context);
+			recoverSet.setReadonly(true);
+			put(recoverySets, key, recoverSet);
+		}
+		return new IntervalSet(recoverSet);
+	}
+
+	/** The number of cached sets of either kind. */
+	public int size() {
+		return expectedTokens.size() + recoverySets.size();
+	}
+
+	public void clear() {
+		expectedTokens.clear();
+		recoverySets.clear();
+	}
+
+	protected IntervalSet computeExpectedTokens(ATNState s, RuleContext context) {
+		RuleContext ctx = context;
+		IntervalSet following = atn.nextTokens(s);
+		IntervalSet expected = new IntervalSet();
+		expected.addAll(following);
+		expected.remove(Token.EPSILON);
+		while (ctx != null && ctx.invokingState >= 0 && following.contains(Token.EPSILON)) {
+			following = atn.nextTokens(followState(ctx));
+			expected.addAll(following);
+			expected.remove(Token.EPSILON);
+			ctx = ctx.parent;
+		}
+
+		if (following.contains(Token.EPSILON)) {
+			expected.add(Token.EOF);
+		}
+
+		return expected;
+	}
+
+	protected IntervalSet computeErrorRecoverySet(RuleContext context) {
+		IntervalSet recoverSet = new IntervalSet();
+		for (RuleContext ctx = context; ctx != null && ctx.invokingState >= 0; ctx = ctx.parent) {
+			// compute what follows who invoked us
+			recoverSet.addAll(atn.nextTokens(followState(ctx)));
+		}
+		recoverSet.remove(Token.EPSILON);
+		return recoverSet;
+	}
+
+	protected static IntegerList invokingStates(RuleContext context) {
+		IntegerList states = new IntegerList();
+		for (RuleContext ctx = context; ctx != null && ctx.invokingState >= 0; ctx = ctx.parent) {
+			states.add(ctx.invokingState);
+		}
+		return states;
+	}
+
+	protected ATNState followState(RuleContext ctx) {
+		ATNState invokingState = atn.states.get(ctx.invokingState);
+		RuleTransition rt = (RuleTransition)invokingState.transition(0);
+		return rt.followState;
+	}
+
+	protected void put(ConcurrentMap<IntegerList, IntervalSet> map, IntegerList key, IntervalSet value) {
+		if (map.size() >= maxSize) {
+			map.clear();
+		}
+		map.put(key, value);
+	}
+}
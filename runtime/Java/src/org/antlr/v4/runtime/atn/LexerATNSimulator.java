@@ -6,6 +6,7 @@
 
 package org.antlr.v4.runtime.atn;
 
+import org.antlr.v4.runtime.BulkCharStream;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.IntStream;
 import org.antlr.v4.runtime.Lexer;
@@ -176,12 +177,30 @@ public class LexerATNSimulator extends ATNSimulator {
 		int t = input.LA(1);
 
 		DFAState s = ds0; // s is current/from DFA state
+		BulkCharStream bulkInput = input instanceof BulkCharStream ? (BulkCharStream)input : null;
 
 		while ( true ) { // while more work
 			if ( debug ) {
 				System.out.format(Locale.getDefault(), "execATN loop starting closure: %s\n", s.configs);
 			}
 
+			// If t leads straight back to s, so may the symbols after it:
+			// consume that whole run at once instead of one edge at a time.
+			if ( bulkInput!=null && t>=0 ) {
+				boolean[] loop = s.getSelfLoopSet();
+				if ( t<loop.length && loop[t] ) {
+					int n = bulkInput.runLength(loop, Integer.MAX_VALUE);
+					if ( n>0 ) {
+						consume(bulkInput, n);
+						if ( s.isAcceptState ) {
+							captureSimState(prevAccept, input, s);
+						}
+						t = input.LA(1);
+						continue;
+					}
+				}
+			}
+
 			// As we move src->trg, src->trg, we keep track of the previous trg to
 			// avoid looking up the DFA state again, which is expensive.
 			// If the previous target was already part of the DFA, we might
@@ -719,6 +738,26 @@ public class LexerATNSimulator extends ATNSimulator {
 		input.consume();
 	}
 
+	/**
+	 * Consume the next {@code n} characters at once, such as a run measured
+	 * by {@link BulkCharStream#runLength}, updating {@link #line} and
+	 * {@link #charPositionInLine} as {@code n} calls to
+	 * {@link #consume(CharStream)} would.
+	 *
+	 * @since 4.7.1
+	 */
+	public void consume(BulkCharStream input, int n) {
+		int newlines = input.count('\n', n);
+		if ( newlines>0 ) {
+			line += newlines;
+			charPositionInLine = n - 1 - input.lastIndexOf('\n', n);
+		}
+		else {
+			charPositionInLine += n;
+		}
+		input.skip(n);
+	}
+
 
 	public String getTokenName(int t) {
 		if ( t==-1 ) return "EOF";
@@ -8,6 +8,8 @@ package org.antlr.v4.runtime.atn;
 
 import org.antlr.v4.runtime.dfa.DFA;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -160,4 +162,34 @@ public class ParseInfo {
 		DFA decisionToDFA = atnSimulator.decisionToDFA[decision];
 		return decisionToDFA.states.size();
 	}
+
+	/**
+	 * Writes the statistics of every decision in the text format read by the
+	 * {@code -Xprofile} option of the ANTLR Tool. The first line names the
+	 * grammar; each following line holds {@code key=value} pairs for one
+	 * decision, for example:
+	 *
+	 * <pre>
+	 * grammar=T.g4
+	 * decision=0 invocations=120 SLL_TotalLook=240 SLL_MaxLook=2 LL_Fallback=0 LL_MaxLook=0 ambiguities=0 timeInPrediction=51230
+	 * </pre>
+	 *
+	 * Profiles of several parsers can be concatenated into one file.
+	 *
+	 * @since 4.7.1
+	 */
+	public void writeProfile(Writer out) throws IOException {
+		String grammarFileName = atnSimulator.parser != null ? atnSimulator.parser.getGrammarFileName() : "";
+		out.write("grammar=" + grammarFileName + "\n");
+		for (DecisionInfo info : getDecisionInfo()) {
+			out.write("decision=" + info.decision +
+					  " invocations=" + info.invocations +
+					  " SLL_TotalLook=" + info.SLL_TotalLook +
+					  " SLL_MaxLook=" + info.SLL_MaxLook +
+					  " LL_Fallback=" + info.LL_Fallback +
+					  " LL_MaxLook=" + info.LL_MaxLook +
+					  " ambiguities=" + info.ambiguities.size() +
+					  " timeInPrediction=" + info.timeInPrediction + "\n");
+		}
+	}
 }
@@ -19,7 +19,6 @@ import org.antlr.v4.runtime.Vocabulary;
 import org.antlr.v4.runtime.VocabularyImpl;
 import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.dfa.DFAState;
-import org.antlr.v4.runtime.misc.DoubleKeyMap;
 import org.antlr.v4.runtime.misc.Interval;
 import org.antlr.v4.runtime.misc.IntervalSet;
 import org.antlr.v4.runtime.misc.Pair;
@@ -280,15 +279,28 @@ public class ParserATNSimulator extends ATNSimulator {
 
 	private PredictionMode mode = PredictionMode.LL;
 
-	/** Each prediction operation uses a cache for merge of prediction contexts.
-	 *  Don't keep around as it wastes huge amounts of memory. DoubleKeyMap
-	 *  isn't synchronized but we're ok since two threads shouldn't reuse same
+	/** Interns the contexts this simulator builds, so equal graphs are the
+	 *  same object and compare by reference. It is per simulator rather than
+	 *  global so that parsers on different threads never contend for it on
+	 *  the closure path. The {@link #mergeCache} shares it.
+	 */
+	protected final PredictionContextInterner contextInterner = new PredictionContextInterner();
+
+	/** Predictions share a cache for merge of prediction contexts. It maps
+	 *  graphs a and b to merged result c. (a,b)&rarr;c. We can avoid the merge
+	 *  if we ever see a and b again, in this prediction or a later one. The
+	 *  cache is bounded, so unlike the per-prediction map we used to discard
+	 *  after each {@link #adaptivePredict} it can't waste memory. It isn't
+	 *  synchronized but we're ok since two threads shouldn't reuse same
 	 *  parser/atnsim object because it can only handle one input at a time.
-	 *  This maps graphs a and b to merged result c. (a,b)&rarr;c. We can avoid
-	 *  the merge if we ever see a and b again.  Note that (b,a)&rarr;c should
-	 *  also be examined during cache lookup.
 	 */
-	protected DoubleKeyMap<PredictionContext,PredictionContext,PredictionContext> mergeCache;
+	protected PredictionContextMergeCache mergeCache =
+		new PredictionContextMergeCache(PredictionContextMergeCache.DEFAULT_CAPACITY, contextInterner);
+
+	/** Drop the configurations of SLL accept states as they are added to the
+	 *  DFA. See {@link #setCompactAcceptStates}.
+	 */
+	protected boolean compactAcceptStates = false;
 
 	// LAME globals to avoid parameters!!!!! I need these down deep in predTransition
 	protected TokenStream _input;
@@ -395,7 +407,6 @@ public class ParserATNSimulator extends ATNSimulator {
 			return alt;
 		}
 		finally {
-			mergeCache = null; // wack cache after each prediction
 			_dfa = null;
 			input.seek(index);
 			input.release(m);
@@ -610,11 +621,47 @@ public class ParserATNSimulator extends ATNSimulator {
 			}
 		}
 
+		if ( compactAcceptStates ) {
+			D = compactAcceptState(D);
+		}
+
 		// all adds to dfa are done after we've created full D state
 		D = addDFAEdge(dfa, previousD, t, D);
 		return D;
 	}
 
+	/**
+	 * Return a configuration-free stand-in for {@code D} if it is an accept
+	 * state that uniquely predicts an alternative without predicates, or
+	 * {@code D} itself otherwise.
+	 *
+	 * <p>SLL prediction stops at such a state, so nothing reads its
+	 * configurations again: {@link #execATN} returns its prediction, and no
+	 * reach set is ever computed from it. The stand-in's configuration set is
+	 * empty, read-only, and records only the predicted alternative. Since the
+	 * DFA merges equal states, all of a decision's accept states for the same
+	 * alternative become a single state. States that require full context or
+	 * evaluate predicates keep their configurations, since the full-context
+	 * retry and the predicate evaluation need them.</p>
+	 *
+	 * @since 4.7.1
+	 */
+	protected DFAState compactAcceptState(DFAState D) {
+		if ( !D.isAcceptState || D.requiresFullContext || D.predicates!=null ||
+			 D.configs.uniqueAlt==ATN.INVALID_ALT_NUMBER )
+		{
+			return D;
+		}
+
+		ATNConfigSet configs = new ATNConfigSet(false);
+		configs.uniqueAlt = D.prediction;
+		configs.setReadonly(true);
+		DFAState compact = new DFAState(configs);
+		compact.isAcceptState = true;
+		compact.prediction = D.prediction;
+		return compact;
+	}
+
 	protected void predicateDFAState(DFAState dfaState, DecisionState decisionState) {
 		// We need to test all predicates, even in DFA states that
 		// uniquely predict alternative.
@@ -767,10 +814,6 @@ public class ParserATNSimulator extends ATNSimulator {
 		if ( debug )
 			System.out.println("in computeReachSet, starting closure: " + closure);
 
-		if (mergeCache == null) {
-			mergeCache = new DoubleKeyMap<PredictionContext, PredictionContext, PredictionContext>();
-		}
-
 		ATNConfigSet intermediate = new ATNConfigSet(fullCtx);
 
 		/* Configurations already in a rule stop state indicate reaching the end
@@ -942,7 +985,8 @@ public class ParserATNSimulator extends ATNSimulator {
 										  boolean fullCtx)
 	{
 		// always at least the implicit call to start rule
-		PredictionContext initialContext = PredictionContext.fromRuleContext(atn, ctx);
+		PredictionContext initialContext =
+			contextInterner.internGraph(PredictionContext.fromRuleContext(atn, ctx));
 		ATNConfigSet configs = new ATNConfigSet(fullCtx);
 
 		for (int i=0; i<p.getNumberOfTransitions(); i++) {
@@ -1903,7 +1947,7 @@ public class ParserATNSimulator extends ATNSimulator {
 
 		ATNState returnState = t.followState;
 		PredictionContext newContext =
-			SingletonPredictionContext.create(config.context, returnState.stateNumber);
+			contextInterner.intern(SingletonPredictionContext.create(config.context, returnState.stateNumber));
 		return new ATNConfig(config, t.target, newContext);
 	}
 
@@ -2162,6 +2206,30 @@ public class ParserATNSimulator extends ATNSimulator {
 		return mode;
 	}
 
+	/**
+	 * Turn on or off compaction of SLL accept states. When on, accept states
+	 * that uniquely predict an alternative are stored without their
+	 * {@link ATNConfigSet}, which for large grammars holds most of the memory
+	 * used by the DFA. Predictions are unchanged. The option only affects
+	 * states added afterwards, and since generated parsers share their DFA,
+	 * it is best set before the first parse. {@link DFAState#configs} of a
+	 * compacted state is empty, so tools that display DFA configurations
+	 * show less.
+	 *
+	 * @see #compactAcceptState
+	 * @since 4.7.1
+	 */
+	public void setCompactAcceptStates(boolean compactAcceptStates) {
+		this.compactAcceptStates = compactAcceptStates;
+	}
+
+	/**
+	 * @since 4.7.1
+	 */
+	public boolean getCompactAcceptStates() {
+		return compactAcceptStates;
+	}
+
 	/**
 	 * @since 4.3
 	 */
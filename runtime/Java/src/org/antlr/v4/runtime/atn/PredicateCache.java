@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.Recognizer;
+
+import java.util.Arrays;
+
+/** Remembers the results of semantic predicates whose value does not change
+ *  while a parser runs, such as feature flags or dialect switches, so
+ *  prediction asks {@link Recognizer#sempred} for each of them only once.
+ *
+ *  <p>Nothing is cached until a predicate is declared stable with
+ *  {@link #markStable}. Only context-independent predicates (those with
+ *  {@link SemanticContext.Predicate#isCtxDependent} {@code false}) can be
+ *  cached, because they are the ones prediction evaluates without a local
+ *  context; marking a context-dependent predicate stable has no effect.
+ *  A predicate that reads the input, for example
+ *  {@code {_input.LT(1).getText().equals("x")}?}, is context-independent
+ *  in this sense but not stable, and must not be marked.</p>
+ *
+ *  <p>Call {@link #invalidate()} or {@link #invalidate(int, int)} when
+ *  the state a stable predicate reads changes. {@link Parser#reset} drops
+ *  all cached results.</p>
+ *
+ *  <p>A cached result also takes the place of evaluation when prediction
+ *  reaches a DFA state that holds predicates, so decisions guarded only by
+ *  stable predicates are predicted from the DFA without calling back into
+ *  the parser. The DFA itself is shared by all parsers for the grammar, so
+ *  the results are kept here rather than in it.</p>
+ *
+ *  <p>A cache belongs to one parser and is not thread-safe.</p>
+ *
+ * @see Parser#setPredicateCache
+ * @since 4.7.1
+ */
+public class PredicateCache {
+	private static final byte UNSTABLE = 0;
+	private static final byte UNKNOWN = 1;
+	private static final byte TRUE = 2;
+	private static final byte FALSE = 3;
+
+	/** [ruleIndex][predIndex] &rarr; one of the constants above; a rule
+	 *  without stable predicates has no array.
+	 */
+	private byte[][] results = new byte[0][];
+
+	/** Declare that predicate {@code predIndex} of rule {@code ruleIndex}
+	 *  evaluates the same way until the cache is invalidated.
+	 */
+	public void markStable(int ruleIndex, int predIndex) {
+		if ( ruleIndex>=results.length ) {
+			results = Arrays.copyOf(results, ruleIndex + 1);
+		}
+
+		byte[] rule = results[ruleIndex];
+		if ( rule==null ) {
+			rule = results[ruleIndex] = new byte[predIndex + 1];
+		}
+		else if ( predIndex>=rule.length ) {
+			rule = results[ruleIndex] = Arrays.copyOf(rule, predIndex + 1);
+		}
+
+		if ( rule[predIndex]==UNSTABLE ) {
+			rule[predIndex] = UNKNOWN;
+		}
+	}
+
+	public boolean isStable(int ruleIndex, int predIndex) {
+		return state(ruleIndex, predIndex)!=UNSTABLE;
+	}
+
+	/** Evaluate context-independent predicate {@code predIndex} of rule
+	 *  {@code ruleIndex} for {@code recognizer}, from the cache if the
+	 *  predicate is stable and has been evaluated since the last
+	 *  invalidation.
+	 */
+	public boolean eval(Recognizer<?, ?> recognizer, int ruleIndex, int predIndex) {
+		byte state = state(ruleIndex, predIndex);
+		if ( state==TRUE ) return true;
+		if ( state==FALSE ) return false;
+
+		boolean result = recognizer.sempred(null, ruleIndex, predIndex);
+		if ( state==UNKNOWN ) {
+			results[ruleIndex][predIndex] = result ? TRUE : FALSE;
+		}
+		return result;
+	}
+
+	/** Forget the results of all stable predicates. They stay stable. */
+	public void invalidate() {
+		for (byte[] rule : results) {
+			if ( rule==null ) continue;
+			for (int i = 0; i < rule.length; i++) {
+				if ( rule[i]!=UNSTABLE ) rule[i] = UNKNOWN;
+			}
+		}
+	}
+
+	/** Forget the result of one stable predicate. */
+	public void invalidate(int ruleIndex, int predIndex) {
+		if ( isStable(ruleIndex, predIndex) ) {
+			results[ruleIndex][predIndex] = UNKNOWN;
+		}
+	}
+
+	private byte state(int ruleIndex, int predIndex) {
+		if ( ruleIndex<0 || ruleIndex>=results.length ) return UNSTABLE;
+		byte[] rule = results[ruleIndex];
+		if ( rule==null || predIndex<0 || predIndex>=rule.length ) return UNSTABLE;
+		return rule[predIndex];
+	}
+}
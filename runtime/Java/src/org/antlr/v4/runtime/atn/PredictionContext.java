@@ -62,6 +62,12 @@ public abstract class PredictionContext {
 	 */
 	public final int cachedHashCode;
 
+	/** The table that returns this node for its structure, if any. Two
+	 *  nodes interned by the same table are equal only if they are the same
+	 *  object.
+	 */
+	PredictionContextInterner internedBy;
+
 	protected PredictionContext(int cachedHashCode) {
 		this.cachedHashCode = cachedHashCode;
 	}
@@ -144,7 +150,7 @@ public abstract class PredictionContext {
 	public static PredictionContext merge(
 		PredictionContext a, PredictionContext b,
 		boolean rootIsWildcard,
-		DoubleKeyMap<PredictionContext,PredictionContext,PredictionContext> mergeCache)
+		PredictionContextMergeCache mergeCache)
 	{
 		assert a!=null && b!=null; // must be empty context, never null
 
@@ -175,6 +181,21 @@ public abstract class PredictionContext {
 						   rootIsWildcard, mergeCache);
 	}
 
+	/** @deprecated Use {@link #merge(PredictionContext, PredictionContext, boolean, PredictionContextMergeCache)}. */
+	@Deprecated
+	public static PredictionContext merge(
+		PredictionContext a, PredictionContext b,
+		boolean rootIsWildcard,
+		DoubleKeyMap<PredictionContext,PredictionContext,PredictionContext> mergeCache)
+	{
+		return merge(a, b, rootIsWildcard, PredictionContextMergeCache.wrap(mergeCache));
+	}
+
+	/** Return {@code ctx} as interned by {@code mergeCache}, if there is one. */
+	protected static <T extends PredictionContext> T intern(T ctx, PredictionContextMergeCache mergeCache) {
+		return mergeCache!=null ? mergeCache.intern(ctx) : ctx;
+	}
+
 	/**
 	 * Merge two {@link SingletonPredictionContext} instances.
 	 *
@@ -206,18 +227,17 @@ public abstract class PredictionContext {
 		SingletonPredictionContext a,
 		SingletonPredictionContext b,
 		boolean rootIsWildcard,
-		DoubleKeyMap<PredictionContext,PredictionContext,PredictionContext> mergeCache)
+		PredictionContextMergeCache mergeCache)
 	{
 		if ( mergeCache!=null ) {
-			PredictionContext previous = mergeCache.get(a,b);
-			if ( previous!=null ) return previous;
-			previous = mergeCache.get(b,a);
+			PredictionContext previous = mergeCache.get(a, b, rootIsWildcard);
 			if ( previous!=null ) return previous;
 		}
 
 		PredictionContext rootMerge = mergeRoot(a, b, rootIsWildcard);
 		if ( rootMerge!=null ) {
-			if ( mergeCache!=null ) mergeCache.put(a, b, rootMerge);
+			rootMerge = intern(rootMerge, mergeCache);
+			if ( mergeCache!=null ) mergeCache.put(a, b, rootIsWildcard, rootMerge);
 			return rootMerge;
 		}
 
@@ -230,8 +250,8 @@ public abstract class PredictionContext {
 			// merge parents x and y, giving array node with x,y then remainders
 			// of those graphs.  dup a, a' points at merged array
 			// new joined parent so create new singleton pointing to it, a'
-			PredictionContext a_ = SingletonPredictionContext.create(parent, a.returnState);
-			if ( mergeCache!=null ) mergeCache.put(a, b, a_);
+			PredictionContext a_ = intern(SingletonPredictionContext.create(parent, a.returnState), mergeCache);
+			if ( mergeCache!=null ) mergeCache.put(a, b, rootIsWildcard, a_);
 			return a_;
 		}
 		else { // a != b payloads differ
@@ -248,8 +268,8 @@ public abstract class PredictionContext {
 					payloads[1] = a.returnState;
 				}
 				PredictionContext[] parents = {singleParent, singleParent};
-				PredictionContext a_ = new ArrayPredictionContext(parents, payloads);
-				if ( mergeCache!=null ) mergeCache.put(a, b, a_);
+				PredictionContext a_ = intern(new ArrayPredictionContext(parents, payloads), mergeCache);
+				if ( mergeCache!=null ) mergeCache.put(a, b, rootIsWildcard, a_);
 				return a_;
 			}
 			// parents differ and can't merge them. Just pack together
@@ -262,12 +282,23 @@ public abstract class PredictionContext {
 				payloads[1] = a.returnState;
 				parents = new PredictionContext[] {b.parent, a.parent};
 			}
-			PredictionContext a_ = new ArrayPredictionContext(parents, payloads);
-			if ( mergeCache!=null ) mergeCache.put(a, b, a_);
+			PredictionContext a_ = intern(new ArrayPredictionContext(parents, payloads), mergeCache);
+			if ( mergeCache!=null ) mergeCache.put(a, b, rootIsWildcard, a_);
 			return a_;
 		}
 	}
 
+	/** @deprecated Use {@link #mergeSingletons(SingletonPredictionContext, SingletonPredictionContext, boolean, PredictionContextMergeCache)}. */
+	@Deprecated
+	public static PredictionContext mergeSingletons(
+		SingletonPredictionContext a,
+		SingletonPredictionContext b,
+		boolean rootIsWildcard,
+		DoubleKeyMap<PredictionContext,PredictionContext,PredictionContext> mergeCache)
+	{
+		return mergeSingletons(a, b, rootIsWildcard, PredictionContextMergeCache.wrap(mergeCache));
+	}
+
 	/**
 	 * Handle case where at least one of {@code a} or {@code b} is
 	 * {@link #EMPTY}. In the following diagrams, the symbol {@code $} is used
@@ -357,12 +388,10 @@ public abstract class PredictionContext {
 		ArrayPredictionContext a,
 		ArrayPredictionContext b,
 		boolean rootIsWildcard,
-		DoubleKeyMap<PredictionContext,PredictionContext,PredictionContext> mergeCache)
+		PredictionContextMergeCache mergeCache)
 	{
 		if ( mergeCache!=null ) {
-			PredictionContext previous = mergeCache.get(a,b);
-			if ( previous!=null ) return previous;
-			previous = mergeCache.get(b,a);
+			PredictionContext previous = mergeCache.get(a, b, rootIsWildcard);
 			if ( previous!=null ) return previous;
 		}
 
@@ -433,35 +462,47 @@ public abstract class PredictionContext {
 		if ( k < mergedParents.length ) { // write index < last position; trim
 			if ( k == 1 ) { // for just one merged element, return singleton top
 				PredictionContext a_ =
-					SingletonPredictionContext.create(mergedParents[0],
-													  mergedReturnStates[0]);
-				if ( mergeCache!=null ) mergeCache.put(a,b,a_);
+					intern(SingletonPredictionContext.create(mergedParents[0],
+															 mergedReturnStates[0]),
+						   mergeCache);
+				if ( mergeCache!=null ) mergeCache.put(a, b, rootIsWildcard, a_);
 				return a_;
 			}
 			mergedParents = Arrays.copyOf(mergedParents, k);
 			mergedReturnStates = Arrays.copyOf(mergedReturnStates, k);
 		}
 
+		// interning needs final parents, so combine them before we share M
+		combineCommonParents(mergedParents);
 		PredictionContext M =
-			new ArrayPredictionContext(mergedParents, mergedReturnStates);
+			intern(new ArrayPredictionContext(mergedParents, mergedReturnStates), mergeCache);
 
 		// if we created same array as a or b, return that instead
 		// TODO: track whether this is possible above during merge sort for speed
 		if ( M.equals(a) ) {
-			if ( mergeCache!=null ) mergeCache.put(a,b,a);
+			if ( mergeCache!=null ) mergeCache.put(a, b, rootIsWildcard, a);
 			return a;
 		}
 		if ( M.equals(b) ) {
-			if ( mergeCache!=null ) mergeCache.put(a,b,b);
+			if ( mergeCache!=null ) mergeCache.put(a, b, rootIsWildcard, b);
 			return b;
 		}
 
-		combineCommonParents(mergedParents);
-
-		if ( mergeCache!=null ) mergeCache.put(a,b,M);
+		if ( mergeCache!=null ) mergeCache.put(a, b, rootIsWildcard, M);
 		return M;
 	}
 
+	/** @deprecated Use {@link #mergeArrays(ArrayPredictionContext, ArrayPredictionContext, boolean, PredictionContextMergeCache)}. */
+	@Deprecated
+	public static PredictionContext mergeArrays(
+		ArrayPredictionContext a,
+		ArrayPredictionContext b,
+		boolean rootIsWildcard,
+		DoubleKeyMap<PredictionContext,PredictionContext,PredictionContext> mergeCache)
+	{
+		return mergeArrays(a, b, rootIsWildcard, PredictionContextMergeCache.wrap(mergeCache));
+	}
+
 	/**
 	 * Make pass over all <em>M</em> {@code parents}; merge any {@code equals()}
 	 * ones.
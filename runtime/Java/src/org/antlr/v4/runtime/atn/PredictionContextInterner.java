@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/** A hash-cons table for {@link PredictionContext} nodes.
+ *
+ *  <p>{@link #intern} returns the one live node equal to its argument, so
+ *  two graphs interned by the same table are equal exactly when they are the
+ *  same object and {@link PredictionContext#equals} no longer has to walk
+ *  them. A node is only interned if its parents are interned by this table,
+ *  so interning happens bottom-up as a {@link ParserATNSimulator} builds
+ *  graphs in closure and {@link PredictionContext#merge}. Nodes from other
+ *  tables, or from none, are left alone and compared structurally.</p>
+ *
+ *  <p>Entries are weak: a node nobody else references can be collected,
+ *  and its entry is purged on a later call.</p>
+ *
+ *  <p>Not thread-safe. Each {@link ParserATNSimulator} owns one, so the
+ *  closure hot path takes no lock and parsers on different threads never
+ *  share a table.</p>
+ *
+ * @since 4.7.1
+ */
+public class PredictionContextInterner {
+	protected static final int INITIAL_CAPACITY = 256;
+
+	protected static final class Entry extends WeakReference<PredictionContext> {
+		final int hash;
+		Entry next;
+
+		Entry(PredictionContext ctx, ReferenceQueue<PredictionContext> queue, Entry next) {
+			super(ctx, queue);
+			this.hash = ctx.hashCode();
+			this.next = next;
+		}
+	}
+
+	protected Entry[] table = new Entry[INITIAL_CAPACITY];
+
+	protected int count;
+
+	protected final ReferenceQueue<PredictionContext> collected = new ReferenceQueue<PredictionContext>();
+
+	/** Return the interned node equal to {@code ctx}, adding {@code ctx} if
+	 *  there is none. Returns {@code ctx} unchanged if it or one of its
+	 *  parents was not interned by this table.
+	 */
+	public <T extends PredictionContext> T intern(T ctx) {
+		if ( ctx.internedBy!=null || ctx==PredictionContext.EMPTY ) return ctx;
+		for (int i = 0; i < ctx.size(); i++) {
+			PredictionContext parent = ctx.getParent(i);
+			if ( parent!=null && parent!=PredictionContext.EMPTY && parent.internedBy!=this ) {
+				return ctx;
+			}
+		}
+
+		purge();
+		int hash = ctx.hashCode();
+		int index = hash & (table.length - 1);
+		for (Entry e = table[index]; e != null; e = e.next) {
+			if ( e.hash!=hash ) continue;
+			PredictionContext existing = e.get();
+			if ( existing!=null && sameNode(existing, ctx) ) {
+				@SuppressWarnings("unchecked")
+				T result = (T)existing;
+				return result;
+			}
+		}
+
+		ctx.internedBy = this;
+		table[index] = new Entry(ctx, collected, table[index]);
+		if ( ++count > table.length * 3 / 4 ) {
+			rehash();
+		}
+		return ctx;
+	}
+
+	/** Intern every node of {@code ctx}, parents first, copying the nodes
+	 *  whose parents change. Use it for graphs built outside this table, such
+	 *  as the one {@link PredictionContext#fromRuleContext} returns.
+	 */
+	public PredictionContext internGraph(PredictionContext ctx) {
+		return internGraph(ctx, new IdentityHashMap<PredictionContext, PredictionContext>());
+	}
+
+	protected PredictionContext internGraph(PredictionContext ctx,
+											Map<PredictionContext, PredictionContext> visited)
+	{
+		if ( ctx.internedBy==this || ctx==PredictionContext.EMPTY ) return ctx;
+		PredictionContext existing = visited.get(ctx);
+		if ( existing!=null ) return existing;
+
+		PredictionContext[] parents = new PredictionContext[ctx.size()];
+		boolean changed = false;
+		for (int i = 0; i < parents.length; i++) {
+			PredictionContext parent = ctx.getParent(i);
+			parents[i] = parent!=null ? internGraph(parent, visited) : null;
+			changed |= parents[i]!=parent;
+		}
+
+		PredictionContext updated = ctx;
+		if ( changed || ctx.internedBy!=null ) {
+			if ( parents.length==1 ) {
+				updated = SingletonPredictionContext.create(parents[0], ctx.getReturnState(0));
+			}
+			else {
+				updated = new ArrayPredictionContext(parents, ((ArrayPredictionContext)ctx).returnStates);
+			}
+		}
+		updated = intern(updated);
+		visited.put(ctx, updated);
+		return updated;
+	}
+
+	/** The number of interned nodes, including ones not yet purged. */
+	public int size() {
+		return count;
+	}
+
+	/** Are {@code a} and {@code b} the same node, given that their parents
+	 *  are interned and can be compared by identity?
+	 */
+	protected static boolean sameNode(PredictionContext a, PredictionContext b) {
+		if ( a.getClass()!=b.getClass() || a.size()!=b.size() ) return false;
+		if ( a instanceof ArrayPredictionContext ) {
+			ArrayPredictionContext x = (ArrayPredictionContext)a;
+			ArrayPredictionContext y = (ArrayPredictionContext)b;
+			if ( !Arrays.equals(x.returnStates, y.returnStates) ) return false;
+			for (int i = 0; i < x.parents.length; i++) {
+				if ( x.parents[i]!=y.parents[i] ) return false;
+			}
+			return true;
+		}
+
+		return a.getReturnState(0)==b.getReturnState(0) && a.getParent(0)==b.getParent(0);
+	}
+
+	/** Drop the entries of collected nodes. */
+	protected void purge() {
+		Reference<? extends PredictionContext> ref;
+		while ( (ref = collected.poll())!=null ) {
+			Entry dead = (Entry)ref;
+			int index = dead.hash & (table.length - 1);
+			Entry prev = null;
+			for (Entry e = table[index]; e != null; prev = e, e = e.next) {
+				if ( e==dead ) {
+					if ( prev==null ) table[index] = e.next;
+					else prev.next = e.next;
+					count--;
+					break;
+				}
+			}
+		}
+	}
+
+	protected void rehash() {
+		Entry[] old = table;
+		Entry[] resized = new Entry[old.length * 2];
+		int live = 0;
+		for (Entry head : old) {
+			Entry e = head;
+			while ( e!=null ) {
+				Entry next = e.next;
+				if ( e.get()!=null ) { // cleared entries are dropped here and skipped by purge()
+					int index = e.hash & (resized.length - 1);
+					e.next = resized[index];
+					resized[index] = e;
+					live++;
+				}
+				e = next;
+			}
+		}
+		table = resized;
+		count = live;
+	}
+}
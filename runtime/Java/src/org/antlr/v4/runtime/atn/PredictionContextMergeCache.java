@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.misc.DoubleKeyMap;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/** A bounded cache of {@link PredictionContext#merge} results. It maps
+ *  {@code (a, b)} and {@code (b, a)} to the merged graph, separately for
+ *  local-context ({@code rootIsWildcard}) and full-context merges.
+ *
+ *  <p>The cache is direct-mapped: each pair has exactly one slot and a new
+ *  result simply replaces whatever was there. It never grows, so a
+ *  {@link ParserATNSimulator} keeps one for its whole life instead of
+ *  throwing its merges away after each prediction. Keys are compared with
+ *  {@link PredictionContext#equals}, which is a reference comparison for
+ *  graphs interned by the same table.</p>
+ *
+ *  <p>The nodes a merge builds are interned by the cache's
+ *  {@link PredictionContextInterner}, which the owning simulator also uses
+ *  for the contexts it creates in closure.</p>
+ *
+ *  <p>It extends {@link DoubleKeyMap} only so code written against the old
+ *  {@code merge(..., DoubleKeyMap)} signatures, in particular calls passing
+ *  {@code null}, still compiles and picks the new overloads. The map
+ *  methods themselves aren't supported since a pair maps to a different
+ *  result per merge mode.</p>
+ *
+ *  <p>Not thread-safe; like the simulator that owns it, it serves one
+ *  parse at a time.</p>
+ *
+ * @since 4.7.1
+ */
+public class PredictionContextMergeCache extends DoubleKeyMap<PredictionContext, PredictionContext, PredictionContext> {
+	public static final int DEFAULT_CAPACITY = 1 << 12;
+
+	protected final PredictionContext[] left;
+	protected final PredictionContext[] right;
+	protected final PredictionContext[] merged;
+	protected final boolean[] wildcard;
+	protected final int mask;
+
+	/** Interns the nodes merges build; {@code null} to leave them alone. */
+	protected final PredictionContextInterner interner;
+
+	public PredictionContextMergeCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public PredictionContextMergeCache(int capacity) {
+		this(capacity, new PredictionContextInterner());
+	}
+
+	/** @param capacity rounded up to a power of two */
+	public PredictionContextMergeCache(int capacity, PredictionContextInterner interner) {
+		this.interner = interner;
+		int size = Integer.highestOneBit(Math.max(capacity, 1));
+		if ( size < capacity ) size <<= 1;
+		left = new PredictionContext[size];
+		right = new PredictionContext[size];
+		merged = new PredictionContext[size];
+		wildcard = new boolean[size];
+		mask = size - 1;
+	}
+
+	/** Adapt the map the deprecated {@code DoubleKeyMap} overloads take. */
+	static PredictionContextMergeCache wrap(DoubleKeyMap<PredictionContext, PredictionContext, PredictionContext> map) {
+		if ( map==null || map instanceof PredictionContextMergeCache ) {
+			return (PredictionContextMergeCache)map;
+		}
+		return new MapAdapter(map);
+	}
+
+	public <T extends PredictionContext> T intern(T ctx) {
+		return interner!=null ? interner.intern(ctx) : ctx;
+	}
+
+	public PredictionContext get(PredictionContext a, PredictionContext b, boolean rootIsWildcard) {
+		int i = slot(a, b, rootIsWildcard);
+		PredictionContext l = left[i];
+		if ( l==null || wildcard[i]!=rootIsWildcard ) return null;
+		PredictionContext r = right[i];
+		if ( (l.equals(a) && r.equals(b)) || (l.equals(b) && r.equals(a)) ) {
+			return merged[i];
+		}
+		return null;
+	}
+
+	public void put(PredictionContext a, PredictionContext b, boolean rootIsWildcard, PredictionContext result) {
+		int i = slot(a, b, rootIsWildcard);
+		left[i] = a;
+		right[i] = b;
+		merged[i] = result;
+		wildcard[i] = rootIsWildcard;
+	}
+
+	public void clear() {
+		for (int i = 0; i < left.length; i++) {
+			left[i] = null;
+			right[i] = null;
+			merged[i] = null;
+		}
+	}
+
+	/** Symmetric in {@code a} and {@code b} so both orders share a slot. */
+	protected int slot(PredictionContext a, PredictionContext b, boolean rootIsWildcard) {
+		int hash = a.hashCode() + b.hashCode();
+		if ( rootIsWildcard ) hash = ~hash;
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		return hash & mask;
+	}
+
+	@Override
+	public PredictionContext put(PredictionContext k1, PredictionContext k2, PredictionContext v) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public PredictionContext get(PredictionContext k1, PredictionContext k2) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Map<PredictionContext, PredictionContext> get(PredictionContext k1) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Collection<PredictionContext> values(PredictionContext k1) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Set<PredictionContext> keySet() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Set<PredictionContext> keySet(PredictionContext k1) {
+		throw new UnsupportedOperationException();
+	}
+
+	/** Looks merges up in a caller's map the way the per-prediction cache
+	 *  did: either order, ignoring the merge mode, and without interning.
+	 */
+	static final class MapAdapter extends PredictionContextMergeCache {
+		final DoubleKeyMap<PredictionContext, PredictionContext, PredictionContext> map;
+
+		MapAdapter(DoubleKeyMap<PredictionContext, PredictionContext, PredictionContext> map) {
+			super(1, null);
+			this.map = map;
+		}
+
+		@Override
+		public PredictionContext get(PredictionContext a, PredictionContext b, boolean rootIsWildcard) {
+			PredictionContext previous = map.get(a, b);
+			return previous!=null ? previous : map.get(b, a);
+		}
+
+		@Override
+		public void put(PredictionContext a, PredictionContext b, boolean rootIsWildcard, PredictionContext result) {
+			map.put(a, b, result);
+		}
+	}
+}
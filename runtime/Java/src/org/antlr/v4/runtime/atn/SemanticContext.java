@@ -6,6 +6,7 @@
 
 package org.antlr.v4.runtime.atn;
 
+import org.antlr.v4.runtime.Parser;
 import org.antlr.v4.runtime.Recognizer;
 import org.antlr.v4.runtime.RuleContext;
 import org.antlr.v4.runtime.misc.MurmurHash;
@@ -90,6 +91,11 @@ public abstract class SemanticContext {
 
         @Override
         public boolean eval(Recognizer<?,?> parser, RuleContext parserCallStack) {
+            if ( !isCtxDependent && parser instanceof Parser ) {
+                PredicateCache cache = ((Parser)parser).getPredicateCache();
+                if ( cache!=null ) return cache.eval(parser, ruleIndex, predIndex);
+            }
+
             RuleContext localctx = isCtxDependent ? parserCallStack : null;
             return parser.sempred(localctx, ruleIndex, predIndex);
         }
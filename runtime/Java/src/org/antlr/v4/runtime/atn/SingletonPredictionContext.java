@@ -56,6 +56,9 @@ public class SingletonPredictionContext extends PredictionContext {
 		}
 
 		SingletonPredictionContext s = (SingletonPredictionContext)o;
+		if ( internedBy!=null && internedBy==s.internedBy ) {
+			return false; // hash-consed, so equal nodes are the same object
+		}
 		return returnState == s.returnState &&
 			(parent!=null && parent.equals(s.parent));
 	}
@@ -53,6 +53,11 @@ public class DFAState {
  	 */
 	private DFAEdgeCache edges;
 
+	/** Cached result of {@link #getSelfLoopSet}, and the edge count it was
+	 *  computed for.
+	 */
+	private volatile SelfLoop selfLoop;
+
 	public boolean isAcceptState = false;
 
 	/** if accept state, what ttype do we match or alt do we predict?
@@ -86,6 +91,23 @@ public class DFAState {
 
 	public PredPrediction[] predicates;
 
+	/** Self-loops on symbols at or above this aren't reported by
+	 *  {@link #getSelfLoopSet}, which keeps its table small.
+	 */
+	public static final int SELF_LOOP_LIMIT = 256;
+
+	private static final class SelfLoop {
+		static final SelfLoop NONE = new SelfLoop(0, new boolean[0]);
+
+		final int edgeCount;
+		final boolean[] set;
+
+		SelfLoop(int edgeCount, boolean[] set) {
+			this.edgeCount = edgeCount;
+			this.set = set;
+		}
+	}
+
 	/** Map a predicate to a predicted alternative. */
 	public static class PredPrediction {
 
@@ -130,6 +152,45 @@ public class DFAState {
 		return edges.getKeys();
 	}
 
+	/**
+	 * Return the symbols below {@link #SELF_LOOP_LIMIT} whose edge leads
+	 * back to this state, as a table indexed by symbol. A lexer in this state
+	 * can consume a whole run of such symbols without looking at any other
+	 * edge; think of the body of an identifier or a comment. The table is
+	 * recomputed when edges are added and is empty if there is no loop.
+	 *
+	 * @since 4.7.1
+	 */
+	public boolean[] getSelfLoopSet() {
+		if ( edges==null ) return SelfLoop.NONE.set;
+		SelfLoop loop = selfLoop;
+		int edgeCount = edges.size();
+		if ( loop==null || loop.edgeCount!=edgeCount ) {
+			loop = computeSelfLoop(edgeCount);
+			selfLoop = loop;
+		}
+		return loop.set;
+	}
+
+	private SelfLoop computeSelfLoop(int edgeCount) {
+		int length = 0;
+		int[] keys = edges.getKeys();
+		for (int symbol : keys) {
+			if ( symbol>=0 && symbol<SELF_LOOP_LIMIT && edges.getTargetState(symbol)==this ) {
+				length = Math.max(length, symbol + 1);
+			}
+		}
+		if ( length==0 ) return new SelfLoop(edgeCount, SelfLoop.NONE.set);
+
+		boolean[] set = new boolean[length <= 128 ? 128 : SELF_LOOP_LIMIT];
+		for (int symbol : keys) {
+			if ( symbol>=0 && symbol<SELF_LOOP_LIMIT && edges.getTargetState(symbol)==this ) {
+				set[symbol] = true;
+			}
+		}
+		return new SelfLoop(edgeCount, set);
+	}
+
 	/** Get the set of all alts mentioned by all ATN configurations in this
 	 *  DFA state.
 	 */
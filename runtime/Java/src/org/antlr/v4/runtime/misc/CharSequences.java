@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.misc;
+
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.Token;
+
+/**
+ * Helpers for working with token text as a {@link CharSequence} so that
+ * comparing, hashing, or converting it doesn't require a {@link String}.
+ *
+ * @see CommonToken#getTextAsCharSequence
+ * @since 4.7.1
+ */
+public final class CharSequences {
+	private CharSequences() {
+	}
+
+	/** Return the text of {@code t} without copying it where the token and
+	 *  its input stream allow; otherwise {@link Token#getText}.
+	 */
+	public static CharSequence textOf(Token t) {
+		if ( t instanceof CommonToken ) {
+			return ((CommonToken)t).getTextAsCharSequence();
+		}
+		return t.getText();
+	}
+
+	/** Do {@code a} and {@code b} hold the same characters? Two {@code null}s
+	 *  are equal.
+	 */
+	public static boolean contentEquals(CharSequence a, CharSequence b) {
+		if ( a==b ) return true;
+		if ( a==null || b==null ) return false;
+		if ( a instanceof String ) return ((String)a).contentEquals(b);
+		if ( b instanceof String ) return ((String)b).contentEquals(a);
+		int n = a.length();
+		if ( n!=b.length() ) return false;
+		for (int i = 0; i < n; i++) {
+			if ( a.charAt(i)!=b.charAt(i) ) return false;
+		}
+		return true;
+	}
+
+	/** The hash code {@code s.toString()} would have, computed in place. */
+	public static int hash(CharSequence s) {
+		if ( s instanceof String ) return s.hashCode();
+		int h = 0;
+		int n = s.length();
+		for (int i = 0; i < n; i++) {
+			h = 31 * h + s.charAt(i);
+		}
+		return h;
+	}
+
+	/** Like {@link Integer#parseInt(String)}. */
+	public static int parseInt(CharSequence s) {
+		return parseInt(s, 10);
+	}
+
+	/** Like {@link Integer#parseInt(String, int)}, without building a
+	 *  {@link String} unless the text is not a valid number.
+	 */
+	public static int parseInt(CharSequence s, int radix) {
+		if ( s==null ) throw new NumberFormatException("null");
+		int n = s.length();
+		if ( n==0 || radix<Character.MIN_RADIX || radix>Character.MAX_RADIX ) {
+			throw numberFormatException(s, radix);
+		}
+
+		// accumulate negatively, since |MIN_VALUE| > MAX_VALUE
+		int i = 0;
+		boolean negative = false;
+		int limit = -Integer.MAX_VALUE;
+		char first = s.charAt(0);
+		if ( first=='-' || first=='+' ) {
+			if ( n==1 ) throw numberFormatException(s, radix);
+			negative = first=='-';
+			if ( negative ) limit = Integer.MIN_VALUE;
+			i++;
+		}
+
+		int multmin = limit / radix;
+		int result = 0;
+		for (; i < n; i++) {
+			int digit = Character.digit(s.charAt(i), radix);
+			if ( digit<0 || result<multmin ) throw numberFormatException(s, radix);
+			result *= radix;
+			if ( result<limit + digit ) throw numberFormatException(s, radix);
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
+	private static NumberFormatException numberFormatException(CharSequence s, int radix) {
+		String radixSuffix = radix==10 ? "" : " under radix " + radix;
+		return new NumberFormatException("For input string: \"" + s + "\"" + radixSuffix);
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.misc;
+
+import java.util.Arrays;
+
+/**
+ * Maps token text to one canonical {@link String} per distinct value, so
+ * identifiers that occur many times share a single string. Lookups take a
+ * {@link CharSequence} and only allocate a string the first time a value is
+ * seen.
+ *
+ * <p>Not thread-safe; use one per lexer.</p>
+ *
+ * @see org.antlr.v4.runtime.CommonTokenFactory#CommonTokenFactory(TextInterner)
+ * @since 4.7.1
+ */
+public class TextInterner {
+	protected String[] table;
+	protected int size;
+
+	public TextInterner() {
+		this(256);
+	}
+
+	public TextInterner(int initialCapacity) {
+		int capacity = Integer.highestOneBit(Math.max(initialCapacity, 4) * 2 - 1) * 2;
+		table = new String[capacity];
+	}
+
+	/** Return the string with the same characters as {@code text}, adding
+	 *  one if this is the first time it has been seen.
+	 */
+	public String intern(CharSequence text) {
+		int hash = CharSequences.hash(text);
+		int mask = table.length - 1;
+		int i = mix(hash) & mask;
+		for (String s = table[i]; s != null; s = table[i]) {
+			if ( s.hashCode()==hash && CharSequences.contentEquals(s, text) ) {
+				return s;
+			}
+			i = (i + 1) & mask;
+		}
+
+		String s = text.toString();
+		table[i] = s;
+		if ( ++size > table.length / 2 ) {
+			rehash();
+		}
+		return s;
+	}
+
+	/** The number of distinct strings interned. */
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(table, null);
+		size = 0;
+	}
+
+	protected void rehash() {
+		String[] old = table;
+		table = new String[old.length * 2];
+		int mask = table.length - 1;
+		for (String s : old) {
+			if ( s==null ) continue;
+			int i = mix(s.hashCode()) & mask;
+			while ( table[i]!=null ) {
+				i = (i + 1) & mask;
+			}
+			table[i] = s;
+		}
+	}
+
+	/** String hashes are weak in the low bits for short keys; spread them. */
+	protected static int mix(int hash) {
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		return hash;
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+import org.antlr.v4.runtime.Parser;
+
+import java.util.Arrays;
+
+/**
+ * A {@link ParseTreeProperty} that stores values in an array indexed by
+ * {@link Trees#getNodeId node id} rather than in a hash map. Turn on
+ * {@link Parser#setAssignNodeIds} before parsing so the nodes have ids;
+ * then {@link #get} and {@link #put} are an array access and allocate
+ * nothing once the array has grown to cover the tree.
+ *
+ * <p>Nodes without an id are still accepted and fall back to the inherited
+ * identity map, so this class can replace {@link ParseTreeProperty}
+ * anywhere.</p>
+ *
+ * @see IntParseTreeProperty
+ * @see LongParseTreeProperty
+ * @since 4.7.1
+ */
+public class IndexedParseTreeProperty<V> extends ParseTreeProperty<V> {
+	protected Object[] values;
+
+	public IndexedParseTreeProperty() {
+		this(16);
+	}
+
+	/** @param initialCapacity typically {@link Parser#getNodeCount} */
+	public IndexedParseTreeProperty(int initialCapacity) {
+		values = new Object[Math.max(initialCapacity, 1)];
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(ParseTree node) {
+		int id = Trees.getNodeId(node);
+		if ( id<0 ) return super.get(node);
+		return id < values.length ? (V)values[id] : null;
+	}
+
+	@Override
+	public void put(ParseTree node, V value) {
+		int id = Trees.getNodeId(node);
+		if ( id<0 ) {
+			super.put(node, value);
+			return;
+		}
+		if ( id >= values.length ) {
+			values = Arrays.copyOf(values, Math.max(values.length * 2, id + 1));
+		}
+		values[id] = value;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V removeFrom(ParseTree node) {
+		int id = Trees.getNodeId(node);
+		if ( id<0 ) return super.removeFrom(node);
+		if ( id >= values.length ) return null;
+		V old = (V)values[id];
+		values[id] = null;
+		return old;
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+import org.antlr.v4.runtime.Parser;
+
+import java.util.Arrays;
+
+/**
+ * Associate a {@code long} with each parse tree node without boxing. Like
+ * {@link IndexedParseTreeProperty}, values live in an array indexed by
+ * {@link Trees#getNodeId node id}, so the tree must come from a parser with
+ * {@link Parser#setAssignNodeIds} on.
+ *
+ * @since 4.7.1
+ */
+public class LongParseTreeProperty {
+	protected final long defaultValue;
+
+	protected long[] values;
+
+	public LongParseTreeProperty() {
+		this(0, 16);
+	}
+
+	/**
+	 * @param defaultValue what {@link #get} returns for a node with no value
+	 * @param initialCapacity typically {@link Parser#getNodeCount}
+	 */
+	public LongParseTreeProperty(long defaultValue, int initialCapacity) {
+		this.defaultValue = defaultValue;
+		values = new long[Math.max(initialCapacity, 1)];
+		if ( defaultValue!=0 ) Arrays.fill(values, defaultValue);
+	}
+
+	public long get(ParseTree node) {
+		int id = idOf(node);
+		return id < values.length ? values[id] : defaultValue;
+	}
+
+	public void put(ParseTree node, long value) {
+		int id = idOf(node);
+		if ( id >= values.length ) {
+			int oldLength = values.length;
+			values = Arrays.copyOf(values, Math.max(oldLength * 2, id + 1));
+			if ( defaultValue!=0 ) Arrays.fill(values, oldLength, values.length, defaultValue);
+		}
+		values[id] = value;
+	}
+
+	/** Reset node's value to the default, returning the old one. */
+	public long removeFrom(ParseTree node) {
+		int id = idOf(node);
+		if ( id >= values.length ) return defaultValue;
+		long old = values[id];
+		values[id] = defaultValue;
+		return old;
+	}
+
+	protected static int idOf(ParseTree node) {
+		int id = Trees.getNodeId(node);
+		if ( id<0 ) {
+			throw new IllegalArgumentException("node has no id; parse with Parser.setAssignNodeIds(true)");
+		}
+		return id;
+	}
+}
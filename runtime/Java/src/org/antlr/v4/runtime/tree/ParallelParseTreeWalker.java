@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A {@link ParseTreeWalker} that walks large subtrees concurrently on a
+ * {@link ForkJoinPool}.
+ *
+ * <p>A node is split when it covers at least {@link #getThreshold} tokens.
+ * Its children are then grouped into runs of consecutive siblings. Each run
+ * covers about {@code threshold} tokens and is walked in its own task with
+ * its own listener. Smaller subtrees are walked sequentially, exactly like
+ * {@link ParseTreeWalker} does. Token counts come from
+ * {@link ParseTree#getSourceInterval}, so sizing a subtree costs
+ * nothing.</p>
+ *
+ * <p>Only a {@link SubtreeIndependentListener} is walked in parallel, because
+ * the walker needs {@link SubtreeIndependentListener#fork fork} and
+ * {@link SubtreeIndependentListener#merge merge}. Any other listener gets
+ * the ordinary sequential walk.</p>
+ *
+ * <p>{@link #visitChildren} does the same for visitors. Call it from a visit
+ * method in place of {@link ParseTreeVisitor#visitChildren}, or from an
+ * override of {@code visitChildren} itself to parallelize every rule.</p>
+ *
+ * @since 4.7.1
+ */
+public class ParallelParseTreeWalker extends ParseTreeWalker {
+	public static final int DEFAULT_THRESHOLD = 1024;
+
+	private static final ForkJoinPool DEFAULT_POOL = new ForkJoinPool();
+
+	public static final ParallelParseTreeWalker DEFAULT = new ParallelParseTreeWalker();
+
+	protected final ForkJoinPool pool;
+
+	protected final int threshold;
+
+	public ParallelParseTreeWalker() {
+		this(DEFAULT_POOL, DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * @param pool the pool that runs the subtree tasks
+	 * @param threshold the number of tokens a node must cover before its
+	 * children are walked concurrently
+	 */
+	public ParallelParseTreeWalker(ForkJoinPool pool, int threshold) {
+		this.pool = pool;
+		this.threshold = Math.max(threshold, 1);
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	public int getThreshold() {
+		return threshold;
+	}
+
+	@Override
+	public void walk(ParseTreeListener listener, ParseTree t) {
+		if ( !(listener instanceof SubtreeIndependentListener) ) {
+			super.walk(listener, t);
+			return;
+		}
+
+		walkIndependent((SubtreeIndependentListener<?>)listener, t);
+	}
+
+	private <L extends SubtreeIndependentListener<L>> void walkIndependent(SubtreeIndependentListener<?> listener, ParseTree t) {
+		@SuppressWarnings("unchecked")
+		L l = (L)listener;
+		WalkTask<L> task = new WalkTask<L>(l, t);
+		if ( ForkJoinTask.inForkJoinPool() ) {
+			task.compute();
+		}
+		else {
+			pool.invoke(task);
+		}
+	}
+
+	/**
+	 * Visit the children of {@code node} with {@code visitor} and aggregate
+	 * the results in order, like {@link AbstractParseTreeVisitor#visitChildren}.
+	 * If {@code node} covers at least {@link #getThreshold} tokens, runs of
+	 * children are visited concurrently, so the visitor's methods must be
+	 * safe to call from several threads. In that case
+	 * {@link AbstractParseTreeVisitor#shouldVisitNextChild} is not consulted.
+	 */
+	public <T> T visitChildren(AbstractParseTreeVisitor<T> visitor, RuleNode node) {
+		if ( size(node) < threshold ) {
+			return visitChildrenSequentially(visitor, node);
+		}
+
+		VisitTask<T> task = new VisitTask<T>(visitor, node);
+		if ( ForkJoinTask.inForkJoinPool() ) {
+			return task.compute();
+		}
+		return pool.invoke(task);
+	}
+
+	/** The loop of {@link AbstractParseTreeVisitor#visitChildren}, repeated
+	 *  here so visitors that override it to call us don't recurse forever.
+	 */
+	protected <T> T visitChildrenSequentially(AbstractParseTreeVisitor<T> visitor, RuleNode node) {
+		T result = visitor.defaultResult();
+		int n = node.getChildCount();
+		for (int i=0; i<n; i++) {
+			if (!visitor.shouldVisitNextChild(node, result)) {
+				break;
+			}
+
+			ParseTree c = node.getChild(i);
+			T childResult = c.accept(visitor);
+			result = visitor.aggregateResult(result, childResult);
+		}
+
+		return result;
+	}
+
+	/** Walk {@code t}, splitting it if it is large; runs inside the pool. */
+	protected <L extends SubtreeIndependentListener<L>> void walkSubtree(L listener, ParseTree t) {
+		if ( !(t instanceof RuleNode) || size(t) < threshold ) {
+			super.walk(listener, t);
+			return;
+		}
+
+		RuleNode r = (RuleNode)t;
+		enterRule(listener, r);
+		List<List<ParseTree>> runs = partition(r);
+		if ( runs.size()==1 ) {
+			for (ParseTree child : runs.get(0)) {
+				walkSubtree(listener, child);
+			}
+		}
+		else {
+			List<RunTask<L>> tasks = new ArrayList<RunTask<L>>(runs.size());
+			for (List<ParseTree> run : runs) {
+				tasks.add(new RunTask<L>(listener.fork(), run));
+			}
+			ForkJoinTask.invokeAll(tasks);
+			for (RunTask<L> task : tasks) {
+				listener.merge(task.listener);
+			}
+		}
+		exitRule(listener, r);
+	}
+
+	/** Group the children of {@code r} into runs of consecutive siblings
+	 *  covering at least {@link #threshold} tokens each, except the last.
+	 */
+	protected List<List<ParseTree>> partition(RuleNode r) {
+		List<List<ParseTree>> runs = new ArrayList<List<ParseTree>>();
+		List<ParseTree> run = new ArrayList<ParseTree>();
+		int runSize = 0;
+		int n = r.getChildCount();
+		for (int i = 0; i < n; i++) {
+			ParseTree child = r.getChild(i);
+			run.add(child);
+			runSize += size(child);
+			if ( runSize >= threshold ) {
+				runs.add(run);
+				run = new ArrayList<ParseTree>();
+				runSize = 0;
+			}
+		}
+		if ( !run.isEmpty() ) {
+			runs.add(run);
+		}
+		return runs;
+	}
+
+	/** The number of tokens {@code t} covers. */
+	protected static int size(ParseTree t) {
+		return t.getSourceInterval().length();
+	}
+
+	protected class WalkTask<L extends SubtreeIndependentListener<L>> extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		protected final L listener;
+		protected final ParseTree t;
+
+		public WalkTask(L listener, ParseTree t) {
+			this.listener = listener;
+			this.t = t;
+		}
+
+		@Override
+		protected void compute() {
+			walkSubtree(listener, t);
+		}
+	}
+
+	protected class RunTask<L extends SubtreeIndependentListener<L>> extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		protected final L listener;
+		protected final List<ParseTree> run;
+
+		public RunTask(L listener, List<ParseTree> run) {
+			this.listener = listener;
+			this.run = run;
+		}
+
+		@Override
+		protected void compute() {
+			for (ParseTree t : run) {
+				walkSubtree(listener, t);
+			}
+		}
+	}
+
+	protected class VisitTask<T> extends RecursiveTask<T> {
+		private static final long serialVersionUID = 1L;
+
+		protected final AbstractParseTreeVisitor<T> visitor;
+		protected final RuleNode node;
+
+		public VisitTask(AbstractParseTreeVisitor<T> visitor, RuleNode node) {
+			this.visitor = visitor;
+			this.node = node;
+		}
+
+		@Override
+		protected T compute() {
+			List<List<ParseTree>> runs = partition(node);
+			if ( runs.size()==1 ) {
+				return visitChildrenSequentially(visitor, node);
+			}
+
+			List<VisitRunTask<T>> tasks = new ArrayList<VisitRunTask<T>>(runs.size());
+			for (List<ParseTree> run : runs) {
+				tasks.add(new VisitRunTask<T>(visitor, run));
+			}
+			ForkJoinTask.invokeAll(tasks);
+
+			T result = visitor.defaultResult();
+			for (VisitRunTask<T> task : tasks) {
+				for (T childResult : task.results) {
+					result = visitor.aggregateResult(result, childResult);
+				}
+			}
+			return result;
+		}
+	}
+
+	protected class VisitRunTask<T> extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		protected final AbstractParseTreeVisitor<T> visitor;
+		protected final List<ParseTree> run;
+		protected final List<T> results;
+
+		public VisitRunTask(AbstractParseTreeVisitor<T> visitor, List<ParseTree> run) {
+			this.visitor = visitor;
+			this.run = run;
+			this.results = new ArrayList<T>(run.size());
+		}
+
+		@Override
+		protected void compute() {
+			for (ParseTree t : run) {
+				results.add(t.accept(visitor));
+			}
+		}
+	}
+}
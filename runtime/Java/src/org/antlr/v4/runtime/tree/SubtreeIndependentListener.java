@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+/**
+ * A listener whose events for a subtree do not depend on events outside it,
+ * so {@link ParallelParseTreeWalker} can walk sibling subtrees on different
+ * threads.
+ *
+ * <p>For each subtree it walks separately, the walker asks for a fresh
+ * listener with {@link #fork}. When the subtree is done, the walker hands
+ * that listener back to the listener of the enclosing node through
+ * {@link #merge}. Merges into one listener happen on one thread, in
+ * document order, after that listener's {@code enter} event for the
+ * enclosing node and before its {@code exit} event.</p>
+ *
+ * @param <L> the listener's own type
+ * @since 4.7.1
+ */
+public interface SubtreeIndependentListener<L extends SubtreeIndependentListener<L>> extends ParseTreeListener {
+	/** Return a new listener that will receive the events of one subtree. */
+	L fork();
+
+	/** Fold the results collected by {@code subtree}, which came from
+	 *  {@link #fork}, into this listener.
+	 */
+	void merge(L subtree);
+}
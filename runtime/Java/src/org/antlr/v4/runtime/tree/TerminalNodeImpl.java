@@ -15,6 +15,13 @@ public class TerminalNodeImpl implements TerminalNode {
 	public Token symbol;
 	public ParseTree parent;
 
+	/** Dense id assigned by the parser when
+	 *  {@link Parser#setAssignNodeIds} is on; -1 otherwise.
+	 *
+	 * @since 4.7.1
+	 */
+	public int nodeId = -1;
+
 	public TerminalNodeImpl(Token symbol) {	this.symbol = symbol;	}
 
 	@Override
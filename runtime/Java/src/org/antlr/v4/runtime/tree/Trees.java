@@ -12,10 +12,12 @@ import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.RuleContext;
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.misc.IntegerList;
 import org.antlr.v4.runtime.misc.Interval;
 import org.antlr.v4.runtime.misc.Predicate;
 import org.antlr.v4.runtime.misc.Utils;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -46,21 +48,112 @@ public class Trees {
 	 *  node payloads to get the text for the nodes.
 	 */
 	public static String toStringTree(final Tree t, final List<String> ruleNames) {
-		String s = Utils.escapeWhitespace(getNodeText(t, ruleNames), false);
-		if ( t.getChildCount()==0 ) return s;
 		StringBuilder buf = new StringBuilder();
-		buf.append("(");
-		s = Utils.escapeWhitespace(getNodeText(t, ruleNames), false);
-		buf.append(s);
-		buf.append(' ');
-		for (int i = 0; i<t.getChildCount(); i++) {
-			if ( i>0 ) buf.append(' ');
-			buf.append(toStringTree(t.getChild(i), ruleNames));
+		try {
+			toStringTree(t, ruleNames, buf);
+		}
+		catch (IOException ioe) {
+			// StringBuilder doesn't throw
+			throw new RuntimeException(ioe);
 		}
-		buf.append(")");
 		return buf.toString();
 	}
 
+	/** Print out a whole tree in LISP form to {@code out}.
+	 *
+	 * @since 4.7.1
+	 */
+	public static void toStringTree(Tree t, Parser recog, Appendable out) throws IOException {
+		String[] ruleNames = recog != null ? recog.getRuleNames() : null;
+		List<String> ruleNamesList = ruleNames != null ? Arrays.asList(ruleNames) : null;
+		toStringTree(t, ruleNamesList, out);
+	}
+
+	/** Print out a whole tree in LISP form to {@code out}. The tree is walked
+	 *  with an explicit stack rather than by recursion, so trees of any
+	 *  depth can be printed.
+	 *
+	 * @since 4.7.1
+	 */
+	public static void toStringTree(Tree t, List<String> ruleNames, Appendable out) throws IOException {
+		String s = Utils.escapeWhitespace(getNodeText(t, ruleNames), false);
+		if ( t.getChildCount()==0 ) {
+			out.append(s);
+			return;
+		}
+
+		// the subtrees being printed, and the next child to print in each
+		List<Tree> stack = new ArrayList<Tree>();
+		IntegerList next = new IntegerList();
+		out.append('(').append(s).append(' ');
+		stack.add(t);
+		next.add(0);
+		while ( !stack.isEmpty() ) {
+			int top = stack.size() - 1;
+			Tree node = stack.get(top);
+			int i = next.get(top);
+			if ( i==node.getChildCount() ) {
+				out.append(')');
+				stack.remove(top);
+				next.removeAt(top);
+				continue;
+			}
+
+			next.set(top, i + 1);
+			if ( i>0 ) out.append(' ');
+			Tree child = node.getChild(i);
+			s = Utils.escapeWhitespace(getNodeText(child, ruleNames), false);
+			if ( child.getChildCount()==0 ) {
+				out.append(s);
+			}
+			else {
+				out.append('(').append(s).append(' ');
+				stack.add(child);
+				next.add(0);
+			}
+		}
+	}
+
+	/** Append the text of all terminal nodes under {@code t} to {@code out},
+	 *  which is what {@link ParseTree#getText} returns, without building
+	 *  the text of each subtree on the way. Hidden tokens are not part of
+	 *  the tree, so they are not included. Like
+	 *  {@link #toStringTree(Tree, List, Appendable)}, this does not recurse.
+	 *
+	 * @since 4.7.1
+	 */
+	public static void getText(ParseTree t, Appendable out) throws IOException {
+		if ( !(t instanceof RuleContext) ) {
+			out.append(t.getText());
+			return;
+		}
+
+		List<ParseTree> stack = new ArrayList<ParseTree>();
+		IntegerList next = new IntegerList();
+		stack.add(t);
+		next.add(0);
+		while ( !stack.isEmpty() ) {
+			int top = stack.size() - 1;
+			ParseTree node = stack.get(top);
+			int i = next.get(top);
+			if ( i==node.getChildCount() ) {
+				stack.remove(top);
+				next.removeAt(top);
+				continue;
+			}
+
+			next.set(top, i + 1);
+			ParseTree child = node.getChild(i);
+			if ( child instanceof RuleContext ) {
+				stack.add(child);
+				next.add(0);
+			}
+			else {
+				out.append(child.getText());
+			}
+		}
+	}
+
 	public static String getNodeText(Tree t, Parser recog) {
 		String[] ruleNames = recog != null ? recog.getRuleNames() : null;
 		List<String> ruleNamesList = ruleNames != null ? Arrays.asList(ruleNames) : null;
@@ -137,6 +230,17 @@ public class Trees {
 		return false;
 	}
 
+	/** Return the id the parser gave t when
+	 *  {@link Parser#setAssignNodeIds} was on, or -1 if it has none.
+	 *
+	 *  @since 4.7.1
+	 */
+	public static int getNodeId(ParseTree t) {
+		if ( t instanceof RuleContext ) return ((RuleContext)t).nodeId;
+		if ( t instanceof TerminalNodeImpl ) return ((TerminalNodeImpl)t).nodeId;
+		return -1;
+	}
+
 	public static Collection<ParseTree> findAllTokenNodes(ParseTree t, int ttype) {
 		return findAllNodes(t, ttype, true);
 	}
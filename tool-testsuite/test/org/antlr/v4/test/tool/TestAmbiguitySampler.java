@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.AmbiguitySampler;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.AmbiguityInfo;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.tool.Grammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestAmbiguitySampler extends BaseJavaToolTest {
+	private Grammar g;
+	private AmbiguitySampler sampler;
+
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+		g = new Grammar(
+			"grammar T;\n" +
+			"s : '{' stat* '}' ;\n" +
+			"stat : 'if' ID 'then' stat ('else' ID)? | 'return' ;\n" +
+			"ID : [a-z]+ ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+
+		// the else is ambiguous only when nested, so the two triggers see the
+		// same tokens in different outer contexts
+		sampler = new AmbiguitySampler();
+		for (int i = 0; i < 2; i++) {
+			parse("{ if x then return else foo }");
+			parse("{ if x then if y then return else foo }");
+			parse("{ return }");
+		}
+	}
+
+	@Test public void testTriggersAreRecordedOnce() throws Exception {
+		assertEquals(2, sampler.getTriggers().size());
+		for (AmbiguitySampler.Trigger trigger : sampler.getTriggers()) {
+			assertEquals(2, trigger.getCount());
+			assertEquals(4, trigger.getTokens().size()); // else foo } and EOF
+		}
+	}
+
+	@Test public void testAnalyzeFindsExactAmbiguity() throws Exception {
+		checkResult(sampler.analyze(factory()));
+	}
+
+	@Test public void testAnalyzeInParallel() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			checkResult(sampler.analyze(factory(), executor));
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private void checkResult(AmbiguitySampler.Result result) {
+		assertEquals(2, result.triggers);
+		assertEquals(0, result.failures);
+		assertEquals(1, result.getNumberOfAmbiguities());
+
+		// each trigger falls back to full context once; SLL and LL both pick
+		// alt 1, so that isn't a context sensitivity
+		long fallbacks = 0;
+		int contextSensitivities = 0;
+		for (DecisionInfo decision : result.decisions) {
+			fallbacks += decision.LL_Fallback;
+			contextSensitivities += decision.contextSensitivities.size();
+			for (AmbiguityInfo ambiguity : decision.ambiguities) {
+				BitSet alts = new BitSet();
+				alts.set(1);
+				alts.set(2);
+				assertEquals(alts, ambiguity.ambigAlts);
+			}
+		}
+		assertEquals(2, fallbacks);
+		assertEquals(0, contextSensitivities);
+	}
+
+	private void parse(String input) {
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(g.createLexerInterpreter(CharStreams.fromString(input))));
+		parser.removeErrorListeners();
+		parser.addErrorListener(sampler);
+		parser.parse(g.getRule("s").index);
+	}
+
+	private AmbiguitySampler.ParserFactory factory() {
+		return new AmbiguitySampler.ParserFactory() {
+			@Override
+			public Parser createParser(TokenStream input) {
+				synchronized (g) {
+					return g.createParserInterpreter(input);
+				}
+			}
+		};
+	}
+}
@@ -11,6 +11,7 @@ import org.antlr.v4.runtime.CommonToken;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.IntStream;
 import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.ListTokenSource;
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.TokenFactory;
 import org.antlr.v4.runtime.TokenSource;
@@ -19,7 +20,12 @@ import org.antlr.v4.runtime.WritableToken;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class TestCommonTokenStream extends TestBufferedTokenStream {
 	@Before
@@ -194,6 +200,47 @@ public class TestCommonTokenStream extends TestBufferedTokenStream {
 		assertEquals(null, tokens.getHiddenTokensToRight(9));
 	}
 
+	@Test public void testLookaheadMatchesScanOverOffChannelRuns() throws Exception {
+		// runs of 0..5 hidden tokens between on-channel ones, with two channels
+		List<Token> input = new ArrayList<Token>();
+		List<Token> onChannel = new ArrayList<Token>();
+		Random random = new Random(17);
+		for (int i = 0; i < 200; i++) {
+			int hidden = random.nextInt(6);
+			for (int j = 0; j < hidden; j++) {
+				CommonToken t = new CommonToken(2, " ");
+				t.setChannel(j % 2 == 0 ? Lexer.HIDDEN : 2);
+				input.add(t);
+			}
+			CommonToken t = new CommonToken(1, "t" + i);
+			input.add(t);
+			onChannel.add(t);
+		}
+
+		CommonTokenStream tokens = new CommonTokenStream(new ListTokenSource(input));
+		for (int i = 0; i < onChannel.size(); i++) {
+			for (int k = 1; k <= 50; k++) {
+				Token expected = i + k - 1 < onChannel.size() ? onChannel.get(i + k - 1) : null;
+				Token actual = tokens.LT(k);
+				if ( expected==null ) assertEquals(Token.EOF, actual.getType());
+				else assertSame(expected, actual);
+			}
+			for (int k = 1; k <= 50; k++) {
+				Token expected = i - k >= 0 ? onChannel.get(i - k) : null;
+				assertSame(expected, tokens.LT(-k));
+			}
+
+			int index = onChannel.get(i).getTokenIndex();
+			int previous = i > 0 ? onChannel.get(i - 1).getTokenIndex() : -1;
+			List<Token> hidden = tokens.getHiddenTokensToLeft(index);
+			assertEquals(index - previous - 1, hidden != null ? hidden.size() : 0);
+			tokens.consume();
+		}
+
+		assertEquals(Token.EOF, tokens.LA(1));
+		assertEquals(onChannel.size() + 1, tokens.getNumberOfOnChannelTokens());
+	}
+
 	@Test
 	public void testSingleEOF() throws Exception {
 		TokenSource lexer = new TokenSource() {
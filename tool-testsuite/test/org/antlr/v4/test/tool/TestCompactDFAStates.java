@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.tool.Grammar;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestCompactDFAStates extends BaseJavaToolTest {
+	// 'x' 'a' and 'x' 'b' both predict the first alternative of a, but from
+	// different ATN states
+	private static final String GRAMMAR =
+		"grammar T;\n" +
+		"s : a* EOF ;\n" +
+		"a : 'x' ('a' 't' | 'b' 't') | 'x' 'c' ;\n" +
+		"WS : [ \\n]+ -> skip ;\n";
+
+	private static final String[] INPUTS = { "x a t", "x b t", "x c", "x b t x a t x c" };
+
+	@Test public void testSamePredictionsWithFewerStates() throws Exception {
+		Grammar g = new Grammar(GRAMMAR);
+		ParserInterpreter plain = createParser(g, false);
+		ParserInterpreter compact = createParser(g, true);
+		for (int i = 0; i < 2; i++) { // second round runs on the cached DFA
+			assertEquals(parse(g, plain), parse(g, compact));
+		}
+
+		assertTrue(countStates(compact) < countStates(plain));
+		for (DFA dfa : compact.getInterpreter().decisionToDFA) {
+			Set<Integer> predictions = new HashSet<Integer>();
+			for (DFAState s : dfa.states.keySet()) {
+				if ( s.isAcceptState && !s.requiresFullContext && s.predicates==null ) {
+					assertTrue(s.configs.isEmpty());
+					assertTrue(predictions.add(s.prediction));
+				}
+			}
+		}
+	}
+
+	@Test public void testFullContextStatesKeepConfigs() throws Exception {
+		// the optional else is an SLL conflict resolved with full context
+		Grammar g = new Grammar(
+			"grammar U;\n" +
+			"s : '{' stat* '}' ;\n" +
+			"stat : 'if' ID 'then' stat ('else' ID)? | 'return' ;\n" +
+			"ID : [a-z]+ ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		ParserInterpreter parser = createParser(g, true);
+		String input = "{ if x then return else foo }";
+		parser.setInputStream(new CommonTokenStream(g.createLexerInterpreter(CharStreams.fromString(input))));
+		ParserRuleContext tree = parser.parse(g.getRule("s").index);
+		assertEquals("(s { (stat if x then (stat return) else foo) })", tree.toStringTree(parser));
+
+		boolean sawFullContext = false;
+		for (DFA dfa : parser.getInterpreter().decisionToDFA) {
+			for (DFAState s : dfa.states.keySet()) {
+				if ( s.requiresFullContext ) {
+					sawFullContext = true;
+					assertFalse(s.configs.isEmpty());
+				}
+			}
+		}
+		assertTrue(sawFullContext);
+	}
+
+	private static ParserInterpreter createParser(Grammar g, boolean compact) {
+		LexerInterpreter lexer = g.createLexerInterpreter(CharStreams.fromString(""));
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lexer));
+		parser.getInterpreter().setCompactAcceptStates(compact);
+		return parser;
+	}
+
+	private static List<String> parse(Grammar g, ParserInterpreter parser) {
+		List<String> trees = new ArrayList<String>();
+		for (String input : INPUTS) {
+			LexerInterpreter lexer = g.createLexerInterpreter(CharStreams.fromString(input));
+			parser.setInputStream(new CommonTokenStream(lexer));
+			ParserRuleContext tree = parser.parse(g.getRule("s").index);
+			trees.add(tree.toStringTree(parser));
+		}
+		return trees;
+	}
+
+	private static int countStates(ParserInterpreter parser) {
+		int n = 0;
+		for (DFA dfa : parser.getInterpreter().decisionToDFA) {
+			n += dfa.states.size();
+		}
+		return n;
+	}
+}
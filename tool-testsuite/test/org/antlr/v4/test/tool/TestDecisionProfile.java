@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.test.runtime.BaseRuntimeTest;
+import org.antlr.v4.test.runtime.ErrorQueue;
+import org.antlr.v4.tool.ErrorType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.antlr.v4.test.runtime.BaseRuntimeTest.mkdir;
+import static org.antlr.v4.test.runtime.BaseRuntimeTest.writeFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestDecisionProfile extends BaseJavaToolTest {
+	private static final String LL3_GRAMMAR =
+		"grammar T;\n" +
+		"s : a EOF ;\n" +
+		"a : ID ID ID {System.out.println(\"three\");}\n" +
+		"  | ID ID INT {System.out.println(\"int\");}\n" +
+		"  ;\n" +
+		"ID : [a-z]+ ;\n" +
+		"INT : [0-9]+ ;\n" +
+		"WS : [ \\t\\n]+ -> skip ;\n";
+
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+	}
+
+	@Test public void testHotDecisionGetsDeeperLookahead() throws Exception {
+		mkdir(tmpdir);
+		writeFile(tmpdir, "T.profile",
+				  "grammar=T.g4\n" +
+				  "decision=0 invocations=100 SLL_TotalLook=300 SLL_MaxLook=3 LL_Fallback=0\n");
+		String profile = new File(tmpdir, "T.profile").getPath();
+		assertTrue(rawGenerateAndBuildRecognizer("T.g4", LL3_GRAMMAR, "TParser", "TLexer", "-Xprofile", profile));
+		assertTrue(readFile(new File(tmpdir, "TParser.java")).contains("_predict0"));
+
+		writeFile(tmpdir, "input", "x y 3");
+		assertEquals("int\n", rawExecRecognizer("TParser", "TLexer", "s", false, false));
+		assertNull(stderrDuringParse);
+	}
+
+	@Test public void testUnusedDecisionKeepsATNPrediction() throws Exception {
+		String grammar =
+			"grammar T;\n" +
+			"s : a EOF ;\n" +
+			"a : ID '=' ID | ID '(' ')' ;\n" +
+			"ID : [a-z]+ ;\n";
+		mkdir(tmpdir);
+		writeFile(tmpdir, "T.profile",
+				  "grammar=T.g4\n" +
+				  "decision=0 invocations=0\n");
+		String profile = new File(tmpdir, "T.profile").getPath();
+		ErrorQueue equeue = BaseRuntimeTest.antlrOnString(tmpdir, "Java", "T.g4", grammar, false, "-Xprofile", profile);
+		assertEquals(0, equeue.size());
+		assertFalse(readFile(new File(tmpdir, "TParser.java")).contains("_predict0"));
+	}
+
+	@Test public void testDecisionAlwaysNeedingFullContextIsFlagged() throws Exception {
+		mkdir(tmpdir);
+		writeFile(tmpdir, "T.profile",
+				  "# recorded in staging\n" +
+				  "grammar=T.g4\n" +
+				  "decision=0 invocations=12 LL_Fallback=12\n" +
+				  "grammar=Other.g4\n" +
+				  "decision=0 invocations=5 LL_Fallback=5\n");
+		String profile = new File(tmpdir, "T.profile").getPath();
+		ErrorQueue equeue = BaseRuntimeTest.antlrOnString(tmpdir, "Java", "T.g4", LL3_GRAMMAR, false, "-Xprofile", profile);
+		assertEquals(0, equeue.errors.size());
+		assertEquals(1, equeue.warnings.size());
+		assertEquals(ErrorType.DECISION_ALWAYS_NEEDS_FULL_CONTEXT, equeue.warnings.get(0).getErrorType());
+		assertEquals("[0, a, 12]", Arrays.toString(equeue.warnings.get(0).getArgs()));
+	}
+
+	@Test public void testMalformedProfileIsReported() throws Exception {
+		mkdir(tmpdir);
+		writeFile(tmpdir, "T.profile", "decision=0 invocations=12\n");
+		String profile = new File(tmpdir, "T.profile").getPath();
+		ErrorQueue equeue = BaseRuntimeTest.antlrOnString(tmpdir, "Java", "T.g4", LL3_GRAMMAR, false, "-Xprofile", profile);
+		assertEquals(1, equeue.errors.size());
+		assertEquals(ErrorType.ERROR_READING_PROFILE, equeue.errors.get(0).getErrorType());
+	}
+
+	private static String readFile(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.antlr.v4.test.runtime.BaseRuntimeTest.writeFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestFixedLookaheadPrediction extends BaseJavaToolTest {
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+	}
+
+	@Test public void testLL2DecisionIsPredictedInline() throws Exception {
+		String grammar =
+			"grammar T;\n" +
+			"s : a+ EOF ;\n" +
+			"a : ID '=' ID ';' {System.out.println(\"assign\");}\n" +
+			"  | ID '(' ')' ';' {System.out.println(\"call\");}\n" +
+			"  ;\n" +
+			"ID : [a-z]+ ;\n" +
+			"WS : [ \\t\\n]+ -> skip ;\n";
+		String found = execParser("T.g4", grammar, "TParser", "TLexer", null, null, "s",
+								  "x = y; f(); z = x;", false);
+		assertEquals("assign\ncall\nassign\n", found);
+		assertNull(stderrDuringParse);
+		assertTrue(readFile(new File(tmpdir, "TParser.java")).contains("_predict"));
+	}
+
+	@Test public void testUnresolvedLookaheadFallsBackToATN() throws Exception {
+		String grammar =
+			"grammar T;\n" +
+			"s : a EOF ;\n" +
+			"a : ID ID ID {System.out.println(\"three\");}\n" +
+			"  | ID ID INT {System.out.println(\"int\");}\n" +
+			"  ;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"WS : [ \\t\\n]+ -> skip ;\n";
+		String found = execParser("T.g4", grammar, "TParser", "TLexer", null, null, "s",
+								  "x y 3", false);
+		assertEquals("int\n", found);
+		assertNull(stderrDuringParse);
+		assertFalse(readFile(new File(tmpdir, "TParser.java")).contains("_predict"));
+	}
+
+	@Test public void testWideTokenSetUsesTable() throws Exception {
+		StringBuilder grammar = new StringBuilder("grammar T;\n");
+		grammar.append("s : (A | B)+ EOF {System.out.println(\"ok\");} ;\n");
+		grammar.append("A : 'a' ;\n");
+		for (int i = 0; i < 70; i++) {
+			grammar.append("T").append(i).append(" : 't").append(i).append("' ;\n");
+		}
+		grammar.append("B : 'b' ;\n");
+		grammar.append("WS : [ \\t\\n]+ -> skip ;\n");
+		String found = execParser("T.g4", grammar.toString(), "TParser", "TLexer", null, null, "s",
+								  "a b b a", false);
+		assertEquals("ok\n", found);
+		assertNull(stderrDuringParse);
+		assertTrue(readFile(new File(tmpdir, "TParser.java")).contains("_tokenSet0"));
+	}
+
+	@Test public void testPrecedenceClimbingBuildsSameTrees() throws Exception {
+		String grammar =
+			"grammar T;\n" +
+			"s : e EOF {System.out.println($e.ctx.toStringTree(this));} ;\n" +
+			"e : e '*' e\n" +
+			"  | e '+' e\n" +
+			"  | '-' e\n" +
+			"  | INT\n" +
+			"  | '(' e ')'\n" +
+			"  ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"WS : [ \\t\\n]+ -> skip ;\n";
+		String input = "1+2*3+(4*-5)";
+		String expecting = "(e (e (e 1) + (e (e 2) * (e 3))) + (e ( (e (e 4) * (e - (e 5))) )))\n";
+
+		String found = execParser("T.g4", grammar, "TParser", "TLexer", null, null, "s", input, false);
+		assertEquals(expecting, found);
+		assertFalse(readFile(new File(tmpdir, "TParser.java")).contains("precpred(_ctx, 5) ) return"));
+
+		assertTrue(rawGenerateAndBuildRecognizer("T.g4", grammar, "TParser", "TLexer", "-Xprecedence-climbing"));
+		assertTrue(readFile(new File(tmpdir, "TParser.java")).contains("precpred(_ctx, 5) ) return"));
+		writeFile(tmpdir, "input", input);
+		assertEquals(expecting, rawExecRecognizer("TParser", "TLexer", "s", false, false));
+		assertNull(stderrDuringParse);
+	}
+
+	private static String readFile(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
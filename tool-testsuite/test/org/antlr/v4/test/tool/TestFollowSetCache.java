@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.RuleTransition;
+import org.antlr.v4.runtime.atn.Transition;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.tool.Grammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestFollowSetCache extends BaseJavaToolTest {
+	private static final String GRAMMAR =
+		"parser grammar T;\n" +
+		"tokens {A, B, C}\n" +
+		"s : a B ;\n" +
+		"t : a C ;\n" +
+		"a : A? ;\n";
+
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+	}
+
+	@Test public void testExpectedTokensAreCachedPerInvocationChain() throws Exception {
+		Grammar g = new Grammar(GRAMMAR);
+		ATN atn = g.getATN();
+		int aStart = atn.ruleToStartState[g.getRule("a").index].stateNumber;
+
+		ParserRuleContext fromS = new ParserRuleContext(new ParserRuleContext(), invokingState(g, "s", "a"));
+		ParserRuleContext fromT = new ParserRuleContext(new ParserRuleContext(), invokingState(g, "t", "a"));
+
+		IntervalSet expected = atn.getExpectedTokens(aStart, fromS);
+		assertEquals("{A, B}", expected.toString(g.getVocabulary()));
+		assertEquals(1, atn.followSetCache.size());
+		assertEquals(expected, atn.getExpectedTokens(aStart, new ParserRuleContext(new ParserRuleContext(), invokingState(g, "s", "a"))));
+		assertEquals(1, atn.followSetCache.size());
+		assertEquals("{A, C}", atn.getExpectedTokens(aStart, fromT).toString(g.getVocabulary()));
+		assertEquals("{<EOF>, A}", atn.getExpectedTokens(aStart, new ParserRuleContext()).toString(g.getVocabulary()));
+	}
+
+	@Test public void testErrorRecoverySetIsCached() throws Exception {
+		Grammar g = new Grammar(GRAMMAR);
+		ATN atn = g.getATN();
+		ParserRuleContext fromS = new ParserRuleContext(new ParserRuleContext(), invokingState(g, "s", "a"));
+
+		IntervalSet recoverSet = atn.getErrorRecoverySet(fromS);
+		assertEquals("B", recoverSet.toString(g.getVocabulary()));
+		assertEquals(1, atn.followSetCache.size());
+		assertEquals(recoverSet, atn.getErrorRecoverySet(new ParserRuleContext(new ParserRuleContext(), invokingState(g, "s", "a"))));
+		assertEquals(1, atn.followSetCache.size());
+		assertTrue(atn.getErrorRecoverySet(new ParserRuleContext()).isNil());
+	}
+
+	@Test public void testCallersGetCopies() throws Exception {
+		Grammar g = new Grammar(GRAMMAR);
+		ATN atn = g.getATN();
+		int aStart = atn.ruleToStartState[g.getRule("a").index].stateNumber;
+		ParserRuleContext fromS = new ParserRuleContext(new ParserRuleContext(), invokingState(g, "s", "a"));
+
+		IntervalSet expected = atn.getExpectedTokens(aStart, fromS);
+		assertFalse(expected.isReadonly());
+		expected.add(Token.EOF);
+		assertEquals("{A, B}", atn.getExpectedTokens(aStart, fromS).toString(g.getVocabulary()));
+
+		IntervalSet recoverSet = atn.getErrorRecoverySet(fromS);
+		recoverSet.clear();
+		assertEquals("B", atn.getErrorRecoverySet(fromS).toString(g.getVocabulary()));
+	}
+
+	/** The state in rule {@code caller} that invokes rule {@code callee}. */
+	private static int invokingState(Grammar g, String caller, String callee) {
+		ATN atn = g.getATN();
+		int callerIndex = g.getRule(caller).index;
+		ATNState calleeStart = atn.ruleToStartState[g.getRule(callee).index];
+		for (ATNState s : atn.states) {
+			if (s == null || s.ruleIndex != callerIndex) continue;
+			for (Transition t : s.getTransitions()) {
+				if (t instanceof RuleTransition && t.target == calleeStart) {
+					return s.stateNumber;
+				}
+			}
+		}
+		throw new IllegalArgumentException(caller + " does not invoke " + callee);
+	}
+}
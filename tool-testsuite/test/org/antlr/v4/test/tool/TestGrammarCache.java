@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.test.runtime.BaseRuntimeTest;
+import org.antlr.v4.test.runtime.ErrorQueue;
+import org.antlr.v4.tool.GrammarCache;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.antlr.v4.test.runtime.BaseRuntimeTest.writeFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestGrammarCache extends BaseJavaToolTest {
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+	}
+
+	@Test public void testOutputIsRestoredFromCache() throws Exception {
+		String grammar =
+			"grammar T;\n" +
+			"s : A B ;\n" +
+			"A : 'a' ;\n" +
+			"B : 'b' ;\n";
+		String cacheDir = tmpdir + "/cache";
+		ErrorQueue equeue = BaseRuntimeTest.antlrOnString(tmpdir, "Java", "T.g4", grammar, false, "-Xcache", cacheDir);
+		assertEquals(0, equeue.size());
+		assertEquals(1, getCacheFiles(cacheDir).length);
+
+		File parser = new File(tmpdir, "TParser.java");
+		File tokens = new File(tmpdir, "T.tokens");
+		String expectedParser = readFile(parser);
+		assertTrue(parser.delete());
+		assertTrue(tokens.delete());
+
+		equeue = BaseRuntimeTest.antlrOnString(tmpdir, "Java", "T.g4", false, "-Xcache", cacheDir);
+		assertEquals(0, equeue.size());
+		assertEquals(expectedParser, readFile(parser));
+		assertTrue(tokens.exists());
+		assertTrue(new File(tmpdir, "TLexer.java").exists());
+		assertEquals(1, getCacheFiles(cacheDir).length);
+
+		// a different grammar text gets its own entry
+		equeue = BaseRuntimeTest.antlrOnString(tmpdir, "Java", "T.g4", grammar + "C : 'c' ;\n", false, "-Xcache", cacheDir);
+		assertEquals(0, equeue.size());
+		assertEquals(2, getCacheFiles(cacheDir).length);
+	}
+
+	@Test public void testOutputWithWarningsIsNotCached() throws Exception {
+		String grammar =
+			"grammar T;\n" +
+			"s : A B ;\n" + // implicit definition of B
+			"A : 'a' ;\n";
+		String cacheDir = tmpdir + "/cache";
+		ErrorQueue equeue = BaseRuntimeTest.antlrOnString(tmpdir, "Java", "T.g4", grammar, false, "-Xcache", cacheDir);
+		assertFalse(equeue.warnings.isEmpty());
+		assertEquals(0, getCacheFiles(cacheDir).length);
+	}
+
+	private static String readFile(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	private static File[] getCacheFiles(String cacheDir) {
+		File[] files = new File(cacheDir).listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File f) {
+				return f.getName().endsWith(GrammarCache.CACHE_FILE_EXTENSION);
+			}
+		});
+		return files!=null ? files : new File[0];
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.GrammarCompiler;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestGrammarCompiler extends BaseJavaToolTest {
+	private static final String GRAMMAR =
+		"grammar T;\n" +
+		"s : e (';' e)* EOF ;\n" +
+		"e : e '*' e | e '+' e | INT | ID ;\n" +
+		"ID : [a-z]+ ;\n" +
+		"INT : [0-9]+ ;\n" +
+		"WS : [ \\n]+ -> skip ;\n";
+
+	private GrammarCompiler compiler;
+
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+		compiler = new GrammarCompiler();
+	}
+
+	@Test public void testCompiledParserMatchesInterpreter() throws Exception {
+		Grammar g = new Grammar(GRAMMAR);
+		String input = "1 + x * 3; y";
+
+		LexerInterpreter lexInterp = g.createLexerInterpreter(CharStreams.fromString(input));
+		ParserInterpreter parseInterp = g.createParserInterpreter(new CommonTokenStream(lexInterp));
+		ParserRuleContext expected = parseInterp.parse(g.rules.get("s").index);
+
+		Lexer lexer = compiler.createLexer(g, CharStreams.fromString(input));
+		Parser parser = compiler.createParser(g, new CommonTokenStream(lexer));
+		Method s = parser.getClass().getMethod("s");
+		ParserRuleContext tree = (ParserRuleContext)s.invoke(parser);
+
+		assertEquals(expected.toStringTree(parseInterp), tree.toStringTree(parser));
+		assertEquals("TLexer", lexer.getClass().getSimpleName());
+		assertEquals("TParser", parser.getClass().getSimpleName());
+	}
+
+	@Test public void testClassesAreCachedByGrammar() throws Exception {
+		Grammar g1 = new Grammar(GRAMMAR);
+		Grammar g2 = new Grammar(GRAMMAR);
+		assertEquals(compiler.getKey(g1), compiler.getKey(g2));
+		assertSame(compiler.compileParser(g1), compiler.compileParser(g2));
+		assertSame(compiler.compileLexer(g1), compiler.compileLexer(g2));
+
+		Grammar g3 = new Grammar(GRAMMAR.replace("[a-z]+", "[a-z_]+"));
+		assertNotSame(compiler.compileLexer(g1), compiler.compileLexer(g3));
+	}
+
+	@Test public void testSeparateLexerGrammar() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'a' ;\n" +
+			"B : 'b' ;\n");
+		Grammar g = new Grammar(
+			"parser grammar P;\n" +
+			"@members {public int count;}\n" +
+			"s : (A {count++;} | B)* EOF ;\n",
+			lg);
+
+		Lexer lexer = compiler.createLexer(lg, CharStreams.fromString("abaa"));
+		Parser parser = compiler.createParser(g, new CommonTokenStream(lexer));
+		parser.getClass().getMethod("s").invoke(parser);
+		assertEquals(3, parser.getClass().getField("count").getInt(parser));
+	}
+
+	@Test public void testBadActionIsReported() throws Exception {
+		Grammar g = new Grammar(
+			"grammar U;\n" +
+			"s : ID {undefinedMethod();} ;\n" +
+			"ID : [a-z]+ ;\n");
+		try {
+			compiler.compileParser(g);
+			fail();
+		}
+		catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("UParser.java"));
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.GrammarWarmer;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestGrammarWarmer extends BaseJavaToolTest {
+	private LexerGrammar lg;
+	private Grammar g;
+
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+		lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"EQ : '=' ;\n" +
+			"SEMI : ';' ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		g = new Grammar(
+			"parser grammar T;\n" +
+			"s : stat* EOF ;\n" +
+			"stat : ID EQ e SEMI | e SEMI ;\n" +
+			"e : ID | INT ;\n",
+			lg);
+	}
+
+	@Test public void testWarmUpFillsDFA() throws Exception {
+		Driver driver = new Driver();
+		GrammarWarmer warmer = new GrammarWarmer(driver);
+		assertFalse(warmer.isReady());
+
+		List<CharStream> corpus = Arrays.<CharStream>asList(
+			CharStreams.fromString("x = 1; y;\n"),
+			CharStreams.fromString("3; z = w;"),
+			CharStreams.fromString("x = = ;")); // errors are not reported
+		GrammarWarmer.Result result = warmer.warmUp(corpus);
+
+		assertTrue(warmer.isReady());
+		assertEquals(3, result.samples);
+		assertEquals(0, result.failures);
+		assertTrue(result.lexerDFASize > 0);
+		assertTrue(result.parseInfo.getDFASize() > 0);
+		int total = 0;
+		DFA[] decisionToDFA = driver.parser.getInterpreter().decisionToDFA;
+		for (int i = 0; i < decisionToDFA.length; i++) {
+			assertEquals(decisionToDFA[i].states.size(), result.parseInfo.getDFASize(i));
+			total += decisionToDFA[i].states.size();
+		}
+		assertEquals(total, result.parseInfo.getDFASize());
+	}
+
+	@Test public void testEmptyCorpus() throws Exception {
+		GrammarWarmer warmer = new GrammarWarmer(new Driver());
+		GrammarWarmer.Result result = warmer.warmUp(Arrays.<CharStream>asList());
+		assertEquals(0, result.samples);
+		assertNull(result.parseInfo);
+		assertTrue(warmer.isReady());
+	}
+
+	@Test public void testWarmUpInBackground() throws Exception {
+		GrammarWarmer warmer = new GrammarWarmer(new Driver());
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<GrammarWarmer.Result> future =
+				warmer.warmUpInBackground(Arrays.<CharStream>asList(CharStreams.fromString("a = b;")), executor);
+			assertTrue(warmer.awaitReady(10, TimeUnit.SECONDS));
+			assertEquals(1, future.get().samples);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private class Driver implements GrammarWarmer.Driver {
+		Parser parser;
+
+		@Override
+		public Lexer createLexer(CharStream input) {
+			return lg.createLexerInterpreter(input);
+		}
+
+		@Override
+		public Parser createParser(TokenStream input) {
+			parser = g.createParserInterpreter(input);
+			return parser;
+		}
+
+		@Override
+		public void parse(Parser parser) {
+			((ParserInterpreter)parser).parse(g.rules.get("s").index);
+		}
+	}
+}
@@ -9,7 +9,10 @@ package org.antlr.v4.test.tool;
 import org.antlr.v4.runtime.atn.ArrayPredictionContext;
 import org.antlr.v4.runtime.atn.PredictionContext;
 import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.atn.PredictionContextInterner;
+import org.antlr.v4.runtime.atn.PredictionContextMergeCache;
 import org.antlr.v4.runtime.atn.SingletonPredictionContext;
+import org.antlr.v4.runtime.misc.DoubleKeyMap;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -20,6 +23,9 @@ import java.util.IdentityHashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 public class TestGraphNodes {
 	PredictionContextCache contextCache;
@@ -753,6 +759,46 @@ public class TestGraphNodes {
 		assertEquals(expecting, toDOTString(r, rootIsWildcard()));
 	}
 
+	@Test public void testEqualGraphsAreInterned() {
+		PredictionContextInterner interner = new PredictionContextInterner();
+		PredictionContext a = interner.internGraph(createSingleton(createSingleton(PredictionContext.EMPTY, 6), 1));
+		PredictionContext b = interner.internGraph(createSingleton(createSingleton(PredictionContext.EMPTY, 6), 1));
+		assertSame(a, b);
+
+		PredictionContextMergeCache cache = new PredictionContextMergeCache(16, interner);
+		PredictionContext c = interner.intern(c());
+		PredictionContext ab = PredictionContext.merge(a, c, rootIsWildcard(), cache);
+		cache.clear();
+		PredictionContext ba = PredictionContext.merge(c, b, rootIsWildcard(), cache);
+		assertSame(ab, ba);
+	}
+
+	@Test public void testGraphsFromDifferentInternersAreEqual() {
+		PredictionContextInterner first = new PredictionContextInterner();
+		PredictionContextInterner second = new PredictionContextInterner();
+		PredictionContext a = first.internGraph(createSingleton(createSingleton(PredictionContext.EMPTY, 6), 1));
+		PredictionContext b = second.internGraph(createSingleton(createSingleton(PredictionContext.EMPTY, 6), 1));
+		assertNotSame(a, b);
+		assertEquals(a, b);
+		assertSame(a, first.internGraph(b));
+	}
+
+	@Test public void testDeprecatedDoubleKeyMapMerge() {
+		DoubleKeyMap<PredictionContext, PredictionContext, PredictionContext> map =
+			new DoubleKeyMap<PredictionContext, PredictionContext, PredictionContext>();
+		PredictionContext r = PredictionContext.merge(a(), b(), rootIsWildcard(), map);
+		assertSame(r, map.get(a(), b()));
+		assertSame(r, PredictionContext.merge(b(), a(), rootIsWildcard(), map));
+	}
+
+	@Test public void testMergeCacheIsSymmetricAndPerMode() {
+		PredictionContextMergeCache cache = new PredictionContextMergeCache(16);
+		PredictionContext r = PredictionContext.merge(a(), b(), rootIsWildcard(), cache);
+		assertSame(r, cache.get(a(), b(), rootIsWildcard()));
+		assertSame(r, cache.get(b(), a(), rootIsWildcard()));
+		assertNull(cache.get(a(), b(), !rootIsWildcard()));
+	}
+
 
 	// ------------ SUPPORT -------------------------
 
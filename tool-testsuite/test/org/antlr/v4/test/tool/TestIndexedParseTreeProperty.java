@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.IndexedParseTreeProperty;
+import org.antlr.v4.runtime.tree.IntParseTreeProperty;
+import org.antlr.v4.runtime.tree.LongParseTreeProperty;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNodeImpl;
+import org.antlr.v4.runtime.tree.Trees;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestIndexedParseTreeProperty extends BaseJavaToolTest {
+	private LexerGrammar lg;
+	private Grammar g;
+
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+		lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"INT : '0'..'9'+ ;\n" +
+			"PLUS : '+' ;\n" +
+			"MULT : '*' ;\n" +
+			"SEMI : ';' ;\n");
+		g = new Grammar(
+			"parser grammar T;\n" +
+			"s : (e SEMI)+ ;\n" +
+			"e : e MULT e\n" +
+			"  | e PLUS e\n" +
+			"  | INT\n" +
+			"  ;\n",
+			lg);
+	}
+
+	@Test public void testParserAssignsDenseIds() throws Exception {
+		ParserInterpreter parser = createParser("1+2*3;4;");
+		parser.setAssignNodeIds(true);
+		ParseTree t = parser.parse(g.rules.get("s").index);
+
+		List<ParseTree> nodes = Trees.getDescendants(t);
+		assertEquals(nodes.size(), parser.getNodeCount());
+		BitSet seen = new BitSet();
+		for (ParseTree node : nodes) {
+			int id = Trees.getNodeId(node);
+			assertTrue(id >= 0 && id < nodes.size());
+			assertFalse(seen.get(id));
+			seen.set(id);
+		}
+	}
+
+	@Test public void testNoIdsByDefault() throws Exception {
+		ParserInterpreter parser = createParser("1;");
+		ParseTree t = parser.parse(g.rules.get("s").index);
+		for (ParseTree node : Trees.getDescendants(t)) {
+			assertEquals(-1, Trees.getNodeId(node));
+		}
+		assertEquals(0, parser.getNodeCount());
+	}
+
+	@Test public void testProperties() throws Exception {
+		ParserInterpreter parser = createParser("1+2*3;4;");
+		parser.setAssignNodeIds(true);
+		ParseTree t = parser.parse(g.rules.get("s").index);
+
+		IndexedParseTreeProperty<String> texts = new IndexedParseTreeProperty<String>(2);
+		IntParseTreeProperty depths = new IntParseTreeProperty(-1, 2);
+		LongParseTreeProperty widths = new LongParseTreeProperty();
+		for (ParseTree node : Trees.getDescendants(t)) {
+			texts.put(node, node.getText());
+			depths.put(node, Trees.getAncestors(node).size());
+			widths.put(node, node.getText().length());
+		}
+		for (ParseTree node : Trees.getDescendants(t)) {
+			assertEquals(node.getText(), texts.get(node));
+			assertEquals(Trees.getAncestors(node).size(), depths.get(node));
+			assertEquals(node.getText().length(), widths.get(node));
+		}
+
+		assertEquals("1+2*3;4;", texts.removeFrom(t));
+		assertNull(texts.get(t));
+		assertEquals(0, depths.removeFrom(t));
+		assertEquals(-1, depths.get(t));
+	}
+
+	@Test public void testNodesWithoutIds() throws Exception {
+		ParserRuleContext ctx = new ParserRuleContext();
+		IndexedParseTreeProperty<String> texts = new IndexedParseTreeProperty<String>();
+		texts.put(ctx, "x");
+		assertEquals("x", texts.get(ctx));
+		assertNull(texts.get(new TerminalNodeImpl(null)));
+
+		try {
+			new IntParseTreeProperty().put(ctx, 1);
+			fail("expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private ParserInterpreter createParser(String input) {
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(CharStreams.fromString(input));
+		return g.createParserInterpreter(new CommonTokenStream(lexEngine));
+	}
+}
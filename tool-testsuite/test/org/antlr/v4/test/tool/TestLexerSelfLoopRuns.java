@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestLexerSelfLoopRuns extends BaseJavaToolTest {
+	private static final String LEXER =
+		"lexer grammar L;\n" +
+		"ID : [a-zA-Z_\\u00E9] [a-zA-Z_0-9\\u00E9]* ;\n" +
+		"INT : [0-9]+ ;\n" +
+		"STRING : '\"' ~[\"\\n]* '\"' ;\n" +
+		"COMMENT : '/*' .*? '*/' -> channel(HIDDEN) ;\n" +
+		"WS : [ \\t\\r\\n]+ -> channel(HIDDEN) ;\n" +
+		"OP : [=+;] ;\n";
+
+	private static final String INPUT =
+		"caf\\u00E9_identifier_with_a_long_name = 12345678901234 + \"a string with \\u4E16\\u754C\";\n" +
+		"/* a comment\n" +
+		"   spanning   several\n" +
+		"\n" +
+		"   lines */   x=1;\n" +
+		"          \t\t  \n" +
+		"y = \"\" ;";
+
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+	}
+
+	@Test public void testRunsMatchCharacterAtATimeLexing() throws Exception {
+		LexerGrammar g = new LexerGrammar(LEXER);
+		String expected = lex(g, new ANTLRInputStream(INPUT));
+
+		// the second pass starts from a warm DFA
+		for (int i = 0; i < 2; i++) {
+			assertEquals(expected, lex(g, CharStreams.fromString(INPUT)));
+		}
+	}
+
+	@Test public void testIdentifierStateLoopsOnItself() throws Exception {
+		LexerGrammar g = new LexerGrammar(LEXER);
+		LexerInterpreter lexer = g.createLexerInterpreter(new ANTLRInputStream("abcd"));
+		new CommonTokenStream(lexer).fill();
+
+		DFA dfa = lexer.getInterpreter().decisionToDFA[0];
+		DFAState inID = dfa.s0.getTargetState('a').getTargetState('b');
+		assertSame(inID, inID.getTargetState('c'));
+		boolean[] loop = inID.getSelfLoopSet();
+		assertTrue(loop['c']);
+		assertFalse(loop['a']);
+		assertEquals(128, loop.length);
+	}
+
+	private static String lex(LexerGrammar g, CharStream input) {
+		LexerInterpreter lexer = g.createLexerInterpreter(input);
+		CommonTokenStream tokens = new CommonTokenStream(lexer);
+		tokens.fill();
+		return tokens.getTokens().toString() + " " + lexer.getLine() + ":" + lexer.getCharPositionInLine();
+	}
+}
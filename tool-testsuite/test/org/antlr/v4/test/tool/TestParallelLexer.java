@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.LexerState;
+import org.antlr.v4.runtime.ParallelLexer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestParallelLexer extends BaseJavaToolTest {
+	private LexerGrammar lg;
+	private String input;
+
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+		lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"WS : [ \\n]+ -> channel(HIDDEN) ;\n" +
+			"QUOTE : '\"' -> pushMode(STR) ;\n" +
+			"mode STR;\n" +
+			"TEXT : ~[\"]+ ;\n" +
+			"END : '\"' -> popMode ;\n");
+
+		// strings span lines, so some cuts after '\n' fall inside mode STR
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			buf.append("abc ").append(i).append('\n');
+			if ( i % 7 == 0 ) buf.append("\"line one\nline two\" x\n");
+			if ( i % 11 == 0 ) buf.append("\u00e9\n");
+		}
+		input = buf.toString();
+	}
+
+	@Test public void testSnapshotAndRestore() throws Exception {
+		Lexer lexer = lg.createLexerInterpreter(CharStreams.fromString("ab \"x\ny\" cd"));
+		lexer.nextToken(); // ab
+		lexer.nextToken(); // ' '
+		lexer.nextToken(); // "
+		LexerState inString = lexer.snapshot();
+		assertEquals(4, inString.index);
+		assertEquals(1, inString.mode);
+		assertEquals(1, inString.getModeStackSize());
+
+		List<String> rest = texts(lexer);
+		lexer.restore(inString);
+		assertEquals(inString, lexer.snapshot());
+		assertEquals(rest, texts(lexer));
+
+		Lexer other = lg.createLexerInterpreter(CharStreams.fromString("ab \"x\ny\" cd"));
+		other.restore(inString);
+		assertEquals(rest, texts(other));
+		assertEquals("x\ny:1:4", rest.get(0));
+		assertEquals("<EOF>:2:5", rest.get(rest.size() - 1));
+	}
+
+	@Test public void testSameTokensAsSequentialLexer() throws Exception {
+		List<String> expected = describe(lg.createLexerInterpreter(CharStreams.fromString(input)));
+		for (int chunkSize : new int[] { 1, 5, 64, 1000, 1 << 20 }) {
+			for (int boundaryChar : new int[] { '\n', '"', -1 }) {
+				ParallelLexer lexer = new ParallelLexer(factory(), new ForkJoinPool(4), chunkSize, boundaryChar);
+				List<Token> tokens = lexer.tokenize(CharStreams.fromString(input));
+				assertEquals(expected, describe(tokens));
+			}
+		}
+	}
+
+	@Test public void testTokenIndexes() throws Exception {
+		ParallelLexer lexer = new ParallelLexer(factory(), new ForkJoinPool(4), 16, '\n');
+		List<Token> tokens = lexer.tokenize(CharStreams.fromString(input));
+		for (int i = 0; i < tokens.size(); i++) {
+			assertEquals(i, tokens.get(i).getTokenIndex());
+			assertEquals(i == tokens.size() - 1, tokens.get(i).getType() == Token.EOF);
+		}
+	}
+
+	@Test public void testSkippedAndIndentedWhitespaceAtCuts() throws Exception {
+		// whitespace starts before each cut and ends after it, so every chunk
+		// but the last stops a few characters past its cut
+		lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			buf.append("    abc ").append(i).append('\n');
+		}
+		input = buf.toString();
+
+		List<String> expected = describe(lg.createLexerInterpreter(CharStreams.fromString(input)));
+		final AtomicInteger relexed = new AtomicInteger();
+		ParallelLexer lexer = new ParallelLexer(factory(), new ForkJoinPool(4), 4096, '\n') {
+			@Override
+			protected void relex(Chunk chunk, LexerState start) {
+				relexed.incrementAndGet();
+				super.relex(chunk, start);
+			}
+		};
+		List<Token> tokens = lexer.tokenize(CharStreams.fromString(input));
+		assertEquals(expected, describe(tokens));
+		assertEquals(0, relexed.get());
+	}
+
+	private ParallelLexer.LexerFactory factory() {
+		return new ParallelLexer.LexerFactory() {
+			@Override
+			public Lexer createLexer(CharStream input) {
+				synchronized (lg) {
+					return lg.createLexerInterpreter(input);
+				}
+			}
+		};
+	}
+
+	private static List<String> texts(Lexer lexer) {
+		List<String> texts = new ArrayList<String>();
+		Token t;
+		do {
+			t = lexer.nextToken();
+			texts.add(t.getText() + ":" + t.getLine() + ":" + t.getCharPositionInLine());
+		} while ( t.getType() != Token.EOF );
+		return texts;
+	}
+
+	private static List<String> describe(Lexer lexer) {
+		List<Token> tokens = new ArrayList<Token>();
+		Token t;
+		do {
+			t = lexer.nextToken();
+			tokens.add(t);
+		} while ( t.getType() != Token.EOF );
+		return describe(tokens);
+	}
+
+	private static List<String> describe(List<Token> tokens) {
+		List<String> result = new ArrayList<String>();
+		for (Token t : tokens) {
+			result.add(t.getType() + " " + t.getStartIndex() + ".." + t.getStopIndex() + " " +
+					   t.getLine() + ":" + t.getCharPositionInLine() + " " + t.getChannel() + " " + t.getText());
+		}
+		return result;
+	}
+}
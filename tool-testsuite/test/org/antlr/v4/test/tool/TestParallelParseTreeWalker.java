@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.AbstractParseTreeVisitor;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParallelParseTreeWalker;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.RuleNode;
+import org.antlr.v4.runtime.tree.SubtreeIndependentListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestParallelParseTreeWalker extends BaseJavaToolTest {
+	private ParallelParseTreeWalker walker;
+	private ParseTree tree;
+
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : 'a'..'z'+ ;\n" +
+			"INT : '0'..'9'+ ;\n" +
+			"LP : '(' ;\n" +
+			"RP : ')' ;\n" +
+			"SEMI : ';' ;\n" +
+			"WS : ' '+ -> skip ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : decl+ EOF ;\n" +
+			"decl : ID LP expr* RP SEMI ;\n" +
+			"expr : INT | ID | LP expr* RP ;\n",
+			lg);
+
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			input.append("f").append(" (").append(i).append(" (x (").append(i * 7).append(")) y);");
+		}
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(CharStreams.fromString(input.toString()));
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lexEngine));
+		tree = parser.parse(g.rules.get("s").index);
+		walker = new ParallelParseTreeWalker(new ForkJoinPool(4), 16);
+	}
+
+	@Test public void testEventsMatchSequentialWalk() throws Exception {
+		EventListener expected = new EventListener();
+		ParseTreeWalker.DEFAULT.walk(expected, tree);
+
+		EventListener actual = new EventListener();
+		walker.walk(actual, tree);
+		assertEquals(expected.events, actual.events);
+	}
+
+	@Test public void testVisitorAggregatesInOrder() throws Exception {
+		TextVisitor visitor = new TextVisitor();
+		assertEquals(tree.getText(), tree.accept(visitor));
+	}
+
+	private static class EventListener implements SubtreeIndependentListener<EventListener> {
+		final List<String> events = new ArrayList<String>();
+
+		@Override
+		public EventListener fork() {
+			return new EventListener();
+		}
+
+		@Override
+		public void merge(EventListener subtree) {
+			events.addAll(subtree.events);
+		}
+
+		@Override
+		public void visitTerminal(TerminalNode node) {
+			events.add(node.getText());
+		}
+
+		@Override
+		public void visitErrorNode(ErrorNode node) {
+			events.add("error " + node.getText());
+		}
+
+		@Override
+		public void enterEveryRule(ParserRuleContext ctx) {
+			events.add("enter " + ctx.getRuleIndex());
+		}
+
+		@Override
+		public void exitEveryRule(ParserRuleContext ctx) {
+			events.add("exit " + ctx.getRuleIndex());
+		}
+	}
+
+	private class TextVisitor extends AbstractParseTreeVisitor<String> {
+		@Override
+		public String visitChildren(RuleNode node) {
+			return walker.visitChildren(this, node);
+		}
+
+		@Override
+		public String visitTerminal(TerminalNode node) {
+			return node.getText();
+		}
+
+		@Override
+		protected String defaultResult() {
+			return "";
+		}
+
+		@Override
+		protected String aggregateResult(String aggregate, String nextResult) {
+			return aggregate + nextResult;
+		}
+	}
+}
@@ -10,6 +10,9 @@ import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.LexerInterpreter;
 import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.DecisionState;
+import org.antlr.v4.runtime.atn.StarLoopEntryState;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.tool.Grammar;
 import org.antlr.v4.tool.LexerGrammar;
@@ -17,6 +20,9 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 
 public class TestParserInterpreter extends BaseJavaToolTest {
@@ -330,6 +336,79 @@ public class TestParserInterpreter extends BaseJavaToolTest {
 		testInterp(lg, g, "e", "a+a*a", "(e (e a) + (e (e a) * (e a)))");
 	}
 
+	@Test public void testLL1DecisionsMatchAdaptivePredict() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"PLUS : '+' ;\n" +
+			"MULT : '*' ;\n" +
+			"SEMI : ';' ;\n" +
+			"LP : '(' ;\n" +
+			"RP : ')' ;\n" +
+			"WS : [ ]+ -> skip ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : stat* EOF ;\n" +
+			"stat : ID LP ~(RP|SEMI)* RP SEMI | e SEMI | (INT|ID) PLUS SEMI ;\n" +
+			"e : e MULT e | e PLUS e | LP e RP | INT | ID ;\n",
+			lg);
+
+		String[] inputs = { "f(1 + x); 2 * (a + 3);", "x +;", "f(;", "1 + ;; (2", "" };
+		for (String input : inputs) {
+			// the profiler sends every decision through adaptivePredict
+			ParserInterpreter profiled = createParser(lg, g, input);
+			profiled.setProfile(true);
+			ParserInterpreter parser = createParser(lg, g, input);
+			int s = g.getRule("s").index;
+			assertEquals(profiled.parse(s).toStringTree(profiled), parser.parse(s).toStringTree(parser));
+			assertEquals(profiled.getNumberOfSyntaxErrors(), parser.getNumberOfSyntaxErrors());
+		}
+
+		// the loop in s is LL(1), so it never needs its DFA
+		ParserInterpreter parser = createParser(lg, g, "x; y;");
+		parser.parse(g.getRule("s").index);
+		for (DecisionState d : g.atn.decisionToState) {
+			if ( d instanceof StarLoopEntryState && d.ruleIndex==g.getRule("s").index ) {
+				assertTrue(parser.getInterpreter().decisionToDFA[d.decision].states.isEmpty());
+			}
+		}
+	}
+
+	private static ParserInterpreter createParser(LexerGrammar lg, Grammar g, String input) {
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream(input));
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lexEngine));
+		parser.removeErrorListeners();
+		return parser;
+	}
+
+	@Test public void testTablesOfGrammarsSharingAClass() throws Exception {
+		// interpreters of both grammars share the cache for their class
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'a' ;\n" +
+			"B : 'b' ;\n");
+		Grammar g1 = new Grammar(
+			"parser grammar T;\n" +
+			"s : A ;\n",
+			lg);
+		Grammar g2 = new Grammar(
+			"parser grammar U;\n" +
+			"t : B ;\n" +
+			"u : A ;\n",
+			lg);
+		ParserInterpreter p1 = g1.createParserInterpreter(new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream(""))));
+		ParserInterpreter p2 = g2.createParserInterpreter(new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream(""))));
+		for (int i = 0; i < 2; i++) {
+			assertEquals(0, (int)p1.getRuleIndexMap().get("s"));
+			assertEquals(1, (int)p2.getRuleIndexMap().get("u"));
+			assertNull(p1.getRuleIndexMap().get("u"));
+			assertEquals(2, p2.getTokenType("B"));
+			assertEquals(Token.EOF, p1.getTokenType("EOF"));
+		}
+		assertSame(p1.getRuleIndexMap(), p1.getRuleIndexMap());
+	}
+
 	ParseTree testInterp(LexerGrammar lg, Grammar g,
 					String startRule, String input,
 					String expectedParseTree)
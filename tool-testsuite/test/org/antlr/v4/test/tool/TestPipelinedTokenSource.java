@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.PipelinedTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.UnbufferedTokenStream;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TestPipelinedTokenSource extends BaseJavaToolTest {
+	private static final String LEXER =
+		"lexer grammar t;\n"+
+		"ID : 'a'..'z'+;\n" +
+		"INT : '0'..'9'+;\n" +
+		"SEMI : ';';\n" +
+		"ASSIGN : '=';\n" +
+		"WS : ' '+;\n";
+
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+	}
+
+	@Test public void testSameTokensAsLexer() throws Exception {
+		LexerGrammar g = new LexerGrammar(LEXER);
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			input.append("x").append(" = ").append(i).append(";");
+		}
+
+		CommonTokenStream expected = new CommonTokenStream(g.createLexerInterpreter(CharStreams.fromString(input.toString())));
+		expected.fill();
+
+		LexerInterpreter lexEngine = g.createLexerInterpreter(CharStreams.fromString(input.toString()));
+		CommonTokenStream tokens = new CommonTokenStream(new PipelinedTokenSource(lexEngine, 7, 2));
+		tokens.fill();
+		assertEquals(expected.getTokens().toString(), tokens.getTokens().toString());
+	}
+
+	@Test public void testMarkAndSeekThroughUnbufferedTokenStream() throws Exception {
+		LexerGrammar g = new LexerGrammar(LEXER);
+		LexerInterpreter lexEngine = g.createLexerInterpreter(CharStreams.fromString("x = 302;"));
+		TokenStream tokens = new UnbufferedTokenStream<Token>(new PipelinedTokenSource(lexEngine, 2, 1));
+
+		int m = tokens.mark();
+		assertEquals("x", tokens.LT(1).getText());
+		tokens.consume();
+		tokens.consume();
+		assertEquals("=", tokens.LT(1).getText());
+		assertEquals("302", tokens.LT(3).getText());
+		tokens.seek(0);
+		assertEquals("x", tokens.LT(1).getText());
+		tokens.seek(4); // still inside the marked window
+		assertEquals("302", tokens.LT(1).getText());
+		tokens.release(m);
+		tokens.consume();
+		assertEquals(";", tokens.LT(1).getText());
+		tokens.consume();
+		assertEquals(Token.EOF, tokens.LA(1));
+	}
+
+	@Test public void testLexerFailureReachesParserAfterEarlierTokens() throws Exception {
+		List<Token> list = new ArrayList<Token>();
+		for (int i = 0; i < 10; i++) {
+			list.add(new CommonToken(1, "t" + i));
+		}
+
+		ListTokenSource failing = new ListTokenSource(list) {
+			int calls;
+
+			@Override
+			public Token nextToken() {
+				if (calls++ == 5) {
+					throw new IllegalArgumentException("boom");
+				}
+				return super.nextToken();
+			}
+		};
+
+		PipelinedTokenSource tokens = new PipelinedTokenSource(failing, 2, 2);
+		for (int i = 0; i < 5; i++) {
+			assertEquals("t" + i, tokens.nextToken().getText());
+		}
+
+		try {
+			tokens.nextToken();
+			fail("expected the lexer's exception");
+		}
+		catch (IllegalArgumentException e) {
+			assertEquals("boom", e.getMessage());
+		}
+	}
+}
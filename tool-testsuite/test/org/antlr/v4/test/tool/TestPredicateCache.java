@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNDeserializer;
+import org.antlr.v4.runtime.atn.ATNSerializer;
+import org.antlr.v4.runtime.atn.PredicateCache;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestPredicateCache extends BaseJavaToolTest {
+	private static final String INPUT = "a b c d e f g h";
+
+	private LexerGrammar lg;
+	private Grammar g;
+
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+		lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"WS : ' ' -> skip ;\n");
+		g = new Grammar(
+			"parser grammar T;\n" +
+			"s : a+ EOF ;\n" +
+			"a : {flag}? ID | ID ;\n",
+			lg);
+	}
+
+	@Test public void testUncachedPredicateIsEvaluatedEachTime() throws Exception {
+		FlagParser parser = createParser(INPUT);
+		parser.s();
+		assertTrue(parser.predictionEvals > 1);
+	}
+
+	@Test public void testStablePredicateIsEvaluatedOnce() throws Exception {
+		FlagParser parser = createParser(INPUT);
+		PredicateCache cache = new PredicateCache();
+		cache.markStable(1, 0);
+		parser.setPredicateCache(cache);
+
+		ParseTree t = parser.s();
+		assertEquals("(s (a a) (a b) (a c) (a d) (a e) (a f) (a g) (a h) <EOF>)", t.toStringTree(parser));
+		assertEquals(1, parser.predictionEvals);
+		assertTrue(cache.isStable(1, 0));
+		assertFalse(cache.isStable(1, 1));
+	}
+
+	@Test public void testInvalidate() throws Exception {
+		FlagParser parser = createParser(INPUT);
+		PredicateCache cache = new PredicateCache();
+		cache.markStable(1, 0);
+		parser.setPredicateCache(cache);
+
+		assertTrue(cache.eval(parser, 1, 0));
+		parser.flag = false;
+		assertTrue(cache.eval(parser, 1, 0));
+		cache.invalidate(1, 0);
+		assertFalse(cache.eval(parser, 1, 0));
+		parser.flag = true;
+		cache.invalidate();
+		assertTrue(cache.eval(parser, 1, 0));
+		assertEquals(3, parser.predictionEvals);
+	}
+
+	@Test public void testResetDropsCachedResults() throws Exception {
+		FlagParser parser = createParser(INPUT);
+		PredicateCache cache = new PredicateCache();
+		cache.markStable(1, 0);
+		parser.setPredicateCache(cache);
+
+		parser.s();
+		parser.flag = false;
+		parser.reset();
+		ParseTree t = parser.s();
+		assertEquals("(s (a a) (a b) (a c) (a d) (a e) (a f) (a g) (a h) <EOF>)", t.toStringTree(parser));
+		assertEquals(2, parser.predictionEvals);
+	}
+
+	private FlagParser createParser(String input) {
+		LexerInterpreter lexer = lg.createLexerInterpreter(new ANTLRInputStream(input));
+		ATN atn = new ATNDeserializer().deserialize(ATNSerializer.getSerializedAsChars(g.getATN()));
+		return new FlagParser(g, atn, new CommonTokenStream(lexer));
+	}
+
+	/** Evaluates {@code {flag}?} and counts the evaluations made during
+	 *  prediction, which pass no local context.
+	 */
+	private static class FlagParser extends ParserInterpreter {
+		boolean flag = true;
+		int predictionEvals;
+
+		FlagParser(Grammar g, ATN atn, TokenStream input) {
+			super(g.fileName, g.getVocabulary(), Arrays.asList(g.getRuleNames()), atn, input);
+		}
+
+		ParseTree s() {
+			return parse(0);
+		}
+
+		@Override
+		public boolean sempred(RuleContext _localctx, int ruleIndex, int predIndex) {
+			if ( _localctx==null ) predictionEvals++;
+			return flag;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.UnbufferedChannelCharStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestUnbufferedChannelCharStream extends BaseJavaToolTest {
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+	}
+
+	@Test public void testNoChar() throws Exception {
+		CharStream input = createStream("", StandardCharsets.UTF_8, 16);
+		assertEquals(IntStream.EOF, input.LA(1));
+		assertEquals(IntStream.EOF, input.LA(2));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testConsumeEOF() throws Exception {
+		CharStream input = createStream("", StandardCharsets.UTF_8, 16);
+		input.consume();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testMarkReleaseOutOfOrder() {
+		CharStream input = createStream("", StandardCharsets.UTF_8, 16);
+		int m1 = input.mark();
+		input.mark();
+		input.release(m1);
+	}
+
+	@Test public void testDecodesAcrossBlocks() throws Exception {
+		String text = "ab\u00E9\uD83C\uDF0Ecd\u4E2D\u6587xyz";
+		for (Charset charset : new Charset[] {StandardCharsets.UTF_8, StandardCharsets.UTF_16LE}) {
+			assertEquals(text, drain(createStream(text, charset, 1)));
+			assertEquals(text, drain(createStream(text, charset, 4096)));
+		}
+	}
+
+	@Test public void testLatin1IsNotDecoded() throws Exception {
+		String text = "caf\u00E9 \u00FF";
+		assertEquals(text, drain(createStream(text, StandardCharsets.ISO_8859_1, 2)));
+	}
+
+	@Test public void testUnicodeSMP() throws Exception {
+		CharStream input = createStream("\uD83C\uDF0E", StandardCharsets.UTF_8, 16);
+		assertEquals(0x1F30E, input.LA(1));
+		input.consume();
+		assertEquals(0x1F30E, input.LA(-1));
+		assertEquals(IntStream.EOF, input.LA(1));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testMalformedInputIsReported() throws Exception {
+		byte[] bytes = {'a', (byte)0xFF};
+		CharStream input = new UnbufferedChannelCharStream(
+			Channels.newChannel(new ByteArrayInputStream(bytes)),
+			StandardCharsets.UTF_8, 16, CodingErrorAction.REPORT, "bad");
+		input.LA(2);
+	}
+
+	@Test
+	public void testLastCharAndSeekInMarkedRange() {
+		CharStream input = createStream("abcdef", StandardCharsets.UTF_8, 2);
+		input.consume();
+		assertEquals('a', input.LA(-1));
+
+		int m1 = input.mark();
+		input.consume();
+		input.consume();
+		input.consume();
+		assertEquals('d', input.LA(-1));
+		assertEquals("bcd", input.getText(Interval.of(1, 3)));
+
+		input.seek(2);
+		assertEquals('b', input.LA(-1));
+		input.release(m1);
+		input.seek(3);
+		assertEquals('c', input.LA(-1));
+	}
+
+	@Test public void testAFewTokens() throws Exception {
+		LexerGrammar g = new LexerGrammar(
+			"lexer grammar t;\n"+
+			"ID : 'a'..'z'+;\n" +
+			"INT : '0'..'9'+;\n" +
+			"SEMI : ';';\n" +
+			"ASSIGN : '=';\n" +
+			"WS : ' '+;\n");
+		CharStream input = createStream("x = 302; yy = 4;", StandardCharsets.UTF_8, 3);
+		LexerInterpreter lexEngine = g.createLexerInterpreter(input);
+		// copy text into tokens from char stream
+		lexEngine.setTokenFactory(new CommonTokenFactory(true));
+		CommonTokenStream tokens = new CommonTokenStream(lexEngine);
+		tokens.fill();
+		String expecting =
+			"[[@0,0:0='x',<1>,1:0], [@1,1:1=' ',<5>,1:1], [@2,2:2='=',<4>,1:2]," +
+			" [@3,3:3=' ',<5>,1:3], [@4,4:6='302',<2>,1:4], [@5,7:7=';',<3>,1:7]," +
+			" [@6,8:8=' ',<5>,1:8], [@7,9:10='yy',<1>,1:9], [@8,11:11=' ',<5>,1:11]," +
+			" [@9,12:12='=',<4>,1:12], [@10,13:13=' ',<5>,1:13], [@11,14:14='4',<2>,1:14]," +
+			" [@12,15:15=';',<3>,1:15], [@13,16:15='',<-1>,1:16]]";
+		assertEquals(expecting, tokens.getTokens().toString());
+	}
+
+	@Test public void testWindowStaysBoundedWhileLexing() throws Exception {
+		LexerGrammar g = new LexerGrammar(
+			"lexer grammar t;\n"+
+			"ID : 'a'..'z'+;\n" +
+			"INT : '0'..'9'+;\n" +
+			"WS : [ \\n]+;\n");
+		StringBuilder buf = new StringBuilder();
+		while (buf.length() < 4 * 1024 * 1024) {
+			buf.append("abc 302\n");
+		}
+		final int[] maxWindow = new int[1];
+		CharStream input = new UnbufferedChannelCharStream(
+			Channels.newChannel(new ByteArrayInputStream(buf.toString().getBytes(StandardCharsets.UTF_8))),
+			StandardCharsets.UTF_8, 4096, CodingErrorAction.REPLACE, "test")
+		{
+			@Override
+			protected int fill(int want) {
+				int added = super.fill(want);
+				maxWindow[0] = Math.max(maxWindow[0], data.length);
+				return added;
+			}
+		};
+		LexerInterpreter lexEngine = g.createLexerInterpreter(input);
+		lexEngine.setTokenFactory(new CommonTokenFactory(true));
+		int count = 0;
+		while (lexEngine.nextToken().getType() != Token.EOF) {
+			count++;
+		}
+		assertEquals(buf.length() / 8 * 4, count);
+		assertTrue("window grew to " + maxWindow[0], maxWindow[0] <= 2 * 4096);
+	}
+
+	protected static CharStream createStream(String text, Charset charset, int bufferSize) {
+		return new UnbufferedChannelCharStream(
+			Channels.newChannel(new ByteArrayInputStream(text.getBytes(charset))),
+			charset, bufferSize, CodingErrorAction.REPLACE, "test");
+	}
+
+	protected static String drain(CharStream input) {
+		StringBuilder buf = new StringBuilder();
+		while (input.LA(1) != IntStream.EOF) {
+			buf.appendCodePoint(input.LA(1));
+			input.consume();
+		}
+		return buf.toString();
+	}
+}
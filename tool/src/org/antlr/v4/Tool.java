@@ -13,6 +13,7 @@ import org.antlr.runtime.CommonTokenStream;
 import org.antlr.runtime.ParserRuleReturnScope;
 import org.antlr.runtime.RecognitionException;
 import org.antlr.v4.analysis.AnalysisPipeline;
+import org.antlr.v4.analysis.DecisionProfile;
 import org.antlr.v4.automata.ATNFactory;
 import org.antlr.v4.automata.LexerATNFactory;
 import org.antlr.v4.automata.ParserATNFactory;
@@ -36,6 +37,7 @@ import org.antlr.v4.tool.DefaultToolListener;
 import org.antlr.v4.tool.ErrorManager;
 import org.antlr.v4.tool.ErrorType;
 import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.GrammarCache;
 import org.antlr.v4.tool.GrammarTransformPipeline;
 import org.antlr.v4.tool.LexerGrammar;
 import org.antlr.v4.tool.Rule;
@@ -107,6 +109,7 @@ public class Tool {
 	public boolean launch_ST_inspector = false;
 	public boolean ST_inspector_wait_for_close = false;
     public boolean force_atn = false;
+	public boolean precedence_climbing = false;
     public boolean log = false;
 	public boolean gen_listener = true;
 	public boolean gen_visitor = false;
@@ -115,6 +118,8 @@ public class Tool {
 	public Map<String, String> grammarOptions = null;
 	public boolean warnings_are_errors = false;
 	public boolean longMessages = false;
+	public String cacheDirectory = null;
+	public String profileFile = null;
 
     public static Option[] optionDefs = {
         new Option("outputDirectory",	"-o", OptionArgType.STRING, "specify output directory where all output is generated"),
@@ -134,7 +139,10 @@ public class Tool {
         new Option("launch_ST_inspector", "-XdbgST", "launch StringTemplate visualizer on generated code"),
 		new Option("ST_inspector_wait_for_close", "-XdbgSTWait", "wait for STViz to close before continuing"),
         new Option("force_atn",			"-Xforce-atn", "use the ATN simulator for all predictions"),
+		new Option("precedence_climbing", "-Xprecedence-climbing", "predict operators of left-recursive rules from token type and precedence"),
 		new Option("log",   			"-Xlog", "dump lots of logging info to antlr-timestamp.log"),
+		new Option("cacheDirectory",	"-Xcache", OptionArgType.STRING, "reuse output of unchanged grammars cached in this directory"),
+		new Option("profileFile",		"-Xprofile", OptionArgType.STRING, "tune generated parsers to the decision profile in this file"),
 	};
 
 	// helper vars for option management
@@ -153,6 +161,14 @@ public class Tool {
 	public ErrorManager errMgr;
     public LogManager logMgr = new LogManager();
 
+	/** Non-null if -Xcache was given */
+	protected GrammarCache grammarCache;
+
+	/** Decision profiles read from the -Xprofile file, by grammar file name;
+	 *  loaded on first use.
+	 */
+	protected Map<String, DecisionProfile> decisionProfiles;
+
 	List<ANTLRToolListener> listeners = new CopyOnWriteArrayList<ANTLRToolListener>();
 
 	/** Track separately so if someone adds a listener, it's the only one
@@ -270,6 +286,9 @@ public class Tool {
 			STGroup.trackCreationEvents = true;
 			return_dont_exit = true;
 		}
+		if ( cacheDirectory!=null ) {
+			grammarCache = new GrammarCache(this, cacheDirectory);
+		}
 	}
 
 	protected void handleOptionSetArg(String arg) {
@@ -318,7 +337,8 @@ public class Tool {
 
 			}
 			else if (errMgr.getNumErrors() == 0) {
-				process(g, true);
+				if ( grammarCache!=null ) grammarCache.process(g);
+				else process(g, true);
 			}
 		}
 	}
@@ -621,21 +641,29 @@ public class Tool {
 				return null;
 			}
 
-			String absolutePath = importedFile.getAbsolutePath();
-			ANTLRFileStream in = new ANTLRFileStream(absolutePath, grammarEncoding);
-			GrammarRootAST root = parse(g.fileName, in);
+			GrammarRootAST root = parseImportedGrammar(g, importedFile);
 			if (root == null) {
 				return null;
 			}
 
 			imported = createGrammar(root);
-			imported.fileName = absolutePath;
+			imported.fileName = importedFile.getAbsolutePath();
 			importedGrammars.put(root.getGrammarName(), imported);
 		}
 
 		return imported;
 	}
 
+	/** Parse a grammar found by {@link #loadImportedGrammar}. Build tools that
+	 *  run several tool instances over the same imports may override this to
+	 *  hand out copies of a tree they parsed once; the returned tree is
+	 *  altered as it is merged into {@code g}, so it must not be shared.
+	 */
+	protected GrammarRootAST parseImportedGrammar(Grammar g, File importedFile) throws IOException {
+		ANTLRFileStream in = new ANTLRFileStream(importedFile.getAbsolutePath(), grammarEncoding);
+		return parse(g.fileName, in);
+	}
+
 	public GrammarRootAST parseGrammarFromString(String grammar) {
 		return parse("<string>", new ANTLRStringStream(grammar));
 	}
@@ -733,6 +761,33 @@ public class Tool {
 		return new BufferedWriter(osw);
 	}
 
+	/** Open an output file for {@code g} through {@link #getOutputFileWriter}.
+	 *  Code generation goes through here so that the output can be recorded
+	 *  by the {@link GrammarCache}.
+	 */
+	public Writer openOutputFile(Grammar g, String fileName) throws IOException {
+		Writer w = getOutputFileWriter(g, fileName);
+		if ( grammarCache!=null ) w = grammarCache.record(fileName, w);
+		return w;
+	}
+
+	/** Return the -Xprofile decision profile recorded for {@code g}'s
+	 *  generated parser, or null if there isn't one.
+	 */
+	public DecisionProfile getDecisionProfile(Grammar g) {
+		if ( profileFile==null ) return null;
+		if ( decisionProfiles==null ) {
+			try {
+				decisionProfiles = DecisionProfile.load(new File(profileFile));
+			}
+			catch (IOException ioe) {
+				errMgr.toolError(ErrorType.ERROR_READING_PROFILE, ioe, profileFile, ioe.getMessage());
+				decisionProfiles = Collections.emptyMap();
+			}
+		}
+		return decisionProfiles.get(new File(g.fileName).getName());
+	}
+
 	public File getImportedGrammarFile(Grammar g, String fileName) {
 		File importedFile = new File(inputDirectory, fileName);
 		if ( !importedFile.exists() ) {
@@ -812,7 +867,7 @@ public class Tool {
 	}
 
 	protected void writeDOTFile(Grammar g, String name, String dot) throws IOException {
-		Writer fw = getOutputFileWriter(g, name + ".dot");
+		Writer fw = openOutputFile(g, name + ".dot");
 		try {
 			fw.write(dot);
 		}
@@ -75,6 +75,21 @@ public class AnalysisPipeline {
 			g.decisionLOOK.set(s.decision, look);
 			g.tool.log("LL1", "LL(1)? " + disjoint(look));
 		}
+
+		DecisionProfile profile = g.tool.getDecisionProfile(g);
+		if ( profile!=null ) checkProfile(profile);
+	}
+
+	/** Flag decisions the profile shows always needed full-context prediction */
+	protected void checkProfile(DecisionProfile profile) {
+		for (DecisionState s : g.atn.decisionToState) {
+			if ( profile.alwaysFallsBackToLL(s.decision) ) {
+				Rule rule = g.getRule(s.ruleIndex);
+				g.tool.errMgr.grammarError(ErrorType.DECISION_ALWAYS_NEEDS_FULL_CONTEXT, g.fileName,
+										   ((GrammarAST)rule.ast.getChild(0)).getToken(),
+										   s.decision, rule.name, profile.getDecision(s.decision).invocations);
+			}
+		}
 	}
 
 	/** Return whether lookahead sets are disjoint; no lookahead ⇒ not disjoint */
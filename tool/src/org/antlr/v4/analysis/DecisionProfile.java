@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.analysis;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** The decision statistics a profiling parser recorded for one grammar
+ *  (see {@code ParseInfo.writeProfile}). Code generation uses them to
+ *  spend lookahead analysis on the decisions that are actually hot.
+ */
+public class DecisionProfile {
+	/** A decision is hot if it made at least this share of all predictions */
+	public static final double HOT_DECISION_FRACTION = 0.01;
+
+	/** Never look deeper than this many tokens in generated prediction code */
+	public static final int MAX_FIXED_LOOKAHEAD = 4;
+
+	public static class Decision {
+		public long invocations;
+		public long SLL_MaxLook;
+		public long LL_Fallback;
+	}
+
+	public final String grammarFileName;
+	public final Map<Integer, Decision> decisions = new HashMap<Integer, Decision>();
+	public long totalInvocations;
+
+	public DecisionProfile(String grammarFileName) {
+		this.grammarFileName = grammarFileName;
+	}
+
+	public Decision getDecision(int decision) {
+		return decisions.get(decision);
+	}
+
+	public boolean isHot(int decision) {
+		Decision d = decisions.get(decision);
+		return d!=null && d.invocations > 0 && d.invocations >= totalInvocations * HOT_DECISION_FRACTION;
+	}
+
+	/** Did every profiled prediction of {@code decision} need full LL? */
+	public boolean alwaysFallsBackToLL(int decision) {
+		Decision d = decisions.get(decision);
+		return d!=null && d.invocations > 0 && d.LL_Fallback==d.invocations;
+	}
+
+	/** How many tokens of fixed lookahead to try for {@code decision}: none
+	 *  if the profile never saw it, the observed SLL lookahead if it's hot,
+	 *  and {@code defaultDepth} otherwise.
+	 */
+	public int getFixedLookaheadDepth(int decision, int defaultDepth) {
+		Decision d = decisions.get(decision);
+		if ( d==null || d.invocations==0 ) return 0;
+		if ( isHot(decision) && d.LL_Fallback==0 ) {
+			long depth = Math.max(d.SLL_MaxLook, defaultDepth);
+			return (int)Math.min(depth, MAX_FIXED_LOOKAHEAD);
+		}
+		return defaultDepth;
+	}
+
+	/** Read the profiles in {@code file}, keyed by grammar file name. */
+	public static Map<String, DecisionProfile> load(File file) throws IOException {
+		Map<String, DecisionProfile> profiles = new LinkedHashMap<String, DecisionProfile>();
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charset.forName("UTF-8")));
+		try {
+			DecisionProfile profile = null;
+			String line;
+			int lineNumber = 0;
+			while ( (line = in.readLine())!=null ) {
+				lineNumber++;
+				line = line.trim();
+				if ( line.isEmpty() || line.startsWith("#") ) continue;
+				if ( line.startsWith("grammar=") ) {
+					String name = line.substring("grammar=".length());
+					profile = profiles.get(name);
+					if ( profile==null ) {
+						profile = new DecisionProfile(name);
+						profiles.put(name, profile);
+					}
+					continue;
+				}
+
+				if ( profile==null ) {
+					throw new IOException("line "+lineNumber+": expecting grammar=<file name>");
+				}
+				profile.add(parseDecision(line, lineNumber));
+			}
+		}
+		finally {
+			in.close();
+		}
+
+		return profiles;
+	}
+
+	protected void add(Map<String, Long> values) {
+		int decision = values.get("decision").intValue();
+		Decision d = decisions.get(decision);
+		if ( d==null ) {
+			d = new Decision();
+			decisions.put(decision, d);
+		}
+
+		// the same grammar may appear more than once; add up the runs
+		long invocations = get(values, "invocations");
+		d.invocations += invocations;
+		d.LL_Fallback += get(values, "LL_Fallback");
+		d.SLL_MaxLook = Math.max(d.SLL_MaxLook, get(values, "SLL_MaxLook"));
+		totalInvocations += invocations;
+	}
+
+	protected static Map<String, Long> parseDecision(String line, int lineNumber) throws IOException {
+		Map<String, Long> values = new HashMap<String, Long>();
+		for (String pair : line.split("\\s+")) {
+			int eq = pair.indexOf('=');
+			if ( eq<=0 ) throw new IOException("line "+lineNumber+": expecting key=value but found "+pair);
+			try {
+				values.put(pair.substring(0, eq), Long.parseLong(pair.substring(eq+1)));
+			}
+			catch (NumberFormatException nfe) {
+				throw new IOException("line "+lineNumber+": bad value in "+pair);
+			}
+		}
+
+		if ( !values.containsKey("decision") ) {
+			throw new IOException("line "+lineNumber+": missing decision number");
+		}
+		return values;
+	}
+
+	protected static long get(Map<String, Long> values, String key) {
+		Long value = values.get(key);
+		return value!=null ? value : 0;
+	}
+}
@@ -0,0 +1,460 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.analysis;
+
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNConfig;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.AbstractPredicateTransition;
+import org.antlr.v4.runtime.atn.DecisionState;
+import org.antlr.v4.runtime.atn.LoopEndState;
+import org.antlr.v4.runtime.atn.NotSetTransition;
+import org.antlr.v4.runtime.atn.PrecedencePredicateTransition;
+import org.antlr.v4.runtime.atn.PredictionContext;
+import org.antlr.v4.runtime.atn.RuleStopState;
+import org.antlr.v4.runtime.atn.RuleTransition;
+import org.antlr.v4.runtime.atn.SingletonPredictionContext;
+import org.antlr.v4.runtime.atn.StarLoopEntryState;
+import org.antlr.v4.runtime.atn.Transition;
+import org.antlr.v4.runtime.atn.WildcardTransition;
+import org.antlr.v4.runtime.misc.IntervalSet;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Compute, for a decision that is not LL(1), which alternatives can be
+ *  predicted by looking at most {@link #k} tokens ahead. The result is a
+ *  tree of lookahead tests that only ever predicts an alternative when no
+ *  other alternative can match the same lookahead sequence; every other
+ *  input is left to the ATN simulator. Like the LL(1) analysis, rule
+ *  stop states follow the global FOLLOW links and the analysis gives up
+ *  on decisions that see predicates.
+ */
+public class FixedLookaheadAnalyzer {
+	/** Give up on decisions whose closure grows beyond this many configurations */
+	public static final int MAX_CLOSURE_SIZE = 1000;
+
+	public final ATN atn;
+	public final int k;
+
+	/** The lookahead test for {@code LA(depth)}. Tokens not covered by a
+	 *  branch predict {@link #defaultAlt}, if any, or fall back to full
+	 *  prediction.
+	 */
+	public static class Node {
+		public final int depth;
+		public final List<Branch> branches = new ArrayList<Branch>();
+		public int defaultAlt = ATN.INVALID_ALT_NUMBER;
+
+		public Node(int depth) {
+			this.depth = depth;
+		}
+	}
+
+	/** Predicts {@link #alt}, tests the next token with {@link #next},
+	 *  or falls back to full prediction when neither is set. If
+	 *  {@link #precedence} is set, {@link #alt} is only predicted when
+	 *  {@code precpred(_ctx, precedence)} holds.
+	 */
+	public static class Branch {
+		public final IntervalSet tokens;
+		public int alt = ATN.INVALID_ALT_NUMBER;
+		public int precedence = -1;
+		public Node next;
+
+		public Branch(IntervalSet tokens) {
+			this.tokens = tokens;
+		}
+	}
+
+	public FixedLookaheadAnalyzer(ATN atn, int k) {
+		this.atn = atn;
+		this.k = k;
+	}
+
+	/** Return the lookahead tree for {@code s} or null if no lookahead
+	 *  sequence of at most {@link #k} tokens predicts a unique alternative.
+	 */
+	public Node getLookaheadTree(DecisionState s) {
+		if ( s.nonGreedy ) return null;
+		if ( s instanceof StarLoopEntryState && ((StarLoopEntryState)s).isPrecedenceDecision ) {
+			return null;
+		}
+
+		List<Set<ATNConfig>> altConfigs = new ArrayList<Set<ATNConfig>>();
+		for (int i = 0; i < s.getNumberOfTransitions(); i++) {
+			Set<ATNConfig> configs = new LinkedHashSet<ATNConfig>();
+			if ( !closure(s.transition(i).target, PredictionContext.EMPTY, configs) ) return null;
+			altConfigs.add(configs);
+		}
+
+		return getLookaheadTree(altConfigs, 1);
+	}
+
+	/** Return a one-token lookahead tree for a decision of a left-recursive
+	 *  rule whose alternatives start with a precedence predicate: the loop
+	 *  over the operator alternatives or the block of operator alternatives
+	 *  inside it. Like precedence climbing, an operator token continues
+	 *  with its alternative when the operator's precedence is high enough.
+	 *  Tokens that can only follow the rule predict the loop exit. Returns
+	 *  null if the decision doesn't have that shape; operator tokens that
+	 *  are shared by alternatives or can also follow the rule are left to
+	 *  the ATN simulator.
+	 */
+	public Node getPrecedenceLookaheadTree(DecisionState s) {
+		if ( !atn.ruleToStartState[s.ruleIndex].isLeftRecursiveRule ) return null;
+		StarLoopEntryState loopEntry = getPrecedenceLoopEntry(s.ruleIndex);
+		if ( loopEntry==null ) return null;
+		IntervalSet follow = getExternalFollow(s.ruleIndex, loopEntry);
+		if ( follow==null ) return null;
+
+		// operator token -> alt and the highest precedence that allows it
+		Map<Integer, int[]> operators = new LinkedHashMap<Integer, int[]>();
+		IntervalSet shared = new IntervalSet();
+		int exitAlt = ATN.INVALID_ALT_NUMBER;
+		for (int i = 0; i < s.getNumberOfTransitions(); i++) {
+			int alt = i + 1;
+			Map<Integer, Integer> altOperators = new LinkedHashMap<Integer, Integer>();
+			int exits = collectOperators(s.transition(i).target, -1, loopEntry, altOperators, new HashSet<ATNState>());
+			if ( exits<0 ) return null;
+			if ( exits>0 ) {
+				if ( exitAlt!=ATN.INVALID_ALT_NUMBER || !altOperators.isEmpty() ) return null;
+				exitAlt = alt;
+			}
+
+			for (Map.Entry<Integer, Integer> op : altOperators.entrySet()) {
+				int ttype = op.getKey();
+				if ( operators.containsKey(ttype) ) shared.add(ttype);
+				else operators.put(ttype, new int[] {alt, op.getValue()});
+			}
+		}
+
+		if ( operators.isEmpty() ) return null;
+
+		Node node = new Node(1);
+		for (Map.Entry<Integer, int[]> op : operators.entrySet()) {
+			int ttype = op.getKey();
+			if ( shared.contains(ttype) || follow.contains(ttype) ) continue;
+			Branch b = new Branch(IntervalSet.of(ttype));
+			b.alt = op.getValue()[0];
+			b.precedence = op.getValue()[1];
+			node.branches.add(b);
+		}
+
+		if ( exitAlt!=ATN.INVALID_ALT_NUMBER ) {
+			IntervalSet operatorTokens = new IntervalSet();
+			for (int ttype : operators.keySet()) operatorTokens.add(ttype);
+			IntervalSet exitTokens = follow.subtract(operatorTokens);
+			if ( !exitTokens.isNil() ) {
+				Branch b = new Branch(exitTokens);
+				b.alt = exitAlt;
+				node.branches.add(b);
+			}
+		}
+
+		return node.branches.isEmpty() ? null : node;
+	}
+
+	/** Find the operator tokens reachable from {@code s} without leaving the
+	 *  rule, each guarded by one precedence predicate. Return the number of
+	 *  paths that leave the operator loop, or -1 if some path doesn't
+	 *  start with a predicated operator token.
+	 */
+	protected int collectOperators(ATNState s, int precedence, StarLoopEntryState loopEntry,
+								   Map<Integer, Integer> operators, Set<ATNState> busy)
+	{
+		if ( s instanceof RuleStopState ) return precedence<0 ? 1 : -1;
+		if ( s==loopEntry || !busy.add(s) ) return -1;
+
+		int exits = 0;
+		for (int i = 0; i < s.getNumberOfTransitions(); i++) {
+			Transition t = s.transition(i);
+			if ( t instanceof PrecedencePredicateTransition ) {
+				if ( precedence>=0 ) return -1;
+				int n = collectOperators(t.target, ((PrecedencePredicateTransition)t).precedence, loopEntry, operators, busy);
+				if ( n<0 ) return -1;
+				exits += n;
+			}
+			else if ( t instanceof AbstractPredicateTransition || t instanceof RuleTransition ) {
+				return -1;
+			}
+			else if ( t.isEpsilon() ) {
+				int n = collectOperators(t.target, precedence, loopEntry, operators, busy);
+				if ( n<0 ) return -1;
+				exits += n;
+			}
+			else {
+				IntervalSet label = t.label();
+				if ( precedence<0 || label==null || t instanceof NotSetTransition ) return -1;
+				for (int ttype : label.toList()) {
+					Integer p = operators.get(ttype);
+					if ( p==null || p<precedence ) operators.put(ttype, precedence);
+				}
+			}
+		}
+
+		return exits;
+	}
+
+	/** Return the loop entry of the operator loop of a left-recursive rule,
+	 *  the one whose exit branch leads straight to the rule stop state.
+	 */
+	protected StarLoopEntryState getPrecedenceLoopEntry(int ruleIndex) {
+		for (ATNState s : atn.states) {
+			if ( s==null || s.ruleIndex!=ruleIndex || !(s instanceof StarLoopEntryState) ) continue;
+			ATNState loopEnd = s.transition(s.getNumberOfTransitions() - 1).target;
+			if ( loopEnd instanceof LoopEndState &&
+				 loopEnd.onlyHasEpsilonTransitions() &&
+				 loopEnd.transition(0).target instanceof RuleStopState )
+			{
+				return (StarLoopEntryState)s;
+			}
+		}
+
+		return null;
+	}
+
+	/** Return the tokens that can follow a rule except through the returns
+	 *  from its own recursive invocations that lead back into its operator
+	 *  loop, or null if that can't be computed.
+	 */
+	protected IntervalSet getExternalFollow(int ruleIndex, StarLoopEntryState loopEntry) {
+		IntervalSet follow = new IntervalSet();
+		RuleStopState stop = atn.ruleToStopState[ruleIndex];
+		for (int i = 0; i < stop.getNumberOfTransitions(); i++) {
+			ATNState followState = stop.transition(i).target;
+			if ( followState.ruleIndex==ruleIndex &&
+				 reachesWithoutConsuming(followState, loopEntry, new HashSet<ATNState>()) )
+			{
+				continue;
+			}
+
+			Set<ATNConfig> configs = new LinkedHashSet<ATNConfig>();
+			if ( !closure(followState, PredictionContext.EMPTY, configs) ) return null;
+			follow.addAll(getLookahead(configs));
+		}
+
+		return follow;
+	}
+
+	protected boolean reachesWithoutConsuming(ATNState s, ATNState target, Set<ATNState> busy) {
+		if ( s==target ) return true;
+		if ( s instanceof RuleStopState || !busy.add(s) ) return false;
+		for (int i = 0; i < s.getNumberOfTransitions(); i++) {
+			Transition t = s.transition(i);
+			if ( t.isEpsilon() && !(t instanceof RuleTransition) &&
+				 reachesWithoutConsuming(t.target, target, busy) )
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	protected Node getLookaheadTree(List<Set<ATNConfig>> altConfigs, int depth) {
+		int n = altConfigs.size();
+		IntervalSet[] look = new IntervalSet[n];
+		IntervalSet all = new IntervalSet();
+		int wildcardAlt = ATN.INVALID_ALT_NUMBER;
+		for (int i = 0; i < n; i++) {
+			look[i] = getLookahead(altConfigs.get(i));
+			all.addAll(look[i]);
+			if ( reachesEndOfInput(altConfigs.get(i)) ) {
+				// anything can follow; can't tell this alt apart from another one
+				if ( wildcardAlt!=ATN.INVALID_ALT_NUMBER ) return null;
+				wildcardAlt = i + 1;
+			}
+		}
+
+		Node node = new Node(depth);
+		node.defaultAlt = wildcardAlt;
+		Map<Integer, IntervalSet> predicted = new LinkedHashMap<Integer, IntervalSet>();
+		IntervalSet fallback = new IntervalSet();
+		List<Branch> nested = new ArrayList<Branch>();
+		for (int ttype : all.toList()) {
+			List<Integer> viable = new ArrayList<Integer>();
+			for (int i = 0; i < n; i++) {
+				if ( look[i].contains(ttype) || i + 1 == wildcardAlt ) viable.add(i + 1);
+			}
+
+			if ( viable.size()==1 ) {
+				int alt = viable.get(0);
+				if ( alt==wildcardAlt ) continue; // covered by default
+				IntervalSet tokens = predicted.get(alt);
+				if ( tokens==null ) {
+					tokens = new IntervalSet();
+					predicted.put(alt, tokens);
+				}
+				tokens.add(ttype);
+				continue;
+			}
+
+			Node next = null;
+			if ( depth < k && !viable.contains(wildcardAlt) ) {
+				List<Set<ATNConfig>> nextConfigs = move(altConfigs, viable, ttype);
+				if ( nextConfigs!=null ) next = getLookaheadTree(nextConfigs, depth + 1);
+			}
+
+			if ( next!=null ) {
+				Branch b = new Branch(IntervalSet.of(ttype));
+				b.next = next;
+				nested.add(b);
+			}
+			else {
+				fallback.add(ttype);
+			}
+		}
+
+		for (Map.Entry<Integer, IntervalSet> entry : predicted.entrySet()) {
+			Branch b = new Branch(entry.getValue());
+			b.alt = entry.getKey();
+			node.branches.add(b);
+		}
+
+		node.branches.addAll(nested);
+		if ( node.branches.isEmpty() && wildcardAlt==ATN.INVALID_ALT_NUMBER ) {
+			return null;
+		}
+
+		if ( wildcardAlt!=ATN.INVALID_ALT_NUMBER && !fallback.isNil() ) {
+			// these tokens must not reach the default case
+			node.branches.add(new Branch(fallback));
+		}
+
+		return node;
+	}
+
+	/** Return the configurations of each viable alternative after matching
+	 *  {@code ttype}, or null if that ran into a predicate.
+	 */
+	protected List<Set<ATNConfig>> move(List<Set<ATNConfig>> altConfigs, List<Integer> viable, int ttype) {
+		List<Set<ATNConfig>> result = new ArrayList<Set<ATNConfig>>();
+		for (int i = 0; i < altConfigs.size(); i++) {
+			Set<ATNConfig> configs = new LinkedHashSet<ATNConfig>();
+			if ( viable.contains(i + 1) ) {
+				for (ATNConfig c : altConfigs.get(i)) {
+					for (int j = 0; j < c.state.getNumberOfTransitions(); j++) {
+						Transition t = c.state.transition(j);
+						if ( !t.isEpsilon() && t.matches(ttype, Token.MIN_USER_TOKEN_TYPE, atn.maxTokenType) ) {
+							if ( !closure(t.target, c.context, configs) ) return null;
+						}
+					}
+				}
+			}
+
+			result.add(configs);
+		}
+
+		return result;
+	}
+
+	protected IntervalSet getLookahead(Set<ATNConfig> configs) {
+		IntervalSet look = new IntervalSet();
+		for (ATNConfig c : configs) {
+			for (int i = 0; i < c.state.getNumberOfTransitions(); i++) {
+				Transition t = c.state.transition(i);
+				if ( t.isEpsilon() ) continue;
+				if ( t instanceof NotSetTransition ) {
+					look.addAll(t.label().complement(Token.MIN_USER_TOKEN_TYPE, atn.maxTokenType));
+				}
+				else if ( t instanceof WildcardTransition ) {
+					look.addAll(IntervalSet.of(Token.MIN_USER_TOKEN_TYPE, atn.maxTokenType));
+				}
+				else {
+					look.addAll(t.label());
+				}
+			}
+		}
+
+		return look;
+	}
+
+	protected boolean reachesEndOfInput(Set<ATNConfig> configs) {
+		for (ATNConfig c : configs) {
+			if ( c.state instanceof RuleStopState ) return true;
+		}
+
+		return false;
+	}
+
+	/** Add the states reachable from {@code s} without consuming a token
+	 *  that have token transitions. A rule stop state without FOLLOW links
+	 *  is added too, meaning anything can follow. Return false if a
+	 *  predicate was found or the closure got too large.
+	 */
+	protected boolean closure(ATNState s, PredictionContext ctx, Set<ATNConfig> configs) {
+		return closure(s, ctx, configs, new HashSet<ATNConfig>(), new BitSet());
+	}
+
+	protected boolean closure(ATNState s, PredictionContext ctx, Set<ATNConfig> configs,
+							  Set<ATNConfig> busy, BitSet calledRuleStack)
+	{
+		ATNConfig c = new ATNConfig(s, 0, ctx);
+		if ( !busy.add(c) ) return true;
+		if ( busy.size() > MAX_CLOSURE_SIZE ) return false;
+
+		if ( s instanceof RuleStopState ) {
+			if ( !ctx.isEmpty() ) {
+				boolean removed = calledRuleStack.get(s.ruleIndex);
+				try {
+					calledRuleStack.clear(s.ruleIndex);
+					for (int i = 0; i < ctx.size(); i++) {
+						ATNState returnState = atn.states.get(ctx.getReturnState(i));
+						if ( !closure(returnState, ctx.getParent(i), configs, busy, calledRuleStack) ) {
+							return false;
+						}
+					}
+				}
+				finally {
+					if ( removed ) calledRuleStack.set(s.ruleIndex);
+				}
+
+				return true;
+			}
+
+			if ( s.getNumberOfTransitions()==0 ) {
+				configs.add(c);
+				return true;
+			}
+		}
+
+		for (int i = 0; i < s.getNumberOfTransitions(); i++) {
+			Transition t = s.transition(i);
+			if ( t instanceof RuleTransition ) {
+				if ( calledRuleStack.get(t.target.ruleIndex) ) continue;
+				PredictionContext newContext =
+					SingletonPredictionContext.create(ctx, ((RuleTransition)t).followState.stateNumber);
+				try {
+					calledRuleStack.set(t.target.ruleIndex);
+					if ( !closure(t.target, newContext, configs, busy, calledRuleStack) ) return false;
+				}
+				finally {
+					calledRuleStack.clear(t.target.ruleIndex);
+				}
+			}
+			else if ( t instanceof AbstractPredicateTransition ) {
+				return false;
+			}
+			else if ( t.isEpsilon() ) {
+				if ( !closure(t.target, ctx, configs, busy, calledRuleStack) ) return false;
+			}
+			else {
+				configs.add(c);
+			}
+		}
+
+		return true;
+	}
+}
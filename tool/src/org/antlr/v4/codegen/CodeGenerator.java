@@ -198,7 +198,7 @@ public class CodeGenerator {
 	public void write(ST code, String fileName) {
 		try {
 //			long start = System.currentTimeMillis();
-			Writer w = tool.getOutputFileWriter(g, fileName);
+			Writer w = tool.openOutputFile(g, fileName);
 			STWriter wr = new AutoIndentWriter(w);
 			wr.setLineWidth(lineWidth);
 			code.write(wr);
@@ -7,12 +7,15 @@
 package org.antlr.v4.codegen;
 
 import org.antlr.v4.analysis.AnalysisPipeline;
+import org.antlr.v4.analysis.DecisionProfile;
+import org.antlr.v4.analysis.FixedLookaheadAnalyzer;
 import org.antlr.v4.codegen.model.Action;
 import org.antlr.v4.codegen.model.AddToLabelList;
 import org.antlr.v4.codegen.model.AltBlock;
 import org.antlr.v4.codegen.model.Choice;
 import org.antlr.v4.codegen.model.CodeBlockForAlt;
 import org.antlr.v4.codegen.model.CodeBlockForOuterMostAlt;
+import org.antlr.v4.codegen.model.FixedLookaheadPrediction;
 import org.antlr.v4.codegen.model.InvokeRule;
 import org.antlr.v4.codegen.model.LL1AltBlock;
 import org.antlr.v4.codegen.model.LL1OptionalBlock;
@@ -247,7 +250,9 @@ public class ParserFactory extends DefaultOutputModelFactory {
 
 	@Override
 	public Choice getComplexChoiceBlock(BlockAST blkAST, List<CodeBlockForAlt> alts) {
-		return new AltBlock(this, blkAST, alts);
+		Choice c = new AltBlock(this, blkAST, alts);
+		addFixedLookaheadPrediction(c);
+		return c;
 	}
 
 	@Override
@@ -288,6 +293,7 @@ public class ParserFactory extends DefaultOutputModelFactory {
 				c = new PlusBlock(this, ebnfRoot, alts);
 				break;
 		}
+		if ( c!=null ) addFixedLookaheadPrediction(c);
 		return c;
 	}
 
@@ -306,6 +312,29 @@ public class ParserFactory extends DefaultOutputModelFactory {
 
 	// support
 
+	/** Let the target predict {@code c} from up to two tokens of lookahead
+	 *  where that's enough to tell its alternatives apart; everything else
+	 *  still goes through adaptivePredict(). With a decision profile, hot
+	 *  decisions may look further ahead and unused ones are left alone.
+	 *  With -Xprecedence-climbing, the operator decisions of left-recursive
+	 *  rules switch on the operator token and check its precedence.
+	 */
+	public void addFixedLookaheadPrediction(Choice c) {
+		if ( g.tool.force_atn || !gen.getTarget().supportsFixedLookaheadPrediction() ) return;
+		if ( !(getRoot() instanceof ParserFile) ) return;
+		int k = 2;
+		DecisionProfile profile = g.tool.getDecisionProfile(g);
+		if ( profile!=null ) k = profile.getFixedLookaheadDepth(c.decision, k);
+		if ( k==0 ) return;
+		FixedLookaheadAnalyzer analyzer = new FixedLookaheadAnalyzer(g.atn, k);
+		DecisionState s = g.atn.getDecisionState(c.decision);
+		FixedLookaheadAnalyzer.Node root = analyzer.getLookaheadTree(s);
+		if ( root==null && g.tool.precedence_climbing ) root = analyzer.getPrecedenceLookaheadTree(s);
+		if ( root==null ) return;
+		c.lookaheadPrediction = new FixedLookaheadPrediction(this, c.decision, root);
+		((ParserFile)getRoot()).parser.lookaheadPredictions.add(c.lookaheadPrediction);
+	}
+
 	public void defineImplicitLabel(GrammarAST ast, LabeledOp op) {
 		Decl d;
 		if ( ast.getType()==ANTLRParser.SET || ast.getType()==ANTLRParser.WILDCARD ) {
@@ -466,6 +466,18 @@ public abstract class Target {
 	 */
 	public int getInlineTestSetWordSize() { return 64; }
 
+	/** Can inline token set tests that span several words use a static
+	 *  table of words (see the TokenSetTable template) instead of a chain
+	 *  of comparisons?
+	 */
+	public boolean supportsTokenSetTables() { return false; }
+
+	/** Can decisions that aren't LL(1) predict with a couple of tokens of
+	 *  lookahead (see the FixedLookaheadPrediction template) before calling
+	 *  adaptivePredict()?
+	 */
+	public boolean supportsFixedLookaheadPrediction() { return false; }
+
 	public boolean grammarSymbolCausesIssueInGeneratedCode(GrammarAST idNode) {
 		switch (idNode.getParent().getType()) {
 			case ANTLRParser.ASSIGN:
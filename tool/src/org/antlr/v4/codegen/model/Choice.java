@@ -29,6 +29,8 @@ import java.util.List;
 public abstract class Choice extends RuleElement {
 	public int decision = -1;
 	public Decl label;
+	/** Predicts with fixed lookahead before falling back on the ATN; null if unused */
+	public FixedLookaheadPrediction lookaheadPrediction;
 
 	@ModelElement public List<CodeBlockForAlt> alts;
 	@ModelElement public List<SrcOp> preamble = new ArrayList<SrcOp>();
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.codegen.model;
+
+import org.antlr.v4.analysis.FixedLookaheadAnalyzer;
+import org.antlr.v4.codegen.OutputModelFactory;
+import org.antlr.v4.codegen.Target;
+import org.antlr.v4.runtime.atn.ATN;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A prediction method for a decision that isn't LL(1) but where a couple
+ *  of tokens of lookahead usually pick the alternative. Any input the
+ *  lookahead tree doesn't resolve goes to adaptivePredict().
+ */
+public class FixedLookaheadPrediction extends OutputModelObject {
+	public int decision;
+	public LookaheadNode root;
+
+	public FixedLookaheadPrediction(OutputModelFactory factory, int decision, FixedLookaheadAnalyzer.Node root) {
+		super(factory);
+		this.decision = decision;
+		this.root = new LookaheadNode(factory, root);
+	}
+
+	public static class LookaheadNode {
+		public int depth;
+		public List<LookaheadBranch> branches = new ArrayList<LookaheadBranch>();
+		public Integer defaultAlt;
+
+		public LookaheadNode(OutputModelFactory factory, FixedLookaheadAnalyzer.Node node) {
+			depth = node.depth;
+			for (FixedLookaheadAnalyzer.Branch b : node.branches) {
+				branches.add(new LookaheadBranch(factory, b));
+			}
+
+			if ( node.defaultAlt!=ATN.INVALID_ALT_NUMBER ) defaultAlt = node.defaultAlt;
+		}
+	}
+
+	public static class LookaheadBranch {
+		public List<String> ttypes;
+		public Integer alt;
+		/** Predict {@link #alt} only if this precedence predicate holds */
+		public Integer precedence;
+		public LookaheadNode next;
+
+		public LookaheadBranch(OutputModelFactory factory, FixedLookaheadAnalyzer.Branch b) {
+			Target target = factory.getGenerator().getTarget();
+			ttypes = Arrays.asList(target.getTokenTypesAsTargetLabels(factory.getGrammar(), b.tokens.toArray()));
+			if ( b.alt!=ATN.INVALID_ALT_NUMBER ) alt = b.alt;
+			if ( b.precedence>=0 ) precedence = b.precedence;
+			if ( b.next!=null ) next = new LookaheadNode(factory, b.next);
+		}
+	}
+}
@@ -7,17 +7,36 @@
 package org.antlr.v4.codegen.model;
 
 import org.antlr.v4.codegen.OutputModelFactory;
+import org.antlr.v4.runtime.misc.IntervalSet;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Parser extends Recognizer {
 	public ParserFile file;
 
 	@ModelElement public List<RuleFunction> funcs = new ArrayList<RuleFunction>();
 
+	/** Prediction methods for decisions that fixed lookahead can resolve */
+	public List<FixedLookaheadPrediction> lookaheadPredictions = new ArrayList<FixedLookaheadPrediction>();
+
+	public Map<IntervalSet, TokenSetTable> tokenSetTables = new LinkedHashMap<IntervalSet, TokenSetTable>();
+
 	public Parser(OutputModelFactory factory, ParserFile file) {
 		super(factory);
 		this.file = file; // who contains us?
 	}
+
+	/** Return the shared table for {@code set}, creating it on first use. */
+	public TokenSetTable getTokenSetTable(IntervalSet set) {
+		TokenSetTable table = tokenSetTables.get(set);
+		if ( table==null ) {
+			table = new TokenSetTable(factory, "_tokenSet" + tokenSetTables.size(), set);
+			tokenSetTables.put(set, table);
+		}
+
+		return table;
+	}
 }
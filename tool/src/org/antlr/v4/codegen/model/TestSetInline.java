@@ -18,6 +18,8 @@ public class TestSetInline extends SrcOp {
 	public int bitsetWordSize;
 	public String varName;
 	public Bitset[] bitsets;
+	/** Table to test membership with when the set spans several words */
+	public TokenSetTable table;
 
 	public TestSetInline(OutputModelFactory factory, GrammarAST ast, IntervalSet set, int wordSize) {
 		super(factory, ast);
@@ -26,6 +28,12 @@ public class TestSetInline extends SrcOp {
 		Bitset[] withoutZeroOffset = createBitsets(factory, set, wordSize, false);
 		this.bitsets = withZeroOffset.length <= withoutZeroOffset.length ? withZeroOffset : withoutZeroOffset;
 		this.varName = "_la";
+		if ( bitsets.length > 1 && set.getMinElement() >= 0 &&
+			 factory.getGenerator().getTarget().supportsTokenSetTables() &&
+			 factory.getRoot() instanceof ParserFile )
+		{
+			this.table = ((ParserFile)factory.getRoot()).parser.getTokenSetTable(set);
+		}
 	}
 
 	private static Bitset[] createBitsets(OutputModelFactory factory,
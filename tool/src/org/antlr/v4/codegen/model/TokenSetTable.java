@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.codegen.model;
+
+import org.antlr.v4.codegen.OutputModelFactory;
+import org.antlr.v4.runtime.misc.IntervalSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** A token set emitted once per recognizer as a static table of 64-bit
+ *  words so that a membership test costs a single array lookup no matter
+ *  how many tokens are in the set.
+ */
+public class TokenSetTable extends OutputModelObject {
+	public String name;
+	/** Bits of token types 64*i..64*i+63 are in words[i] */
+	public List<Long> words = new ArrayList<Long>();
+	public int size;
+
+	public TokenSetTable(OutputModelFactory factory, String name, IntervalSet set) {
+		super(factory);
+		this.name = name;
+		long[] bits = new long[(set.getMaxElement() >> 6) + 1];
+		for (int ttype : set.toArray()) {
+			bits[ttype >> 6] |= 1L << ttype;
+		}
+
+		for (long word : bits) {
+			words.add(word);
+		}
+
+		size = bits.length;
+	}
+}
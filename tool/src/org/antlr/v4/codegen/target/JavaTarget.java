@@ -70,6 +70,16 @@ public class JavaTarget extends Target {
 		return 65535 / 3;
 	}
 
+	@Override
+	public boolean supportsTokenSetTables() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsFixedLookaheadPrediction() {
+		return true;
+	}
+
 	@Override
 	protected boolean visibleGrammarSymbolCausesIssueInGeneratedCode(GrammarAST idNode) {
 		return getBadWords().contains(idNode.getText());
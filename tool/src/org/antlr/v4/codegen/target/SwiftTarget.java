@@ -166,7 +166,7 @@ public class SwiftTarget extends Target {
     private  void writeFile(String content,Grammar g,String fileName) {
 
         try {
-            Writer w =    this.getCodeGenerator().tool.getOutputFileWriter(g, fileName);
+            Writer w =    this.getCodeGenerator().tool.openOutputFile(g, fileName);
             w.write(content);
             w.close();
         }
@@ -90,6 +90,12 @@ public enum ErrorType {
 	 * <p>cannot find tokens file <em>filename</em>: <em>reason</em></p>
 	 */
 	ERROR_READING_IMPORTED_GRAMMAR(11, "error reading imported grammar <arg> referenced in <arg2>", ErrorSeverity.ERROR),
+	/**
+	 * Compiler Error 12.
+	 *
+	 * <p>error reading decision profile <em>filename</em>: <em>reason</em></p>
+	 */
+	ERROR_READING_PROFILE(12, "error reading decision profile <arg>: <arg2>", ErrorSeverity.ERROR),
 
 	/**
 	 * Compiler Error 20.
@@ -1074,6 +1080,22 @@ public enum ErrorType {
 			"unicode property escapes not allowed in lexer charset range: <arg>",
 			ErrorSeverity.ERROR),
 
+	/**
+	 * Compiler Warning 184.
+	 *
+	 * <p>decision <em>decision</em> in rule <em>rule</em> needed full-context
+	 * prediction in all <em>n</em> profiled predictions</p>
+	 *
+	 * <p>The {@code -Xprofile} decision profile shows that SLL prediction
+	 * never resolved this decision on its own, so every prediction paid for
+	 * a second, full-context pass. Rewriting the decision so the rule's
+	 * callers don't matter usually removes the fallback.</p>
+	 */
+	DECISION_ALWAYS_NEEDS_FULL_CONTEXT(
+			184,
+			"decision <arg> in rule <arg2> needed full-context prediction in all <arg3> profiled predictions",
+			ErrorSeverity.WARNING),
+
 	/*
 	 * Backward incompatibility errors
 	 */
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.tool;
+
+import org.antlr.runtime.CharStream;
+import org.antlr.v4.Tool;
+import org.antlr.v4.analysis.DecisionProfile;
+import org.antlr.v4.parse.TokenVocabParser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** An on-disk cache of everything the tool generates for a grammar, keyed by
+ *  a hash of the grammar text, the text of its imported grammars and token
+ *  vocabulary, the options affecting code generation and the tool version.
+ *  Enabled with {@code -Xcache dir}.
+ *
+ *  The semantic pipeline, left-recursion elimination, ATN construction and
+ *  analysis all hang their results off the grammar AST that code generation
+ *  walks, so there is no intermediate result that could be reloaded while
+ *  still generating code.  Instead the products of those stages are cached:
+ *  the generated recognizers (holding the serialized ATN), the listeners and
+ *  visitors, and the {@code .tokens} vocabulary.  On a hit they are written
+ *  through {@link Tool#getOutputFileWriter} without processing the grammar.
+ *
+ *  Only outputs of grammars that processed without errors or warnings are
+ *  stored, so a hit never hides a diagnostic.
+ */
+public class GrammarCache {
+	public static final String CACHE_FILE_EXTENSION = ".cache";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	protected final Tool tool;
+	protected final File directory;
+
+	/** Output files written while processing the current grammar; null
+	 *  unless recording.
+	 */
+	protected Map<String, StringWriter> recorded;
+
+	public GrammarCache(Tool tool, String directory) {
+		this.tool = tool;
+		this.directory = new File(directory);
+	}
+
+	/** Write the outputs of {@code g} from the cache if they are present,
+	 *  otherwise process {@code g} and store its outputs.
+	 */
+	public void process(Grammar g) {
+		int errors = tool.errMgr.errors;
+		int warnings = tool.errMgr.warnings;
+		String key;
+		try {
+			key = getKey(g);
+		}
+		catch (IOException ioe) {
+			tool.log("cache", "can't compute key for "+g.name+": "+ioe);
+			tool.process(g, true);
+			return;
+		}
+
+		// loading the imported grammars failed and has been reported
+		if ( tool.errMgr.errors>errors ) return;
+
+		if ( load(g, key) ) {
+			tool.log("cache", "reused output of "+g.name+" from "+key);
+			return;
+		}
+
+		recorded = new LinkedHashMap<String, StringWriter>();
+		Map<String, StringWriter> files;
+		try {
+			tool.process(g, true);
+		}
+		finally {
+			files = recorded;
+			recorded = null;
+		}
+
+		if ( tool.errMgr.errors==errors && tool.errMgr.warnings==warnings ) {
+			store(key, files);
+		}
+	}
+
+	/** Wrap {@code w} so that the text written for {@code fileName} is also
+	 *  recorded, if the outputs of a grammar are being recorded.
+	 */
+	public Writer record(String fileName, Writer w) {
+		if ( recorded==null ) return w;
+		final StringWriter copy = new StringWriter();
+		recorded.put(fileName, copy);
+		return new FilterWriter(w) {
+			@Override
+			public void write(int c) throws IOException {
+				super.write(c);
+				copy.write(c);
+			}
+
+			@Override
+			public void write(char[] cbuf, int off, int len) throws IOException {
+				super.write(cbuf, off, len);
+				copy.write(cbuf, off, len);
+			}
+
+			@Override
+			public void write(String str, int off, int len) throws IOException {
+				super.write(str, off, len);
+				copy.write(str, off, len);
+			}
+		};
+	}
+
+	public String getKey(Grammar g) throws IOException {
+		g.loadImportedGrammars();
+		MessageDigest digest = newDigest();
+		update(digest, tool, g);
+		return toHex(digest);
+	}
+
+	protected static MessageDigest newDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance("MD5");
+		}
+		catch (NoSuchAlgorithmException nsae) {
+			throw new IOException(nsae);
+		}
+	}
+
+	/** Hash everything {@code tool} generates {@code g} from: its text and
+	 *  file name, its imported grammars, which must be loaded, its token
+	 *  vocabulary file and decision profile, the options affecting code
+	 *  generation and the tool version. {@link GrammarCompiler} builds its
+	 *  key on this too.
+	 */
+	protected static void update(MessageDigest digest, Tool tool, Grammar g) throws IOException {
+		update(digest, Tool.VERSION);
+		update(digest, g.fileName);
+		update(digest, String.valueOf(tool.gen_listener));
+		update(digest, String.valueOf(tool.gen_visitor));
+		update(digest, String.valueOf(tool.genPackage));
+		update(digest, String.valueOf(tool.generate_ATN_dot));
+		update(digest, String.valueOf(tool.force_atn));
+		update(digest, String.valueOf(tool.precedence_climbing));
+		update(digest, String.valueOf(tool.grammarEncoding));
+		if ( tool.grammarOptions!=null ) {
+			update(digest, new TreeMap<String, String>(tool.grammarOptions).toString());
+		}
+
+		update(digest, getText(g));
+		List<Grammar> imported = g.getAllImportedGrammars();
+		if ( imported!=null ) {
+			for (Grammar ig : imported) {
+				update(digest, ig.fileName);
+				update(digest, getText(ig));
+			}
+		}
+
+		DecisionProfile profile = tool.getDecisionProfile(g);
+		if ( profile!=null ) {
+			update(digest, new String(readFile(new File(tool.profileFile)), UTF8));
+		}
+
+		if ( g.getOptionString("tokenVocab")!=null ) {
+			File vocabFile = new TokenVocabParser(g).getImportedVocabFile();
+			if ( vocabFile.exists() ) {
+				update(digest, new String(readFile(vocabFile), UTF8));
+			}
+		}
+	}
+
+	protected static String toHex(MessageDigest digest) {
+		StringBuilder buf = new StringBuilder();
+		for (byte b : digest.digest()) {
+			buf.append(String.format("%02x", b & 0xFF));
+		}
+		return buf.toString();
+	}
+
+	protected boolean load(Grammar g, String key) {
+		File cacheFile = new File(directory, key + CACHE_FILE_EXTENSION);
+		if ( !cacheFile.exists() ) return false;
+
+		Map<String, String> files = new LinkedHashMap<String, String>();
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+			try {
+				int n = in.readInt();
+				for (int i = 0; i < n; i++) {
+					String fileName = in.readUTF();
+					byte[] text = new byte[in.readInt()];
+					in.readFully(text);
+					files.put(fileName, new String(text, UTF8));
+				}
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch (IOException ioe) {
+			tool.log("cache", "can't read "+cacheFile+": "+ioe);
+			return false;
+		}
+
+		for (Map.Entry<String, String> file : files.entrySet()) {
+			try {
+				Writer w = tool.getOutputFileWriter(g, file.getKey());
+				try {
+					w.write(file.getValue());
+				}
+				finally {
+					w.close();
+				}
+			}
+			catch (IOException ioe) {
+				tool.errMgr.toolError(ErrorType.CANNOT_WRITE_FILE, ioe, file.getKey());
+			}
+		}
+		return true;
+	}
+
+	protected void store(String key, Map<String, StringWriter> files) {
+		File cacheFile = new File(directory, key + CACHE_FILE_EXTENSION);
+		try {
+			if ( !directory.exists() ) directory.mkdirs();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)));
+			try {
+				out.writeInt(files.size());
+				for (Map.Entry<String, StringWriter> file : files.entrySet()) {
+					byte[] text = file.getValue().toString().getBytes(UTF8);
+					out.writeUTF(file.getKey());
+					out.writeInt(text.length);
+					out.write(text);
+				}
+			}
+			finally {
+				out.close();
+			}
+		}
+		catch (IOException ioe) {
+			// a cache we can't write only costs time on the next run
+			tool.log("cache", "can't write "+cacheFile+": "+ioe);
+			cacheFile.delete();
+		}
+	}
+
+	protected static String getText(Grammar g) {
+		CharStream input = g.ast.token.getInputStream();
+		return input.substring(0, input.size() - 1);
+	}
+
+	/** Add {@code value} to {@code digest}; {@code null} hashes differently
+	 *  from every string.
+	 */
+	protected static void update(MessageDigest digest, String value) {
+		if ( value==null ) {
+			digest.update((byte)1);
+			return;
+		}
+		digest.update(value.getBytes(UTF8));
+		digest.update((byte)0);
+	}
+
+	protected static byte[] readFile(File file) throws IOException {
+		byte[] data = new byte[(int)file.length()];
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			in.readFully(data);
+		}
+		finally {
+			in.close();
+		}
+		return data;
+	}
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.tool;
+
+import org.antlr.v4.codegen.CodeGenerator;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.TokenStream;
+import org.stringtemplate.v4.ST;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/** Turns a {@link Grammar} loaded at runtime into a compiled lexer or
+ *  parser class, as a faster alternative to
+ *  {@link Grammar#createLexerInterpreter} and
+ *  {@link Grammar#createParserInterpreter}. The Java target generates the
+ *  recognizer, and the listener and visitor interfaces it refers to,
+ *  through the usual {@link CodeGenerator}. The source is compiled in
+ *  memory with the platform's {@link JavaCompiler} and loaded by a class
+ *  loader of our own, so nothing is written to disk.
+ *
+ *  <p>Compiled classes are cached by the same hash {@code -Xcache} uses,
+ *  which covers the grammar text, imported grammars, the token vocabulary
+ *  and decision profile files, the code generation options and the tool
+ *  version, plus the recognizer name and token types. Asking again for an unchanged grammar returns the same class,
+ *  and its instances share one DFA cache like those of any generated
+ *  recognizer.</p>
+ *
+ *  <p>This needs a JDK at runtime, since a JRE has no system compiler. The
+ *  generated code is compiled against the class path given to the
+ *  constructor, which defaults to {@code java.class.path}, so the ANTLR
+ *  runtime and anything the grammar's actions use must be on it.</p>
+ *
+ *  <p>Unlike the interpreters, compiled recognizers run the grammar's
+ *  actions and predicates.</p>
+ *
+ * @since 4.7.1
+ */
+public class GrammarCompiler {
+	protected final ClassLoader parent;
+
+	protected final List<String> options;
+
+	/** hash of grammar &rarr; compiled recognizer */
+	protected final ConcurrentMap<String, Class<?>> classes = new ConcurrentHashMap<String, Class<?>>();
+
+	public GrammarCompiler() {
+		this(GrammarCompiler.class.getClassLoader(), System.getProperty("java.class.path"));
+	}
+
+	/**
+	 * @param parent the class loader the compiled classes delegate to; it
+	 * must be able to load the ANTLR runtime
+	 * @param classPath the class path to compile the generated code against
+	 */
+	public GrammarCompiler(ClassLoader parent, String classPath) {
+		this.parent = parent;
+		this.options = Arrays.asList("-nowarn", "-classpath", classPath);
+	}
+
+	/** Return the lexer class for {@code g}, which is a lexer grammar or a
+	 *  combined grammar, compiling it if it isn't cached.
+	 *
+	 * @exception IllegalArgumentException if {@code g} has errors or the
+	 * generated code doesn't compile, for example because of an action
+	 */
+	public Class<? extends Lexer> compileLexer(Grammar g) {
+		LexerGrammar lg = g.isLexer() ? (LexerGrammar)g : g.implicitLexer;
+		if ( lg==null ) {
+			throw new IllegalArgumentException("grammar "+g.name+" has no lexer");
+		}
+
+		return compile(lg).asSubclass(Lexer.class);
+	}
+
+	/** Return the parser class for {@code g}, which is a parser grammar or a
+	 *  combined grammar, compiling it if it isn't cached.
+	 *
+	 * @exception IllegalArgumentException if {@code g} has errors or the
+	 * generated code doesn't compile, for example because of an action
+	 */
+	public Class<? extends Parser> compileParser(Grammar g) {
+		if ( g.isLexer() ) {
+			throw new IllegalArgumentException("grammar "+g.name+" is a lexer grammar");
+		}
+
+		return compile(g).asSubclass(Parser.class);
+	}
+
+	/** Compile if needed and construct the lexer for {@code g} on {@code input}. */
+	public Lexer createLexer(Grammar g, CharStream input) {
+		return newInstance(compileLexer(g), CharStream.class, input);
+	}
+
+	/** Compile if needed and construct the parser for {@code g} on {@code input}. */
+	public Parser createParser(Grammar g, TokenStream input) {
+		return newInstance(compileParser(g), TokenStream.class, input);
+	}
+
+	/** Forget every compiled class. Existing instances keep working. */
+	public void clear() {
+		classes.clear();
+	}
+
+	protected Class<?> compile(Grammar g) {
+		if ( g.name==null ) {
+			// the Grammar(String) constructors don't set the name, but the
+			// generated class names come from it
+			g.name = g.ast.getGrammarName();
+		}
+
+		String key = getKey(g);
+		Class<?> c = classes.get(key);
+		if ( c==null ) {
+			synchronized (classes) {
+				c = classes.get(key);
+				if ( c==null ) {
+					c = generateAndCompile(g);
+					classes.put(key, c);
+				}
+			}
+		}
+		return c;
+	}
+
+	protected Class<?> generateAndCompile(Grammar g) {
+		if ( g.tool.errMgr.getNumErrors()>0 ) {
+			throw new IllegalArgumentException("grammar "+g.name+" has errors");
+		}
+		CodeGenerator gen = new CodeGenerator(g);
+		if ( !CodeGenerator.DEFAULT_LANGUAGE.equals(gen.language) ) {
+			throw new IllegalArgumentException("grammar "+g.name+" targets "+gen.language+", not Java");
+		}
+
+		// file name -> source
+		Map<String, String> sources = new TreeMap<String, String>();
+		int errors = g.tool.errMgr.getNumErrors();
+		String recognizerFile = gen.getRecognizerFileName();
+		sources.put(recognizerFile, render(gen, g.isLexer() ? gen.generateLexer() : gen.generateParser()));
+		if ( !g.isLexer() ) {
+			if ( g.tool.gen_listener ) {
+				sources.put(gen.getListenerFileName(), render(gen, gen.generateListener()));
+			}
+			if ( g.tool.gen_visitor ) {
+				sources.put(gen.getVisitorFileName(), render(gen, gen.generateVisitor()));
+			}
+		}
+		if ( g.tool.errMgr.getNumErrors()>errors ) {
+			throw new IllegalArgumentException("can't generate code for grammar "+g.name);
+		}
+
+		Map<String, byte[]> classFiles = compile(g, sources);
+		MemoryClassLoader loader = new MemoryClassLoader(parent, classFiles);
+		String simpleName = recognizerFile.substring(0, recognizerFile.length() - ".java".length());
+		for (String className : classFiles.keySet()) {
+			if ( className.equals(simpleName) || className.endsWith("."+simpleName) ) {
+				try {
+					return loader.loadClass(className);
+				}
+				catch (ClassNotFoundException cnfe) {
+					throw new IllegalStateException(cnfe);
+				}
+			}
+		}
+
+		throw new IllegalStateException("compiling "+recognizerFile+" produced no class "+simpleName);
+	}
+
+	protected String render(CodeGenerator gen, ST template) {
+		return template.render(gen.lineWidth);
+	}
+
+	/** Compile {@code sources} and return class name &rarr; class file. */
+	protected Map<String, byte[]> compile(Grammar g, Map<String, String> sources) {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if ( compiler==null ) {
+			throw new IllegalStateException("no Java compiler available; a JDK is required to compile grammars");
+		}
+
+		List<JavaFileObject> units = new ArrayList<JavaFileObject>();
+		for (Map.Entry<String, String> source : sources.entrySet()) {
+			units.add(new SourceFile(source.getKey(), source.getValue()));
+		}
+
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, null, null);
+		MemoryFileManager fileManager = new MemoryFileManager(standard);
+		try {
+			boolean ok = compiler.getTask(null, fileManager, diagnostics, options, null, units).call();
+			if ( !ok ) {
+				StringBuilder buf = new StringBuilder("grammar "+g.name+" does not compile:");
+				for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+					if ( d.getKind()==Diagnostic.Kind.ERROR ) {
+						buf.append('\n').append(d.getSource()!=null ? d.getSource().getName() : "")
+						   .append(':').append(d.getLineNumber()).append(": ").append(d.getMessage(null));
+					}
+				}
+				throw new IllegalArgumentException(buf.toString());
+			}
+		}
+		finally {
+			try {
+				fileManager.close();
+			}
+			catch (IOException ioe) {
+				// nothing was opened on disk
+			}
+		}
+
+		Map<String, byte[]> classFiles = new HashMap<String, byte[]>();
+		for (Map.Entry<String, ByteArrayOutputStream> c : fileManager.output.entrySet()) {
+			classFiles.put(c.getKey(), c.getValue().toByteArray());
+		}
+		return classFiles;
+	}
+
+	/** A hash of everything code generation for {@code g} depends on. */
+	public String getKey(Grammar g) {
+		try {
+			MessageDigest digest = GrammarCache.newDigest();
+			// everything the -Xcache key covers, so the two can't drift apart
+			GrammarCache.update(digest, g.tool, g);
+			GrammarCache.update(digest, g.getRecognizerName());
+			// token types may come from a grammar object rather than a file
+			GrammarCache.update(digest, new TreeMap<String, Integer>(g.tokenNameToTypeMap).toString());
+			return GrammarCache.toHex(digest);
+		}
+		catch (IOException ioe) {
+			throw new IllegalStateException("can't compute key for grammar "+g.name, ioe);
+		}
+	}
+
+	protected static <T> T newInstance(Class<? extends T> c, Class<?> argType, Object arg) {
+		try {
+			return c.getConstructor(argType).newInstance(arg);
+		}
+		catch (InvocationTargetException ite) {
+			Throwable cause = ite.getCause();
+			if ( cause instanceof RuntimeException ) throw (RuntimeException)cause;
+			throw new IllegalStateException(cause);
+		}
+		catch (NoSuchMethodException nsme) {
+			throw new IllegalStateException(nsme);
+		}
+		catch (InstantiationException ie) {
+			throw new IllegalStateException(ie);
+		}
+		catch (IllegalAccessException iae) {
+			throw new IllegalStateException(iae);
+		}
+	}
+
+	protected static class SourceFile extends SimpleJavaFileObject {
+		protected final String text;
+
+		public SourceFile(String fileName, String text) {
+			super(URI.create("string:///"+fileName), Kind.SOURCE);
+			this.text = text;
+		}
+
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+			return text;
+		}
+	}
+
+	protected static class ClassFile extends SimpleJavaFileObject {
+		protected final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		public ClassFile(String className) {
+			super(URI.create("bytes:///"+className.replace('.', '/')+".class"), Kind.CLASS);
+		}
+
+		@Override
+		public OutputStream openOutputStream() {
+			return bytes;
+		}
+	}
+
+	/** Keeps the class files the compiler writes in memory. */
+	protected static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+		protected final Map<String, ByteArrayOutputStream> output = new HashMap<String, ByteArrayOutputStream>();
+
+		public MemoryFileManager(StandardJavaFileManager fileManager) {
+			super(fileManager);
+		}
+
+		@Override
+		public JavaFileObject getJavaFileForOutput(JavaFileManager.Location location, String className,
+												   JavaFileObject.Kind kind, FileObject sibling)
+		{
+			ClassFile file = new ClassFile(className);
+			output.put(className, file.bytes);
+			return file;
+		}
+	}
+
+	protected static class MemoryClassLoader extends ClassLoader {
+		protected final Map<String, byte[]> classFiles;
+
+		public MemoryClassLoader(ClassLoader parent, Map<String, byte[]> classFiles) {
+			super(parent);
+			this.classFiles = classFiles;
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			byte[] bytes = classFiles.get(name);
+			if ( bytes==null ) return super.findClass(name);
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
@@ -6,11 +6,13 @@
 
 package org.antlr.v4.tool.ast;
 
+import org.antlr.runtime.CommonToken;
 import org.antlr.runtime.Token;
 import org.antlr.runtime.TokenStream;
 import org.antlr.runtime.tree.Tree;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 public class GrammarRootAST extends GrammarASTWithOptions {
@@ -79,6 +81,40 @@ public class GrammarRootAST extends GrammarASTWithOptions {
 		return value;
 	}
 
+	/** Copy this tree, including its tokens and option maps, so that the copy
+	 *  can go through the grammar transformations without altering this tree.
+	 *  {@link #dupTree} shares tokens and options with the original.
+	 */
+	public GrammarRootAST deepCopy() {
+		Map<GrammarAST, GrammarAST> copies = new IdentityHashMap<GrammarAST, GrammarAST>();
+		GrammarRootAST copy = (GrammarRootAST)deepCopy(this, copies);
+		copy.cmdLineOptions = cmdLineOptions;
+		copy.fileName = fileName;
+		// option values point at nodes of the original tree; redirect them
+		for (GrammarAST t : copies.values()) {
+			if ( !(t instanceof GrammarASTWithOptions) ) continue;
+			GrammarASTWithOptions withOptions = (GrammarASTWithOptions)t;
+			if ( withOptions.options==null ) continue;
+			Map<String, GrammarAST> options = new HashMap<String, GrammarAST>();
+			for (Map.Entry<String, GrammarAST> option : withOptions.options.entrySet()) {
+				GrammarAST value = copies.get(option.getValue());
+				options.put(option.getKey(), value!=null ? value : option.getValue());
+			}
+			withOptions.options = options;
+		}
+		return copy;
+	}
+
+	private static GrammarAST deepCopy(GrammarAST t, Map<GrammarAST, GrammarAST> copies) {
+		GrammarAST copy = t.dupNode();
+		if ( t.token!=null ) copy.token = new CommonToken(t.token);
+		copies.put(t, copy);
+		for (int i = 0; i < t.getChildCount(); i++) {
+			copy.addChild(deepCopy((GrammarAST)t.getChild(i), copies));
+		}
+		return copy;
+	}
+
 	@Override
 	public Object visit(GrammarASTVisitor v) { return v.visit(this); }
 